@@ -23,6 +23,7 @@ import org.jboss.pressgang.ccms.contentspec.enums.LevelType;
 
 class BaseLevel extends Level {
     private final ContentSpec contentSpec;
+    private SpecNodeIndex specNodeIndex = null;
 
     public BaseLevel(final ContentSpec contentSpec) {
         super("Initial Level", 0, null, LevelType.BASE);
@@ -33,6 +34,35 @@ class BaseLevel extends Level {
         return contentSpec;
     }
 
+    @Override
+    protected void inheritedOptionsChanged() {
+        super.inheritedOptionsChanged();
+
+        // The content specs metadata topics inherit their options from the base level as well
+        if (contentSpec != null) {
+            for (final Node node : contentSpec.getNodes()) {
+                node.inheritedOptionsChanged();
+            }
+        }
+    }
+
+    /**
+     * Gets the index of all the nodes within this level. The index is built the first time it is requested, and is then kept up to
+     * date as nodes are added and removed.
+     *
+     * @param build If the index should be built, if it hasn't been built already.
+     * @return The node index, or null if it hasn't been built.
+     */
+    SpecNodeIndex getSpecNodeIndex(final boolean build) {
+        if (specNodeIndex == null && build) {
+            specNodeIndex = new SpecNodeIndex();
+            for (final Node childNode : getChildNodes()) {
+                specNodeIndex.addNode(childNode);
+            }
+        }
+        return specNodeIndex;
+    }
+
     /**
      * Finds the closest node in the contents of a level.
      *
@@ -47,19 +77,29 @@ class BaseLevel extends Level {
         if (retValue != null) {
             return retValue;
         } else {
-            // Look up the metadata topics
-            final ContentSpec contentSpec = getContentSpec();
-            for (final Node contentSpecNode : contentSpec.getNodes()) {
-                if (contentSpecNode instanceof KeyValueNode && ((KeyValueNode) contentSpecNode).getValue() instanceof SpecTopic) {
-                    final SpecTopic childTopic = (SpecTopic) ((KeyValueNode) contentSpecNode).getValue();
-                    if (childTopic == topic || childTopic.getId().equals(topic.getId())) {
-                        return childTopic;
-                    }
+            return getMetaDataTopic(topic);
+        }
+    }
+
+    /**
+     * Finds a matching topic in the content specs metadata.
+     *
+     * @param topic The node we need to find the match for.
+     * @return The matching metadata topic, or null if none match.
+     */
+    protected SpecTopic getMetaDataTopic(final SpecTopic topic) {
+        // Look up the metadata topics
+        final ContentSpec contentSpec = getContentSpec();
+        for (final Node contentSpecNode : contentSpec.getNodes()) {
+            if (contentSpecNode instanceof KeyValueNode && ((KeyValueNode) contentSpecNode).getValue() instanceof SpecTopic) {
+                final SpecTopic childTopic = (SpecTopic) ((KeyValueNode) contentSpecNode).getValue();
+                if (childTopic == topic || childTopic.getId().equals(topic.getId())) {
+                    return childTopic;
                 }
             }
-
-            return null;
         }
+
+        return null;
     }
 
     /**
@@ -75,19 +115,29 @@ class BaseLevel extends Level {
         if (retValue != null) {
             return retValue;
         } else {
-            // Look up the metadata topics
-            final ContentSpec contentSpec = getContentSpec();
-            for (final Node contentSpecNode : contentSpec.getNodes()) {
-                if (contentSpecNode instanceof KeyValueNode && ((KeyValueNode) contentSpecNode).getValue() instanceof SpecTopic) {
-                    final SpecTopic childTopic = (SpecTopic) ((KeyValueNode) contentSpecNode).getValue();
-                    if (childTopic.getDBId().equals(DBId)) {
-                        return childTopic;
-                    }
+            return getMetaDataTopicByDBId(DBId);
+        }
+    }
+
+    /**
+     * Finds a topic in the content specs metadata that matches a topic database id.
+     *
+     * @param DBId The topic database id
+     * @return The matching metadata topic, or null if none match.
+     */
+    protected SpecTopic getMetaDataTopicByDBId(final Integer DBId) {
+        // Look up the metadata topics
+        final ContentSpec contentSpec = getContentSpec();
+        for (final Node contentSpecNode : contentSpec.getNodes()) {
+            if (contentSpecNode instanceof KeyValueNode && ((KeyValueNode) contentSpecNode).getValue() instanceof SpecTopic) {
+                final SpecTopic childTopic = (SpecTopic) ((KeyValueNode) contentSpecNode).getValue();
+                if (childTopic.getDBId().equals(DBId)) {
+                    return childTopic;
                 }
             }
-
-            return null;
         }
+
+        return null;
     }
 
     /**
@@ -103,19 +153,29 @@ class BaseLevel extends Level {
         if (retValue != null) {
             return retValue;
         } else {
-            // Look up the metadata topics
-            final ContentSpec contentSpec = getContentSpec();
-            for (final Node contentSpecNode : contentSpec.getNodes()) {
-                if (contentSpecNode instanceof KeyValueNode && ((KeyValueNode) contentSpecNode).getValue() instanceof SpecTopic) {
-                    final SpecTopic childTopic = (SpecTopic) ((KeyValueNode) contentSpecNode).getValue();
-                    if (childTopic.getTargetId() != null && childTopic.getTargetId().equals(targetId)) {
-                        return childTopic;
-                    }
+            return getMetaDataSpecNodeByTargetId(targetId);
+        }
+    }
+
+    /**
+     * Finds a topic in the content specs metadata that matches a target id.
+     *
+     * @param targetId The target id
+     * @return The matching metadata topic, or null if none match.
+     */
+    protected SpecNode getMetaDataSpecNodeByTargetId(final String targetId) {
+        // Look up the metadata topics
+        final ContentSpec contentSpec = getContentSpec();
+        for (final Node contentSpecNode : contentSpec.getNodes()) {
+            if (contentSpecNode instanceof KeyValueNode && ((KeyValueNode) contentSpecNode).getValue() instanceof SpecTopic) {
+                final SpecTopic childTopic = (SpecTopic) ((KeyValueNode) contentSpecNode).getValue();
+                if (childTopic.getTargetId() != null && childTopic.getTargetId().equals(targetId)) {
+                    return childTopic;
                 }
             }
-
-            return null;
         }
+
+        return null;
     }
 
     @Override
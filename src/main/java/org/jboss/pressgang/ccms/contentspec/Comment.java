@@ -19,6 +19,8 @@
 
 package org.jboss.pressgang.ccms.contentspec;
 
+import java.io.IOException;
+
 /**
  * A class that is used to represent a comment in a Content Specification.
  *
@@ -49,29 +51,14 @@ public class Comment extends Node {
     public Integer getStep() {
         final Node parent = getParent();
         if (parent == null) return null;
-        Integer previousNode = 0;
 
         if (parent instanceof Level) {
-            // Get the position of the level in its parents nodes
-            final Integer nodePos = ((Level) parent).getChildNodes().indexOf(this);
-
-            // If the level isn't the first node then get the previous nodes step
-            if (nodePos > 0) {
-                final Node node = ((Level) parent).getChildNodes().get(nodePos - 1);
-                previousNode = node.getStep();
-                // If the add node is a level then add the number of nodes it contains
-                if (node instanceof Level) {
-                    previousNode = (previousNode == null ? 0 : previousNode) + ((Level) node).getTotalNumberOfChildren();
-                }
-                // The node is the first item so use the parent levels step
-            } else {
-                previousNode = getParent().getStep();
-            }
-            // Make sure the previous nodes step isn't 0
-            previousNode = previousNode == null ? 0 : previousNode;
-
-            // Add one since we got the previous nodes step
-            return previousNode + 1;
+            final Integer step = ((Level) parent).getChildNodeStep(this);
+            if (step != null) return step;
+
+            // The node isn't in the parents nodes, so use the parent levels step
+            final Integer parentStep = parent.getStep();
+            return (parentStep == null ? 0 : parentStep) + 1;
         } else {
             return null;
         }
@@ -102,7 +89,12 @@ public class Comment extends Node {
 
     @Override
     public String toString() {
-        return getText() + "\n";
+        return writeToString();
+    }
+
+    @Override
+    public void writeTo(final Appendable output) throws IOException {
+        output.append(getText()).append('\n');
     }
 
     @Override
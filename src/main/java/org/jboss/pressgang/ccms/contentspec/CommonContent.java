@@ -1,5 +1,7 @@
 package org.jboss.pressgang.ccms.contentspec;
 
+import java.io.IOException;
+
 import org.jboss.pressgang.ccms.contentspec.enums.LevelType;
 import org.jboss.pressgang.ccms.contentspec.utils.ContentSpecUtilities;
 
@@ -42,34 +44,15 @@ public class CommonContent extends SpecNode {
             return null;
         } else if (getParent() instanceof Level) {
             final Level parent = (Level) getParent();
-            Integer previousNode = 0;
-
-            // Get the position of the level in its parents nodes
-            Integer nodePos = parent.nodes.indexOf(this);
-
-            // If the level isn't the first node then get the previous nodes step
-            if (nodePos > 0) {
-                Node node = parent.nodes.get(nodePos - 1);
-                previousNode = node.getStep();
-                // If the add node is a level then add the number of nodes it contains
-                if (node instanceof Level) {
-                    previousNode = (previousNode == null ? 0 : previousNode) + ((Level) node).getTotalNumberOfChildren();
-                }
-            } else if (nodePos == -1) {
+            final Integer step = parent.getChildNodeStep(this);
+            if (step != null) {
+                return step;
+            } else if (parent.getLevelType() == LevelType.BASE) {
                 // The node is a front matter topic, so use the parents step
-                if (parent.getLevelType() == LevelType.BASE) {
-                    previousNode = -1;
-                } else {
-                    previousNode = parent.getStep() - 1;
-                }
+                return 0;
             } else {
-                previousNode = parent.getStep();
+                return parent.getStep();
             }
-            // Make sure the previous nodes step isn't 0
-            previousNode = previousNode == null ? 0 : previousNode;
-
-            // Add one since we got the previous nodes step
-            return previousNode + 1;
         } else {
             return null;
         }
@@ -95,6 +78,12 @@ public class CommonContent extends SpecNode {
 
     @Override
     public String toString() {
-        return getSpacer() + getText() + "\n";
+        return writeToString();
+    }
+
+    @Override
+    public void writeTo(final Appendable output) throws IOException {
+        writeSpacerTo(output);
+        output.append(getText()).append('\n');
     }
 }
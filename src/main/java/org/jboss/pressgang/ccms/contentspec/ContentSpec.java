@@ -27,7 +27,9 @@ package org.jboss.pressgang.ccms.contentspec;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -42,8 +44,8 @@ import org.jboss.pressgang.ccms.contentspec.entities.Relationship;
 import org.jboss.pressgang.ccms.contentspec.enums.BookType;
 import org.jboss.pressgang.ccms.contentspec.enums.BugLinkType;
 import org.jboss.pressgang.ccms.contentspec.enums.TopicType;
+import org.jboss.pressgang.ccms.contentspec.utils.DigestAppendable;
 import org.jboss.pressgang.ccms.utils.common.DocBookUtilities;
-import org.jboss.pressgang.ccms.utils.common.HashUtilities;
 import org.jboss.pressgang.ccms.utils.constants.CommonConstants;
 
 public class ContentSpec extends Node {
@@ -1313,25 +1315,59 @@ public class ContentSpec extends Node {
 
     // End of the basic getter/setter methods for this ContentSpec.
 
+    /**
+     * Gets all the spec topics in the content spec. The topics are grouped by level, where a levels topics are listed before the
+     * topics in its child levels, followed by the metadata topics.
+     *
+     * @return A list of all the spec topics in the content spec.
+     */
     public List<SpecTopic> getSpecTopics() {
-        final List<SpecTopic> specTopics = getLevelSpecTopics(level);
-        specTopics.addAll(getMetaDataSpecTopics());
+        final List<SpecTopic> specTopics = new ArrayList<SpecTopic>();
+        addLevelSpecTopics(level, specTopics);
+        addMetaDataSpecTopics(specTopics);
         return specTopics;
     }
 
+    /**
+     * Gets all the topic nodes in the content spec. The topics are grouped by level, where a levels topics and then its info topic
+     * are listed before the topics in its child levels, followed by the metadata topics.
+     *
+     * @return A list of all the topic nodes in the content spec.
+     */
     public List<ITopicNode> getAllTopicNodes() {
-        final List<ITopicNode> topicNodes = getLevelTopicNodes(level);
-        topicNodes.addAll(getMetaDataSpecTopics());
+        final List<ITopicNode> topicNodes = new ArrayList<ITopicNode>();
+        addLevelTopicNodes(level, topicNodes);
+        addMetaDataSpecTopics(topicNodes);
         return topicNodes;
     }
 
     public List<InfoTopic> getInfoTopics() {
-        return getLevelInfoTopics(level);
+        final List<InfoTopic> infoTopics = new ArrayList<InfoTopic>();
+        for (final InfoTopic infoTopic : new NodeIterator<InfoTopic>(level, InfoTopic.class, true)) {
+            infoTopics.add(infoTopic);
+        }
+        return infoTopics;
     }
 
-    private List<SpecTopic> getMetaDataSpecTopics() {
-        final List<SpecTopic> specTopics = new ArrayList<SpecTopic>();
+    private void addLevelSpecTopics(final Level level, final List<SpecTopic> specTopics) {
+        // Read the levels fields directly, so that the levels topics and child levels aren't copied for every level
+        level.addSpecTopicsTo(specTopics);
+        for (final Level childLevel : level.levels) {
+            addLevelSpecTopics(childLevel, specTopics);
+        }
+    }
+
+    private void addLevelTopicNodes(final Level level, final List<ITopicNode> topicNodes) {
+        level.addSpecTopicsTo(topicNodes);
+        if (level.getInfoTopic() != null) {
+            topicNodes.add(level.getInfoTopic());
+        }
+        for (final Level childLevel : level.levels) {
+            addLevelTopicNodes(childLevel, topicNodes);
+        }
+    }
 
+    private void addMetaDataSpecTopics(final List<? super SpecTopic> specTopics) {
         // Add the Revision History Spec Topic
         if (getRevisionHistory() != null) {
             specTopics.add(getRevisionHistory());
@@ -1356,38 +1392,6 @@ public class ContentSpec extends Node {
         if (getAbstractTopic() != null) {
             specTopics.add(getAbstractTopic());
         }
-
-        return specTopics;
-    }
-
-    private List<ITopicNode> getLevelTopicNodes(final Level level) {
-        final List<ITopicNode> topicNodes = new ArrayList<ITopicNode>(level.getSpecTopics());
-        if (level.getInfoTopic() != null) {
-            topicNodes.add(level.getInfoTopic());
-        }
-        for (final Level childLevel : level.getChildLevels()) {
-            topicNodes.addAll(getLevelTopicNodes(childLevel));
-        }
-        return topicNodes;
-    }
-
-    private List<SpecTopic> getLevelSpecTopics(final Level level) {
-        final List<SpecTopic> specTopics = new ArrayList<SpecTopic>(level.getSpecTopics());
-        for (final Level childLevel : level.getChildLevels()) {
-            specTopics.addAll(getLevelSpecTopics(childLevel));
-        }
-        return specTopics;
-    }
-
-    private List<InfoTopic> getLevelInfoTopics(final Level level) {
-        final List<InfoTopic> infoTopics = new ArrayList<InfoTopic>();
-        if (level.getInfoTopic() != null) {
-            infoTopics.add(level.getInfoTopic());
-        }
-        for (final Level childLevel : level.getChildLevels()) {
-            infoTopics.addAll(getLevelInfoTopics(childLevel));
-        }
-        return infoTopics;
     }
 
     public Map<SpecNodeWithRelationships, List<Relationship>> getRelationships() {
@@ -1401,14 +1405,9 @@ public class ContentSpec extends Node {
             relationships.put(level, level.getRelationships());
         }
 
-        for (final Node node : level.getChildNodes()) {
-            if (node instanceof SpecTopic) {
-                final SpecTopic specTopic = (SpecTopic) node;
-                if (!specTopic.getRelationships().isEmpty()) {
-                    relationships.put(specTopic, specTopic.getRelationships());
-                }
-            } else if (node instanceof Level) {
-                getRelationships((Level) node, relationships);
+        for (final SpecNodeWithRelationships node : new NodeIterator<SpecNodeWithRelationships>(level, SpecNodeWithRelationships.class)) {
+            if ((node instanceof SpecTopic || node instanceof Level) && !node.getRelationships().isEmpty()) {
+                relationships.put(node, node.getRelationships());
             }
         }
     }
@@ -1417,6 +1416,11 @@ public class ContentSpec extends Node {
         return nodes;
     }
 
+    @Override
+    protected Collection<? extends Node> getTreeChildNodes() {
+        return nodes;
+    }
+
     public String getBugzillaProduct() {
         return bugzillaProduct == null ? null : bugzillaProduct.getValueText();
     }
@@ -2542,37 +2546,90 @@ public class ContentSpec extends Node {
 
     public String toString(boolean includeChecksum) {
         final StringBuilder output = new StringBuilder();
+        try {
+            writeTo(output, includeChecksum);
+        } catch (IOException e) {
+            // This should never happen, since a StringBuilder doesn't throw IOExceptions
+            throw new IllegalStateException(e);
+        }
+        return output.toString();
+    }
+
+    @Override
+    public void writeTo(final Appendable output) throws IOException {
+        writeTo(output, true);
+    }
+
+    /**
+     * Writes the String representation of the Content Specification to an output.
+     *
+     * @param output          The output to write the Content Specification to.
+     * @param includeChecksum If the checksum should be included in the output.
+     * @throws IOException Thrown if the Content Specification can't be written to the output.
+     */
+    public void writeTo(final Appendable output, boolean includeChecksum) throws IOException {
+        // If the id isn't null then add the id and checksum
+        if (getId() != null) {
+            if (includeChecksum) {
+                output.append(CommonConstants.CS_CHECKSUM_TITLE).append(" = ").append(calculateChecksum()).append('\n');
+            }
+            writeIdTo(output);
+        }
+
+        writeContentTo(output);
+    }
+
+    /**
+     * Calculates the checksum of the Content Specification. The checksum is the MD5 hash of the id line and content of the
+     * Content Specification, which is calculated as the content is written so the content never has to be held in memory.
+     *
+     * @return The checksum of the Content Specification, or null if the Content Specification has no id.
+     */
+    public String calculateChecksum() {
+        if (getId() == null) return null;
+
+        final DigestAppendable digest = DigestAppendable.createMD5();
+        try {
+            writeIdTo(digest);
+            writeContentTo(digest);
+        } catch (IOException e) {
+            // This should never happen, since a DigestAppendable doesn't throw IOExceptions
+            throw new IllegalStateException(e);
+        }
+        return digest.getHexDigest();
+    }
+
+    private void writeIdTo(final Appendable output) throws IOException {
+        output.append(CommonConstants.CS_ID_TITLE).append(" = ").append(String.valueOf(id.getValue())).append('\n');
+    }
+
+    /**
+     * Writes the String representation of the Content Specification, excluding the checksum and id, to an output.
+     *
+     * @param output The output to write the Content Specification to.
+     * @throws IOException Thrown if the Content Specification can't be written to the output.
+     */
+    @SuppressWarnings("rawtypes")
+    private void writeContentTo(final Appendable output) throws IOException {
         for (final Node node : nodes) {
             if (node instanceof KeyValueNode) {
                 final KeyValueNode keyValueNode = (KeyValueNode) node;
                 if (!keyValueNode.getKey().equals(CommonConstants.CS_CHECKSUM_TITLE) && !keyValueNode.getKey().equals(CommonConstants.CS_ID_TITLE)) {
-                    output.append(node.toString());
+                    node.writeTo(output);
                 }
             } else {
-                output.append(node.toString());
+                node.writeTo(output);
             }
         }
 
         // Add any global options
         String options = level.getOptionsString();
         if (!options.equals("")) {
-            output.append("[" + options + "]\n");
+            output.append("[").append(options).append("]\n");
         }
 
         // Append the String representation of each level
-        output.append(level.toString());
-
-        // If the id isn't null then add the id and checksum
-        if (getId() != null) {
-            if (includeChecksum) {
-                output.insert(0, CommonConstants.CS_CHECKSUM_TITLE + " = " + HashUtilities.generateMD5(
-                    CommonConstants.CS_ID_TITLE + " = " + id.getValue() + "\n" + output) + "\n" + CommonConstants.CS_ID_TITLE + " = " + id.getValue() +
-                    "\n");
-            } else {
-                output.insert(0, CommonConstants.CS_ID_TITLE + " = " + id.getValue() + "\n");
-            }
-        }
-        return output.toString();
+        level.writeTo(output);
     }
 
     @Override
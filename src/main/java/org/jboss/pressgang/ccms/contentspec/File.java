@@ -19,6 +19,8 @@
 
 package org.jboss.pressgang.ccms.contentspec;
 
+import java.io.IOException;
+
 import org.jboss.pressgang.ccms.contentspec.utils.ContentSpecUtilities;
 
 public class File extends Node {
@@ -75,7 +77,12 @@ public class File extends Node {
     }
 
     public String toString() {
-        return getText() + "\n";
+        return writeToString();
+    }
+
+    @Override
+    public void writeTo(final Appendable output) throws IOException {
+        output.append(getText()).append('\n');
     }
 
     public Integer getId() {
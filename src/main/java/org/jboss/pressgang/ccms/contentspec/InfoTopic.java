@@ -1,7 +1,9 @@
 package org.jboss.pressgang.ccms.contentspec;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.jboss.pressgang.ccms.contentspec.constants.CSConstants;
 import org.jboss.pressgang.ccms.contentspec.enums.TopicType;
@@ -132,16 +134,10 @@ public class InfoTopic implements ITopicNode {
             temp.addAll(tags);
 
             // Remove the tags that are set to be removed
+            final Set<String> removeTagSet = new HashSet<String>(getRemoveTags(useInherited));
             final List<String> newTags = new ArrayList<String>();
             for (final String tagName : temp) {
-                final List<String> tempTags = getRemoveTags(useInherited);
-                boolean found = false;
-                for (final String removeTagName : tempTags) {
-                    if (removeTagName.equals(tagName)) {
-                        found = true;
-                    }
-                }
-                if (!found) {
+                if (!removeTagSet.contains(tagName)) {
                     newTags.add(tagName);
                 }
             }
@@ -21,6 +21,10 @@ package org.jboss.pressgang.ccms.contentspec;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
 import org.jboss.pressgang.ccms.contentspec.utils.ContentSpecUtilities;
 
 public class KeyValueNode<T> extends Node {
@@ -85,6 +89,11 @@ public class KeyValueNode<T> extends Node {
         }
     }
 
+    @Override
+    protected Collection<? extends Node> getTreeChildNodes() {
+        return value instanceof Node ? Collections.singletonList((Node) value) : Collections.<Node>emptyList();
+    }
+
     public T getTranslatedValue() {
         return translatedValue;
     }
@@ -135,6 +144,11 @@ public class KeyValueNode<T> extends Node {
 
     @Override
     public String toString() {
-        return getText() + "\n";
+        return writeToString();
+    }
+
+    @Override
+    public void writeTo(final Appendable output) throws IOException {
+        output.append(getText()).append('\n');
     }
 }
@@ -21,10 +21,15 @@ package org.jboss.pressgang.ccms.contentspec;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.jboss.pressgang.ccms.contentspec.enums.LevelType;
 import org.jboss.pressgang.ccms.contentspec.utils.ContentSpecUtilities;
@@ -58,6 +63,10 @@ public class Level extends SpecNodeWithRelationships {
     protected final LinkedList<Node> nodes = new LinkedList<Node>();
     protected final LevelType type;
     protected String translatedTitle;
+    /**
+     * The steps of the nodes in the levels tree, which are only stored on the root level of the tree.
+     */
+    private volatile Map<Node, Integer> cachedSteps = null;
     protected String externalTargetId;
     protected InfoTopic infoTopic;
 
@@ -139,6 +148,16 @@ public class Level extends SpecNodeWithRelationships {
         return retValue;
     }
 
+    /**
+     * Adds the Content Specification Topics that exist within the level to a collection, in the same order as
+     * {@link #getSpecTopics()}, without creating a copy of the levels topics.
+     *
+     * @param specTopics The collection to add the topics to.
+     */
+    void addSpecTopicsTo(final Collection<? super SpecTopic> specTopics) {
+        specTopics.addAll(topics);
+    }
+
     /**
      * Adds a Content Specification Topic to the Level. If the Topic already has a parent, then it is removed from that parent
      * and added to this level.
@@ -152,6 +171,7 @@ public class Level extends SpecNodeWithRelationships {
             ((Level) specTopic.getParent()).removeSpecTopic(specTopic);
         }
         specTopic.setParent(this);
+        childNodeAdded(specTopic);
     }
 
     /**
@@ -160,6 +180,7 @@ public class Level extends SpecNodeWithRelationships {
      * @param specTopic The Content Specification Topic to be removed from the level.
      */
     public void removeSpecTopic(final SpecTopic specTopic) {
+        childNodeRemoved(specTopic);
         topics.remove(specTopic);
         nodes.remove(specTopic);
         specTopic.setParent(null);
@@ -191,6 +212,7 @@ public class Level extends SpecNodeWithRelationships {
                 child.removeParent();
             }
             child.setParent(this);
+            childNodeAdded(child);
         } else if (child instanceof SpecTopic) {
             appendSpecTopic((SpecTopic) child);
         } else if (child instanceof CommonContent) {
@@ -201,12 +223,14 @@ public class Level extends SpecNodeWithRelationships {
                 child.removeParent();
             }
             child.setParent(this);
+            childNodeAdded(child);
         } else {
             nodes.add(child);
             if (child.getParent() != null) {
                 child.removeParent();
             }
             child.setParent(this);
+            childNodeAdded(child);
         }
     }
 
@@ -217,16 +241,19 @@ public class Level extends SpecNodeWithRelationships {
      */
     public void removeChild(final Node child) {
         if (child instanceof Level) {
+            childNodeRemoved(child);
             levels.remove(child);
             nodes.remove(child);
             child.setParent(null);
         } else if (child instanceof SpecTopic) {
             removeSpecTopic((SpecTopic) child);
         } else if (child instanceof CommonContent) {
+            childNodeRemoved(child);
             commonContents.remove(child);
             nodes.remove(child);
             child.setParent(null);
         } else {
+            childNodeRemoved(child);
             nodes.remove(child);
             child.setParent(null);
         }
@@ -290,12 +317,112 @@ public class Level extends SpecNodeWithRelationships {
             } else {
                 nodes.add(index - 1, newNode);
             }
+            childNodeAdded(newNode);
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Updates the cached state of the levels tree after a node has been added to the level. This adds the node to the node
+     * index of the Content Specification, if the index has been built, and clears the cached steps.
+     *
+     * @param node The node that was added to the level.
+     */
+    protected void childNodeAdded(final Node node) {
+        final SpecNodeIndex index = findSpecNodeIndex(false);
+        if (index != null) {
+            index.addNode(node);
+        }
+        invalidateSteps(node);
+    }
+
+    /**
+     * Updates the cached state of the levels tree before a node is removed from the level. This removes the node from the
+     * node index of the Content Specification, if the index has been built, and clears the cached steps.
+     *
+     * @param node The node that is being removed from the level.
+     */
+    protected void childNodeRemoved(final Node node) {
+        final SpecNodeIndex index = findSpecNodeIndex(false);
+        if (index != null) {
+            index.removeNode(node);
+        }
+        invalidateSteps(node);
+    }
+
+    /**
+     * Clears the cached steps for the tree that a node belongs to. If the node is a level, then any steps cached by the level
+     * itself are cleared as well, since the level may no longer be the root of its tree.
+     *
+     * @param node The node that has been added to or removed from the tree.
+     */
+    private void invalidateSteps(final Node node) {
+        Level level = node instanceof Level ? (Level) node : this;
+        while (level != null) {
+            level.cachedSteps = null;
+            level = level.getParent();
+        }
+    }
+
+    /**
+     * Gets the step of a node stored directly within the level. The steps for the entire tree that the level belongs to are
+     * calculated in a single pass the first time a step is requested, and are cached until the tree is modified.
+     *
+     * @param node The node to get the step for.
+     * @return The step of the node, or null if the node isn't stored directly within the level.
+     */
+    protected Integer getChildNodeStep(final Node node) {
+        Level rootLevel = this;
+        while (rootLevel.getParent() != null) {
+            rootLevel = rootLevel.getParent();
+        }
+
+        Map<Node, Integer> steps = rootLevel.cachedSteps;
+        if (steps == null) {
+            steps = new IdentityHashMap<Node, Integer>();
+            calculateSteps(rootLevel, 0, steps);
+            rootLevel.cachedSteps = steps;
+        }
+
+        // The cached steps are relative to the root level, since the root levels step can change independently of the tree
+        final Integer step = steps.get(node);
+        if (step == null) {
+            return null;
+        } else {
+            final Integer rootStep = rootLevel.getStep();
+            return (rootStep == null ? 0 : rootStep) + step;
+        }
+    }
+
+    /**
+     * Calculates the steps for the nodes in a level and its child levels, relative to the root level of the tree.
+     *
+     * @param level     The level to calculate the steps for.
+     * @param levelStep The step of the level itself, relative to the root level.
+     * @param steps     The map to store the calculated steps in.
+     * @return The total number of child nodes for the level and its child levels.
+     */
+    private static int calculateSteps(final Level level, final int levelStep, final Map<Node, Integer> steps) {
+        int totalNumberOfChildren = level.nodes.size();
+        int previousStep = levelStep;
+        for (final Node node : level.nodes) {
+            final int step = previousStep + 1;
+            steps.put(node, step);
+            previousStep = step;
+
+            // If the node is a level then the next node comes after all of the nodes it contains
+            if (node instanceof Level) {
+                final int numberOfChildren = calculateSteps((Level) node, step, steps);
+                previousStep += numberOfChildren;
+                totalNumberOfChildren += numberOfChildren;
+            }
+        }
+
+        return totalNumberOfChildren;
+    }
+
     public SpecNode getFirstSpecNode() {
         for (final Node node : nodes) {
             if (node instanceof SpecNode) {
@@ -384,6 +511,11 @@ public class Level extends SpecNodeWithRelationships {
         return Collections.unmodifiableList(nodes);
     }
 
+    @Override
+    protected Collection<? extends Node> getTreeChildNodes() {
+        return nodes;
+    }
+
     /**
      * Gets the total number of Children nodes for the level and its child levels.
      *
@@ -461,28 +593,14 @@ public class Level extends SpecNodeWithRelationships {
         if (getParent() == null) {
             return null;
         } else {
-            Integer previousNode = 0;
-
-            // Get the position of the level in its parents nodes
-            Integer nodePos = getParent().nodes.indexOf(this);
-
-            // If the level isn't the first node then get the previous nodes step
-            if (nodePos > 0) {
-                Node node = getParent().nodes.get(nodePos - 1);
-                previousNode = node.getStep();
-                // If the add node is a level then add the number of nodes it contains
-                if (node instanceof Level) {
-                    previousNode = (previousNode == null ? 0 : previousNode) + ((Level) node).getTotalNumberOfChildren();
-                }
-                // The node is the first item so use the parent levels step
+            final Integer step = getParent().getChildNodeStep(this);
+            if (step != null) {
+                return step;
             } else {
-                previousNode = getParent().getStep();
+                // The level isn't in its parents nodes, so use the parent levels step
+                final Integer parentStep = getParent().getStep();
+                return (parentStep == null ? 0 : parentStep) + 1;
             }
-            // Make sure the previous nodes step isn't 0
-            previousNode = previousNode == null ? 0 : previousNode;
-
-            // Add one since we got the previous nodes step
-            return previousNode + 1;
         }
     }
 
@@ -518,7 +636,7 @@ public class Level extends SpecNodeWithRelationships {
         }
 
         // Append any relationship text
-        output.append(getRelationshipText(getSpacer() + SPACER));
+        output.append(getRelationshipText(getNestedSpacer()));
 
         setText(output.toString());
         return text;
@@ -531,19 +649,20 @@ public class Level extends SpecNodeWithRelationships {
      */
     @Override
     public String toString() {
-        final StringBuilder output = new StringBuilder();
+        return writeToString();
+    }
+
+    @Override
+    public void writeTo(final Appendable output) throws IOException {
         if (type != LevelType.BASE) {
-            output.append(getSpacer());
+            writeSpacerTo(output);
             output.append(getText());
-            output.append("\n");
+            output.append('\n');
         }
 
         for (final Node node : nodes) {
-            final String nodeOutput = node.toString();
-            output.append(nodeOutput);
+            node.writeTo(output);
         }
-
-        return output.toString();
     }
 
     @Override
@@ -560,7 +679,17 @@ public class Level extends SpecNodeWithRelationships {
      * @return TODO
      */
     public SpecTopic getClosestTopic(final SpecTopic topic, final boolean checkParentNode) {
-        return getClosestTopic(topic, this, checkParentNode);
+        final SpecNodeIndex index = findSpecNodeIndex(true);
+        if (index == null || topic.getId() == null) {
+            return getClosestTopic(topic, this, checkParentNode);
+        }
+
+        final SpecTopic closestTopic = getClosestIndexedNode(index.getSpecTopicsById(topic.getId()), checkParentNode, false);
+        if (closestTopic == null && (checkParentNode || this instanceof BaseLevel)) {
+            return getIndexedBaseLevel().getMetaDataTopic(topic);
+        } else {
+            return closestTopic;
+        }
     }
 
     /**
@@ -616,7 +745,17 @@ public class Level extends SpecNodeWithRelationships {
      * @return The closest available SpecTopic that matches the DBId otherwise null.
      */
     public SpecTopic getClosestTopicByDBId(final Integer DBId, final boolean checkParentNode) {
-        return getClosestTopicByDBId(DBId, this, checkParentNode);
+        final SpecNodeIndex index = findSpecNodeIndex(true);
+        if (index == null) {
+            return getClosestTopicByDBId(DBId, this, checkParentNode);
+        }
+
+        final SpecTopic closestTopic = getClosestIndexedNode(index.getSpecTopicsByDBId(DBId), checkParentNode, false);
+        if (closestTopic == null && (checkParentNode || this instanceof BaseLevel)) {
+            return getIndexedBaseLevel().getMetaDataTopicByDBId(DBId);
+        } else {
+            return closestTopic;
+        }
     }
 
     /**
@@ -672,7 +811,17 @@ public class Level extends SpecNodeWithRelationships {
      * @return The closest available SpecTopic that matches the DBId otherwise null.
      */
     public SpecNode getClosestSpecNodeByTargetId(final String targetId, final boolean checkParentNode) {
-        return getClosestSpecNodeByTargetId(targetId, this, checkParentNode);
+        final SpecNodeIndex index = findSpecNodeIndex(true);
+        if (index == null) {
+            return getClosestSpecNodeByTargetId(targetId, this, checkParentNode);
+        }
+
+        final SpecNode closestNode = getClosestIndexedNode(index.getSpecNodesByTargetId(targetId), checkParentNode, true);
+        if (closestNode == null && (checkParentNode || this instanceof BaseLevel)) {
+            return getIndexedBaseLevel().getMetaDataSpecNodeByTargetId(targetId);
+        } else {
+            return closestNode;
+        }
     }
 
     /**
@@ -723,6 +872,115 @@ public class Level extends SpecNodeWithRelationships {
         return null;
     }
 
+    /**
+     * Gets the base level that this level belongs to.
+     *
+     * @return The base level at the top of this levels tree.
+     */
+    private BaseLevel getIndexedBaseLevel() {
+        Level level = this;
+        while (level.getParent() != null) {
+            level = level.getParent();
+        }
+        return (BaseLevel) level;
+    }
+
+    /**
+     * Finds the closest node out of a set of indexed nodes. The closest node is the node that would be found first when searching
+     * this level, its child levels and then its parents, so the result is the same as searching the levels recursively.
+     *
+     * @param candidates        The indexed nodes that match the value being searched for.
+     * @param checkParentNode   If the levels parents should be checked as well.
+     * @param useChildNodeOrder If nodes directly in a level are checked in the order of the levels child nodes, instead of the order
+     *                          of the levels topics.
+     * @return The closest matching node, or null if none of the candidates are in range.
+     */
+    private <T extends SpecNode> T getClosestIndexedNode(final List<T> candidates, final boolean checkParentNode,
+            final boolean useChildNodeOrder) {
+        if (candidates.isEmpty()) return null;
+
+        // Work out how far away each of the levels that will be searched is from this level
+        final Map<Node, Integer> levelDistances = new HashMap<Node, Integer>();
+        int distance = 0;
+        for (Level level = this; level != null; level = checkParentNode ? level.getParent() : null) {
+            levelDistances.put(level, distance++);
+        }
+
+        T closestNode = null;
+        int closestDistance = Integer.MAX_VALUE;
+        for (final T candidate : candidates) {
+            // Find the first level, of the levels that will be searched, that contains the candidate
+            Node ancestor = candidate.getParent();
+            while (ancestor != null && !levelDistances.containsKey(ancestor)) {
+                ancestor = ancestor.getParent();
+            }
+            if (ancestor == null) continue;
+
+            final int candidateDistance = levelDistances.get(ancestor);
+            if (candidateDistance < closestDistance || (candidateDistance == closestDistance && compareSearchOrder((Level) ancestor,
+                    candidate, closestNode, useChildNodeOrder) < 0)) {
+                closestNode = candidate;
+                closestDistance = candidateDistance;
+            }
+        }
+
+        return closestNode;
+    }
+
+    /**
+     * Compares the order that two nodes would be found in, when recursively searching a level. Nodes directly in a level are
+     * searched before the levels child levels.
+     *
+     * @param level             The level that contains both nodes.
+     * @param node1             The first node to compare.
+     * @param node2             The second node to compare.
+     * @param useChildNodeOrder If nodes directly in a level are checked in the order of the levels child nodes, instead of the order
+     *                          of the levels topics.
+     * @return A negative number if node1 would be found first, or a positive number if node2 would be found first.
+     */
+    private static int compareSearchOrder(final Level level, final Node node1, final Node node2, final boolean useChildNodeOrder) {
+        final List<Node> path1 = getPathFromLevel(level, node1);
+        final List<Node> path2 = getPathFromLevel(level, node2);
+
+        Level currentLevel = level;
+        for (int i = 0; i < path1.size() && i < path2.size(); i++) {
+            final Node pathNode1 = path1.get(i);
+            final Node pathNode2 = path2.get(i);
+            final boolean direct1 = pathNode1 == node1;
+            final boolean direct2 = pathNode2 == node2;
+
+            if (direct1 && direct2) {
+                final List<? extends Node> directNodes = useChildNodeOrder ? currentLevel.getChildNodes() : currentLevel.getSpecTopics();
+                return directNodes.indexOf(pathNode1) - directNodes.indexOf(pathNode2);
+            } else if (direct1) {
+                return -1;
+            } else if (direct2) {
+                return 1;
+            } else if (pathNode1 != pathNode2) {
+                return currentLevel.levels.indexOf(pathNode1) - currentLevel.levels.indexOf(pathNode2);
+            } else {
+                currentLevel = (Level) pathNode1;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Gets the path of nodes from a level down to one of its descendants.
+     *
+     * @param level The level to start from.
+     * @param node  The descendant node.
+     * @return The list of nodes below the level that lead to the node, including the node itself.
+     */
+    private static List<Node> getPathFromLevel(final Level level, final Node node) {
+        final LinkedList<Node> path = new LinkedList<Node>();
+        for (Node pathNode = node; pathNode != null && pathNode != level; pathNode = pathNode.getParent()) {
+            path.addFirst(pathNode);
+        }
+        return path;
+    }
+
     /**
      * Checks to see if a SpecTopic exists within this level or its children.
      *
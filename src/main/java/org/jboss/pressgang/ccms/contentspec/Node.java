@@ -19,6 +19,10 @@
 
 package org.jboss.pressgang.ccms.contentspec;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
 /**
  * A very basic class that represents the lowest form of a Node in a Content Specification.
  *
@@ -26,12 +30,17 @@ package org.jboss.pressgang.ccms.contentspec;
  */
 public abstract class Node {
     protected static final String SPACER = "  ";
+    /**
+     * A shared table of the spacers for each indentation size, which is expanded as deeper nodes are serialised.
+     */
+    private static volatile String[] spacers = {"", SPACER, SPACER + SPACER, SPACER + SPACER + SPACER};
 
     protected int lineNumber;
     protected String text;
     protected Node parent;
     protected String uniqueId = null;
     protected String translationUniqueId = null;
+    private volatile int depth = 0;
 
     protected Node(final int lineNumber, final String text) {
         this.lineNumber = lineNumber;
@@ -107,6 +116,39 @@ public abstract class Node {
      */
     protected void setParent(final Node parent) {
         this.parent = parent;
+
+        // Moving a node changes the details it inherits, for both it and its children
+        ancestorsChanged();
+    }
+
+    /**
+     * Updates the details the node calculates from its ancestors, such as its depth, after its ancestors have changed. The change
+     * is passed on to all the nodes children.
+     */
+    protected void ancestorsChanged() {
+        depth = parent == null ? 0 : (parent.depth + 1);
+        for (final Node childNode : getTreeChildNodes()) {
+            childNode.ancestorsChanged();
+        }
+    }
+
+    /**
+     * Notifies the node that the options it inherits have changed. The change is passed on to all the nodes children.
+     */
+    protected void inheritedOptionsChanged() {
+        for (final Node childNode : getTreeChildNodes()) {
+            childNode.inheritedOptionsChanged();
+        }
+    }
+
+    /**
+     * Gets the nodes that are directly contained in this node, which need to be updated when the ancestors or
+     * inherited options of this node change.
+     *
+     * @return The nodes that are directly contained in this node.
+     */
+    protected Collection<? extends Node> getTreeChildNodes() {
+        return Collections.emptyList();
     }
 
     /**
@@ -115,7 +157,7 @@ public abstract class Node {
      * @return The column the node starts at.
      */
     public Integer getColumn() {
-        return parent == null ? 0 : (parent.getColumn() + 1);
+        return depth;
     }
 
     /**
@@ -129,7 +171,16 @@ public abstract class Node {
      * @param uniqueId The Unique Content Specification Topic ID.
      */
     public void setUniqueId(final String uniqueId) {
+        final String oldUniqueId = this.uniqueId;
         this.uniqueId = uniqueId == null ? null : uniqueId.replaceAll("[^\\w\\d\\-]", "");
+
+        // Keep the content specs node index up to date
+        if (parent != null) {
+            final SpecNodeIndex index = findSpecNodeIndex(false);
+            if (index != null) {
+                index.updateUniqueId(this, oldUniqueId);
+            }
+        }
     }
 
     /**
@@ -159,17 +210,103 @@ public abstract class Node {
         return translationUniqueId;
     }
 
+    /**
+     * Finds the node index for the Content Specification that this node belongs to.
+     *
+     * @param build If the index should be built, if it hasn't been built already.
+     * @return The node index, or null if the node isn't part of a Content Specification's levels or the index hasn't been built.
+     */
+    SpecNodeIndex findSpecNodeIndex(final boolean build) {
+        Node node = this;
+        while (node.getParent() instanceof Level) {
+            node = node.getParent();
+        }
+        return node instanceof BaseLevel ? ((BaseLevel) node).getSpecNodeIndex(build) : null;
+    }
+
+    /**
+     * Writes the String representation of the node to an output. Nodes that contain other nodes write their children directly
+     * to the same output, so no intermediate strings are built for the children.
+     *
+     * @param output The output to write the node to.
+     * @throws IOException Thrown if the node can't be written to the output.
+     */
+    public void writeTo(final Appendable output) throws IOException {
+        output.append(toString());
+    }
+
+    /**
+     * Builds the String representation of the node, using the nodes {@link #writeTo(Appendable)} method.
+     *
+     * @return The String representation of the node.
+     */
+    protected String writeToString() {
+        final StringBuilder output = new StringBuilder();
+        try {
+            writeTo(output);
+        } catch (IOException e) {
+            // This should never happen, since a StringBuilder doesn't throw IOExceptions
+            throw new IllegalStateException(e);
+        }
+        return output.toString();
+    }
+
+    /**
+     * Writes the spacer to append before the node to an output.
+     *
+     * @param output The output to write the spacer to.
+     * @throws IOException Thrown if the spacer can't be written to the output.
+     */
+    protected void writeSpacerTo(final Appendable output) throws IOException {
+        output.append(getSpacer());
+    }
+
     /**
      * Gets the spacer string to append before nodes in their toString methods.
      *
      * @return A string containing the amount of space to use for the node.
      */
     protected String getSpacer() {
-        final StringBuilder output = new StringBuilder();
-        final int indentationSize = parent != null ? getColumn() : 0;
-        for (int i = 1; i < indentationSize; i++) {
-            output.append(SPACER);
+        return getSpacer(getIndentationSize());
+    }
+
+    /**
+     * Gets the spacer string to append before content nested inside the node, such as relationships.
+     *
+     * @return A string containing the amount of space to use for content nested inside the node.
+     */
+    protected String getNestedSpacer() {
+        return getSpacer(getIndentationSize() + 1);
+    }
+
+    private int getIndentationSize() {
+        return parent != null ? depth - 1 : 0;
+    }
+
+    /**
+     * Gets the spacer string for an indentation size from the shared spacer table.
+     *
+     * @param indentationSize The number of spacers to indent by.
+     * @return A string containing the spacers for the indentation size.
+     */
+    protected static String getSpacer(final int indentationSize) {
+        if (indentationSize <= 0) return "";
+
+        String[] table = spacers;
+        if (indentationSize >= table.length) {
+            synchronized (Node.class) {
+                table = spacers;
+                if (indentationSize >= table.length) {
+                    final String[] newTable = new String[Math.max(indentationSize + 1, table.length * 2)];
+                    System.arraycopy(table, 0, newTable, 0, table.length);
+                    for (int i = table.length; i < newTable.length; i++) {
+                        newTable[i] = newTable[i - 1] + SPACER;
+                    }
+                    spacers = newTable;
+                    table = newTable;
+                }
+            }
         }
-        return output.toString();
+        return table[indentationSize];
     }
 }
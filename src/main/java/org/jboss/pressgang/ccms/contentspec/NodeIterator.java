@@ -0,0 +1,126 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator that walks all the nodes below a level in pre-order (ie document order), returning only the nodes that match a type.
+ * The tree is walked as the iterator is advanced, so no intermediate lists of nodes are created.
+ * <p/>
+ * Note: The level tree shouldn't be modified while it is being iterated over, and as the iterator is its own Iterable it can only be
+ * iterated over once.
+ *
+ * @param <T> The type of nodes to return.
+ */
+public class NodeIterator<T> implements Iterator<T>, Iterable<T> {
+    private final Class<T> type;
+    private final boolean includeInfoTopics;
+    private final List<Iterator<Node>> levelIterators = new ArrayList<Iterator<Node>>();
+    private InfoTopic pendingInfoTopic;
+    private T next;
+
+    /**
+     * Create an iterator over all the nodes of a specific type below a level. The level itself is not included.
+     *
+     * @param level The level to iterate over.
+     * @param type  The type of nodes to return.
+     */
+    public NodeIterator(final Level level, final Class<T> type) {
+        this(level, type, false);
+    }
+
+    /**
+     * Create an iterator over all the nodes of a specific type below a level. The level itself is not included.
+     *
+     * @param level             The level to iterate over.
+     * @param type              The type of nodes to return.
+     * @param includeInfoTopics If the info topics for the levels should be included. If so the info topic will be returned directly
+     *                          after the level it belongs to.
+     */
+    public NodeIterator(final Level level, final Class<T> type, final boolean includeInfoTopics) {
+        this.type = type;
+        this.includeInfoTopics = includeInfoTopics;
+        enterLevel(level);
+        advance();
+    }
+
+    private void enterLevel(final Level level) {
+        levelIterators.add(level.nodes.iterator());
+        if (includeInfoTopics && level.getInfoTopic() != null) {
+            pendingInfoTopic = level.getInfoTopic();
+        }
+    }
+
+    private void advance() {
+        next = null;
+        while (next == null) {
+            if (pendingInfoTopic != null) {
+                final InfoTopic infoTopic = pendingInfoTopic;
+                pendingInfoTopic = null;
+                if (type.isInstance(infoTopic)) {
+                    next = type.cast(infoTopic);
+                }
+            } else if (levelIterators.isEmpty()) {
+                return;
+            } else {
+                final Iterator<Node> levelIterator = levelIterators.get(levelIterators.size() - 1);
+                if (!levelIterator.hasNext()) {
+                    levelIterators.remove(levelIterators.size() - 1);
+                } else {
+                    final Node node = levelIterator.next();
+                    if (node instanceof Level) {
+                        enterLevel((Level) node);
+                    }
+                    if (type.isInstance(node)) {
+                        next = type.cast(node);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (next == null) throw new NoSuchElementException();
+
+        final T retValue = next;
+        advance();
+        return retValue;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+}
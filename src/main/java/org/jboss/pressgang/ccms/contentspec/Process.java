@@ -19,6 +19,10 @@
 
 package org.jboss.pressgang.ccms.contentspec;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -67,10 +71,12 @@ public class Process extends Level {
         topics.put(specTopic.getUniqueId(), specTopic);
         nodes.add(specTopic);
         specTopic.setParent(this);
+        childNodeAdded(specTopic);
     }
 
     @Override
     public void removeSpecTopic(final SpecTopic specTopic) {
+        childNodeRemoved(specTopic);
         topics.remove(specTopic.getUniqueId());
         nodes.remove(specTopic);
         specTopic.setParent(null);
@@ -112,6 +118,46 @@ public class Process extends Level {
         return topicList;
     }
 
+    @Override
+    void addSpecTopicsTo(final Collection<? super SpecTopic> specTopics) {
+        specTopics.addAll(topics.values());
+    }
+
+    /**
+     * Gets the database ids of all the topics in the process that need to be looked up from the database when processing the
+     * topics. That is the existing, cloned and cloned duplicate topics.
+     *
+     * @return A List of topic database ids.
+     */
+    public List<Integer> getExistingTopicDBIds() {
+        final List<Integer> topicIds = new ArrayList<Integer>();
+        for (final SpecTopic specTopic : topics.values()) {
+            final Integer topicId = getExistingTopicDBId(specTopic);
+            if (topicId != null) {
+                topicIds.add(topicId);
+            }
+        }
+        return topicIds;
+    }
+
+    /**
+     * Gets the database id that should be used to look up a process topic.
+     *
+     * @param specTopic The process topic to get the database id for.
+     * @return The database id for existing, cloned or cloned duplicate topics, otherwise null.
+     */
+    private static Integer getExistingTopicDBId(final SpecTopic specTopic) {
+        if (specTopic.isTopicAClonedTopic()) {
+            return Integer.parseInt(specTopic.getId().substring(1));
+        } else if (specTopic.isTopicAClonedDuplicateTopic()) {
+            return Integer.parseInt(specTopic.getId().substring(2));
+        } else if (specTopic.isTopicAnExistingTopic()) {
+            return specTopic.getDBId();
+        } else {
+            return null;
+        }
+    }
+
     /**
      * Processes a processes topics and creates the targets and relationships
      *
@@ -123,6 +169,23 @@ public class Process extends Level {
      */
     public boolean processTopics(final Map<String, SpecTopic> specTopics, final Map<String, SpecTopic> topicTargets,
             final TopicProvider topicDataProvider, final ServerSettingsProvider serverSettingsProvider) {
+        return processTopics(specTopics, topicTargets, Collections.<Integer, TopicWrapper>emptyMap(), topicDataProvider,
+                serverSettingsProvider);
+    }
+
+    /**
+     * Processes a processes topics and creates the targets and relationships
+     *
+     * @param specTopics        A mapping of all the topics in a content specification to their unique ids
+     * @param topicTargets      The topic targets that already exist in a content specification
+     * @param prefetchedTopics  A mapping of topic ids to topics that have already been looked up from the database
+     * @param topicDataProvider A TopicProvider object that is used to access database objects via the REST Interface
+     * @param serverSettingsProvider A TopicProvider object that is used to access the server settings.
+     * @return True if everything loaded successfully otherwise false
+     */
+    public boolean processTopics(final Map<String, SpecTopic> specTopics, final Map<String, SpecTopic> topicTargets,
+            final Map<Integer, TopicWrapper> prefetchedTopics, final TopicProvider topicDataProvider,
+            final ServerSettingsProvider serverSettingsProvider) {
         // Check if the topics have already been processed. If so then don't re-process them.
         if (isTopicsProcessed()) return true;
 
@@ -137,14 +200,13 @@ public class Process extends Level {
 
             // If the topic is an existing or cloned topic then use the database information
             if (specTopic.isTopicAnExistingTopic() || specTopic.isTopicAClonedTopic() || specTopic.isTopicAClonedDuplicateTopic()) {
-                // Get the topic information from the database
+                // Get the topic information from the prefetched topics, or the database if it wasn't prefetched
+                final Integer topicId = getExistingTopicDBId(specTopic);
                 final TopicWrapper topic;
-                if (specTopic.isTopicAClonedTopic()) {
-                    topic = topicDataProvider.getTopic(Integer.parseInt(specTopic.getId().substring(1)), null);
-                } else if (specTopic.isTopicAClonedDuplicateTopic()) {
-                    topic = topicDataProvider.getTopic(Integer.parseInt(specTopic.getId().substring(2)), null);
+                if (prefetchedTopics.containsKey(topicId)) {
+                    topic = prefetchedTopics.get(topicId);
                 } else {
-                    topic = topicDataProvider.getTopic(specTopic.getDBId(), null);
+                    topic = topicDataProvider.getTopic(topicId, null);
                 }
 
                 if (topic != null) {
@@ -219,14 +281,17 @@ public class Process extends Level {
 
     @Override
     public String toString() {
-        final StringBuilder output = new StringBuilder();
-        output.append(getSpacer());
+        return writeToString();
+    }
+
+    @Override
+    public void writeTo(final Appendable output) throws IOException {
+        writeSpacerTo(output);
         output.append(getText());
-        output.append("\n");
+        output.append('\n');
 
         for (final Node node : nodes) {
-            output.append(node.toString());
+            node.writeTo(output);
         }
-        return output.toString();
     }
 }
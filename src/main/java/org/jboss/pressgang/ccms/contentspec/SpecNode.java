@@ -22,7 +22,9 @@ package org.jboss.pressgang.ccms.contentspec;
 import static org.jboss.pressgang.ccms.utils.common.StringUtilities.isStringNullOrEmpty;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.jboss.pressgang.ccms.utils.common.StringUtilities;
 
@@ -42,6 +44,7 @@ public abstract class SpecNode extends Node implements IOptionsNode {
     protected String title;
     protected String duplicateId;
     protected String fixedUrl;
+    private volatile InheritedOptions inheritedOptions;
 
     protected SpecNode(final int lineNumber, final String text) {
         super(lineNumber, text);
@@ -95,7 +98,16 @@ public abstract class SpecNode extends Node implements IOptionsNode {
      * @param targetId The Target ID for the Node.
      */
     public void setTargetId(final String targetId) {
+        final String oldTargetId = this.targetId;
         this.targetId = targetId;
+
+        // Keep the content specs node index up to date
+        if (parent != null) {
+            final SpecNodeIndex index = findSpecNodeIndex(false);
+            if (index != null) {
+                index.updateTargetId(this, oldTargetId);
+            }
+        }
     }
 
     /**
@@ -128,18 +140,13 @@ public abstract class SpecNode extends Node implements IOptionsNode {
     @Override
     public void setDescription(final String desc) {
         description = desc;
+        invalidateInheritedOptions();
     }
 
     @Override
     public String getDescription(final boolean useInherited) {
-        if (description == null && parent != null && useInherited) {
-            if (parent instanceof ContentSpec) {
-                return ((ContentSpec) parent).getBaseLevel().getDescription(true);
-            } else if (parent instanceof KeyValueNode) {
-                return ((KeyValueNode) parent).getParent().getBaseLevel().getDescription(true);
-            } else {
-                return ((SpecNode) parent).getDescription(true);
-            }
+        if (description == null && useInherited) {
+            return getInheritedOptions().description;
         } else {
             return description;
         }
@@ -148,18 +155,13 @@ public abstract class SpecNode extends Node implements IOptionsNode {
     @Override
     public void setAssignedWriter(final String writer) {
         assignedWriter = writer;
+        invalidateInheritedOptions();
     }
 
     @Override
     public String getAssignedWriter(final boolean useInherited) {
-        if (assignedWriter == null && parent != null && useInherited) {
-            if (parent instanceof ContentSpec) {
-                return ((ContentSpec) parent).getBaseLevel().getAssignedWriter(true);
-            } else if (parent instanceof KeyValueNode) {
-                return ((KeyValueNode) parent).getParent().getBaseLevel().getAssignedWriter(true);
-            } else {
-                return ((SpecNode) parent).getAssignedWriter(true);
-            }
+        if (assignedWriter == null && useInherited) {
+            return getInheritedOptions().assignedWriter;
         }
         return assignedWriter;
     }
@@ -167,72 +169,57 @@ public abstract class SpecNode extends Node implements IOptionsNode {
     @Override
     public void setTags(final List<String> tags) {
         this.tags = tags;
+        invalidateInheritedOptions();
     }
 
     @Override
     public List<String> getTags(final boolean useInherited) {
-        List<String> temp = new ArrayList<String>();
-        // Get the inherited tags
-        if (useInherited && parent != null) {
-            if (parent instanceof ContentSpec) {
-                temp = ((ContentSpec) super.getParent()).getBaseLevel().getTags(true);
-            } else if (parent instanceof KeyValueNode) {
-                temp = ((KeyValueNode) super.getParent()).getParent().getBaseLevel().getTags(true);
-            } else {
-                temp = ((SpecNode) getParent()).getTags(true);
-            }
+        if (useInherited) {
+            return new ArrayList<String>(getInheritedOptions().tags);
+        } else {
+            return calculateTags(new ArrayList<String>(), getRemoveTags(false));
         }
+    }
 
-        // If the local tags are null then just return the temp collection
+    /**
+     * Combine the tags for this node with a list of inherited tags, and then remove any tags that are set to be removed.
+     *
+     * @param inheritedTags The inherited tags. This list will be modified.
+     * @param removeTags    The tags to be removed.
+     * @return The combined list of tags.
+     */
+    private List<String> calculateTags(final List<String> inheritedTags, final List<String> removeTags) {
+        // If the local tags are null then just return the inherited tags
         if (tags == null) {
-            return temp;
+            return inheritedTags;
         } else {
-            temp.addAll(tags);
+            inheritedTags.addAll(tags);
 
             // Remove the tags that are set to be removed
+            final Set<String> removeTagSet = new HashSet<String>(removeTags);
             final List<String> newTags = new ArrayList<String>();
-            for (final String tagName : temp) {
-                final List<String> tempTags = getRemoveTags(useInherited);
-                boolean found = false;
-                for (final String removeTagName : tempTags) {
-                    if (removeTagName.equals(tagName)) {
-                        found = true;
-                    }
-                }
-                if (!found) {
+            for (final String tagName : inheritedTags) {
+                if (!removeTagSet.contains(tagName)) {
                     newTags.add(tagName);
                 }
             }
-            temp = newTags;
-            return temp;
+            return newTags;
         }
     }
 
     @Override
     public void setRemoveTags(final List<String> tags) {
         removeTags = tags;
+        invalidateInheritedOptions();
     }
 
     @Override
     public List<String> getRemoveTags(final boolean useInherited) {
-        List<String> temp = new ArrayList<String>();
-        // Get the parent remove tags if requested
-        if (useInherited && parent != null) {
-            if (parent instanceof ContentSpec) {
-                temp = ((ContentSpec) parent).getBaseLevel().getRemoveTags(true);
-            } else if (parent instanceof KeyValueNode) {
-                temp = ((KeyValueNode) parent).getParent().getBaseLevel().getRemoveTags(true);
-            } else {
-                temp = ((SpecNode) parent).getRemoveTags(true);
-            }
-        }
-
-        // Add any local remove tags
-        if (removeTags != null) {
-            temp.addAll(removeTags);
+        if (useInherited) {
+            return new ArrayList<String>(getInheritedOptions().removeTags);
+        } else {
+            return removeTags == null ? new ArrayList<String>() : new ArrayList<String>(removeTags);
         }
-
-        return temp;
     }
 
     /**
@@ -242,6 +229,7 @@ public abstract class SpecNode extends Node implements IOptionsNode {
      */
     public void setSourceUrls(final List<String> sourceUrls) {
         this.sourceUrls = sourceUrls;
+        invalidateInheritedOptions();
     }
 
     /**
@@ -251,24 +239,11 @@ public abstract class SpecNode extends Node implements IOptionsNode {
      * @return A List of Strings that represent the source urls
      */
     public List<String> getSourceUrls(boolean useInherited) {
-        List<String> temp = new ArrayList<String>();
-        // Get the parent source urls if requested
-        if (useInherited && parent != null) {
-            if (parent instanceof ContentSpec) {
-                temp = ((ContentSpec) parent).getBaseLevel().getSourceUrls(true);
-            } else if (parent instanceof KeyValueNode) {
-                temp = ((KeyValueNode) parent).getParent().getBaseLevel().getSourceUrls(true);
-            } else {
-                temp = ((SpecNode) parent).getSourceUrls(true);
-            }
-        }
-
-        // Add any local source urls
-        if (sourceUrls != null) {
-            temp.addAll(sourceUrls);
+        if (useInherited) {
+            return new ArrayList<String>(getInheritedOptions().sourceUrls);
+        } else {
+            return sourceUrls == null ? new ArrayList<String>() : new ArrayList<String>(sourceUrls);
         }
-
-        return temp;
     }
 
     @Override
@@ -293,6 +268,7 @@ public abstract class SpecNode extends Node implements IOptionsNode {
                 tags.add(name);
             }
         }
+        invalidateInheritedOptions();
         return true;
     }
 
@@ -315,6 +291,7 @@ public abstract class SpecNode extends Node implements IOptionsNode {
     public void addSourceUrl(final String url) {
         if (sourceUrls.contains(url)) return;
         sourceUrls.add(url);
+        invalidateInheritedOptions();
     }
 
     /**
@@ -324,11 +301,13 @@ public abstract class SpecNode extends Node implements IOptionsNode {
      */
     public void removeSourceUrl(final String url) {
         sourceUrls.remove(url);
+        invalidateInheritedOptions();
     }
 
     @Override
     public void setConditionStatement(final String condition) {
         this.condition = condition;
+        invalidateInheritedOptions();
     }
 
     @Override
@@ -338,22 +317,68 @@ public abstract class SpecNode extends Node implements IOptionsNode {
 
     @Override
     public String getConditionStatement(final boolean useInherited) {
-        if (condition == null && useInherited && parent != null) {
-            if (parent instanceof ContentSpec) {
-                return ((ContentSpec) parent).getBaseLevel().getConditionStatement(true);
-            } else if (parent instanceof KeyValueNode) {
-                final KeyValueNode<?> keyValueNode = ((KeyValueNode) parent);
-                if (keyValueNode.getParent() != null) {
-                    return keyValueNode.getParent().getBaseLevel().getConditionStatement(true);
-                } else {
-                    return null;
-                }
+        if (condition == null && useInherited) {
+            return getInheritedOptions().condition;
+        } else {
+            return condition;
+        }
+    }
+
+    /**
+     * Mark the inherited options for this node and its children as being out of date, so that they are recalculated the next time
+     * they are used. This should be called whenever an option changes.
+     */
+    protected void invalidateInheritedOptions() {
+        inheritedOptionsChanged();
+    }
+
+    @Override
+    protected void inheritedOptionsChanged() {
+        inheritedOptions = null;
+        super.inheritedOptionsChanged();
+    }
+
+    @Override
+    protected void ancestorsChanged() {
+        // Moving a node changes the options it inherits
+        inheritedOptions = null;
+        super.ancestorsChanged();
+    }
+
+    /**
+     * Gets the options for this node, with the options inherited from its parents applied. The options are cached and only
+     * recalculated if an option in this node or its parents has changed since they were last calculated. As the parents options
+     * are also cached, resolving the options for every node in a tree is done in a single top down pass.
+     *
+     * @return The inherited options for this node.
+     */
+    private InheritedOptions getInheritedOptions() {
+        InheritedOptions options = inheritedOptions;
+        if (options == null) {
+            options = new InheritedOptions(this, getParentInheritedOptions());
+            inheritedOptions = options;
+        }
+        return options;
+    }
+
+    private InheritedOptions getParentInheritedOptions() {
+        final SpecNode parentNode;
+        if (parent == null) {
+            return null;
+        } else if (parent instanceof ContentSpec) {
+            parentNode = ((ContentSpec) parent).getBaseLevel();
+        } else if (parent instanceof KeyValueNode) {
+            final KeyValueNode<?> keyValueNode = ((KeyValueNode) parent);
+            if (keyValueNode.getParent() != null) {
+                parentNode = keyValueNode.getParent().getBaseLevel();
             } else {
-                return ((SpecNode) parent).getConditionStatement(true);
+                return null;
             }
         } else {
-            return condition;
+            parentNode = (SpecNode) parent;
         }
+
+        return parentNode.getInheritedOptions();
     }
 
     /**
@@ -399,4 +424,41 @@ public abstract class SpecNode extends Node implements IOptionsNode {
     }
 
     public abstract String getUniqueLinkId(final boolean useFixedUrls);
+
+    /**
+     * The options for a node, after the options from its parents have been applied.
+     */
+    private static class InheritedOptions {
+        private final List<String> tags;
+        private final List<String> removeTags;
+        private final List<String> sourceUrls;
+        private final String condition;
+        private final String description;
+        private final String assignedWriter;
+
+        InheritedOptions(final SpecNode node, final InheritedOptions parentOptions) {
+            removeTags = parentOptions == null ? new ArrayList<String>() : new ArrayList<String>(parentOptions.removeTags);
+            if (node.removeTags != null) {
+                removeTags.addAll(node.removeTags);
+            }
+
+            sourceUrls = parentOptions == null ? new ArrayList<String>() : new ArrayList<String>(parentOptions.sourceUrls);
+            if (node.sourceUrls != null) {
+                sourceUrls.addAll(node.sourceUrls);
+            }
+
+            tags = node.calculateTags(parentOptions == null ? new ArrayList<String>() : new ArrayList<String>(parentOptions.tags),
+                    removeTags);
+
+            if (parentOptions == null) {
+                condition = node.condition;
+                description = node.description;
+                assignedWriter = node.assignedWriter;
+            } else {
+                condition = node.condition == null ? parentOptions.condition : node.condition;
+                description = node.description == null ? parentOptions.description : node.description;
+                assignedWriter = node.assignedWriter == null ? parentOptions.assignedWriter : node.assignedWriter;
+            }
+        }
+    }
 }
@@ -0,0 +1,186 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.contentspec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the nodes in a Content Specification's levels, that allows nodes to be looked up by their topic id,
+ * topic database id, target id and unique id without having to search the whole Content Specification.
+ * <p/>
+ * Note: Each key can map to multiple nodes, as topics can be used more than once in a Content Specification. The nodes for a key
+ * are not stored in any particular order.
+ */
+class SpecNodeIndex {
+    private final Map<String, List<SpecTopic>> topicsById = new HashMap<String, List<SpecTopic>>();
+    private final Map<Integer, List<SpecTopic>> topicsByDBId = new HashMap<Integer, List<SpecTopic>>();
+    private final Map<String, List<SpecNode>> specNodesByTargetId = new HashMap<String, List<SpecNode>>();
+    private final Map<String, List<Node>> nodesByUniqueId = new HashMap<String, List<Node>>();
+
+    /**
+     * Adds a node, and if the node is a level, all of its children to the index.
+     *
+     * @param node The node to be added.
+     */
+    public void addNode(final Node node) {
+        if (node.getUniqueId() != null) {
+            addToIndex(nodesByUniqueId, node.getUniqueId(), node);
+        }
+
+        if (node instanceof SpecNode) {
+            final SpecNode specNode = (SpecNode) node;
+            if (specNode.getTargetId() != null) {
+                addToIndex(specNodesByTargetId, specNode.getTargetId(), specNode);
+            }
+        }
+
+        if (node instanceof SpecTopic) {
+            final SpecTopic specTopic = (SpecTopic) node;
+            if (specTopic.getId() != null) {
+                addToIndex(topicsById, specTopic.getId(), specTopic);
+            }
+            if (specTopic.getDBId() != null) {
+                addToIndex(topicsByDBId, specTopic.getDBId(), specTopic);
+            }
+        } else if (node instanceof Level) {
+            for (final Node childNode : ((Level) node).getChildNodes()) {
+                addNode(childNode);
+            }
+        }
+    }
+
+    /**
+     * Removes a node, and if the node is a level, all of its children from the index.
+     *
+     * @param node The node to be removed.
+     */
+    public void removeNode(final Node node) {
+        removeFromIndex(nodesByUniqueId, node.getUniqueId(), node);
+
+        if (node instanceof SpecNode) {
+            removeFromIndex(specNodesByTargetId, ((SpecNode) node).getTargetId(), (SpecNode) node);
+        }
+
+        if (node instanceof SpecTopic) {
+            final SpecTopic specTopic = (SpecTopic) node;
+            removeFromIndex(topicsById, specTopic.getId(), specTopic);
+            removeFromIndex(topicsByDBId, specTopic.getDBId(), specTopic);
+        } else if (node instanceof Level) {
+            for (final Node childNode : ((Level) node).getChildNodes()) {
+                removeNode(childNode);
+            }
+        }
+    }
+
+    /**
+     * Updates the topic id and topic database id that a topic is indexed by.
+     *
+     * @param specTopic The topic whose ids changed.
+     * @param oldId     The previous topic id.
+     * @param oldDBId   The previous topic database id.
+     */
+    public void updateTopicIds(final SpecTopic specTopic, final String oldId, final Integer oldDBId) {
+        removeFromIndex(topicsById, oldId, specTopic);
+        removeFromIndex(topicsByDBId, oldDBId, specTopic);
+        if (specTopic.getId() != null) {
+            addToIndex(topicsById, specTopic.getId(), specTopic);
+        }
+        if (specTopic.getDBId() != null) {
+            addToIndex(topicsByDBId, specTopic.getDBId(), specTopic);
+        }
+    }
+
+    /**
+     * Updates the target id that a node is indexed by.
+     *
+     * @param specNode    The node whose target id changed.
+     * @param oldTargetId The previous target id.
+     */
+    public void updateTargetId(final SpecNode specNode, final String oldTargetId) {
+        removeFromIndex(specNodesByTargetId, oldTargetId, specNode);
+        if (specNode.getTargetId() != null) {
+            addToIndex(specNodesByTargetId, specNode.getTargetId(), specNode);
+        }
+    }
+
+    /**
+     * Updates the unique id that a node is indexed by.
+     *
+     * @param node        The node whose unique id changed.
+     * @param oldUniqueId The previous unique id.
+     */
+    public void updateUniqueId(final Node node, final String oldUniqueId) {
+        removeFromIndex(nodesByUniqueId, oldUniqueId, node);
+        if (node.getUniqueId() != null) {
+            addToIndex(nodesByUniqueId, node.getUniqueId(), node);
+        }
+    }
+
+    public List<SpecTopic> getSpecTopicsById(final String id) {
+        return getFromIndex(topicsById, id);
+    }
+
+    public List<SpecTopic> getSpecTopicsByDBId(final Integer DBId) {
+        return getFromIndex(topicsByDBId, DBId);
+    }
+
+    public List<SpecNode> getSpecNodesByTargetId(final String targetId) {
+        return getFromIndex(specNodesByTargetId, targetId);
+    }
+
+    public List<Node> getNodesByUniqueId(final String uniqueId) {
+        return getFromIndex(nodesByUniqueId, uniqueId);
+    }
+
+    private static <K, V> void addToIndex(final Map<K, List<V>> index, final K key, final V value) {
+        List<V> values = index.get(key);
+        if (values == null) {
+            values = new ArrayList<V>(1);
+            index.put(key, values);
+        }
+        values.add(value);
+    }
+
+    private static <K, V> void removeFromIndex(final Map<K, List<V>> index, final K key, final V value) {
+        if (key == null) return;
+
+        final List<V> values = index.get(key);
+        if (values != null) {
+            // Remove using identity, so that only the exact node is removed
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) == value) {
+                    values.remove(i);
+                    break;
+                }
+            }
+            if (values.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static <K, V> List<V> getFromIndex(final Map<K, List<V>> index, final K key) {
+        final List<V> values = key == null ? null : index.get(key);
+        return values == null ? Collections.<V>emptyList() : Collections.unmodifiableList(values);
+    }
+}
@@ -21,8 +21,9 @@ package org.jboss.pressgang.ccms.contentspec;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import org.jboss.pressgang.ccms.contentspec.entities.Relationship;
 import org.jboss.pressgang.ccms.contentspec.entities.TargetRelationship;
@@ -32,10 +33,23 @@ import org.jboss.pressgang.ccms.contentspec.utils.ContentSpecUtilities;
 import org.jboss.pressgang.ccms.utils.common.StringUtilities;
 
 public abstract class SpecNodeWithRelationships extends SpecNode {
-    protected List<TopicRelationship> topicRelationships = new ArrayList<TopicRelationship>();
-    protected List<TargetRelationship> topicTargetRelationships = new ArrayList<TargetRelationship>();
-    protected List<TargetRelationship> levelRelationships = new ArrayList<TargetRelationship>();
-    protected List<Relationship> relationships = new LinkedList<Relationship>();
+    /**
+     * All of the relationships, indexed by their type.
+     */
+    protected final RelationshipIndex<Relationship> relationshipIndex = new RelationshipIndex<Relationship>();
+    /**
+     * The relationships to topics, indexed by their type. Relationships to topic targets are included as topic relationships, after
+     * any direct topic relationships.
+     */
+    protected final RelationshipIndex<TopicRelationship> topicRelationshipIndex = new RelationshipIndex<TopicRelationship>();
+    /**
+     * The relationships to targets, indexed by their type. Relationships to levels are ordered before relationships to topic targets.
+     */
+    protected final RelationshipIndex<TargetRelationship> targetRelationshipIndex = new RelationshipIndex<TargetRelationship>();
+    /**
+     * The relationships to levels, indexed by their type.
+     */
+    protected final RelationshipIndex<TargetRelationship> levelRelationshipIndex = new RelationshipIndex<TargetRelationship>();
 
     protected SpecNodeWithRelationships(final int lineNumber, final String text) {
         super(lineNumber, text);
@@ -55,9 +69,7 @@ public abstract class SpecNodeWithRelationships extends SpecNode {
      * @param type  The type of the relationship.
      */
     public void addRelationshipToTopic(final SpecTopic topic, final RelationshipType type) {
-        final TopicRelationship relationship = new TopicRelationship(this, topic, type);
-        topicRelationships.add(relationship);
-        relationships.add(relationship);
+        addTopicRelationship(new TopicRelationship(this, topic, type));
     }
 
     /**
@@ -68,9 +80,7 @@ public abstract class SpecNodeWithRelationships extends SpecNode {
      * @param title The title of the topic to be related to.
      */
     public void addRelationshipToTopic(final SpecTopic topic, final RelationshipType type, final String title) {
-        final TopicRelationship relationship = new TopicRelationship(this, topic, type, title);
-        topicRelationships.add(relationship);
-        relationships.add(relationship);
+        addTopicRelationship(new TopicRelationship(this, topic, type, title));
     }
 
     /**
@@ -80,9 +90,7 @@ public abstract class SpecNodeWithRelationships extends SpecNode {
      * @param type  The type of the relationship.
      */
     public void addRelationshipToTarget(final SpecTopic topic, final RelationshipType type) {
-        final TargetRelationship relationship = new TargetRelationship(this, topic, type);
-        topicTargetRelationships.add(relationship);
-        relationships.add(relationship);
+        addTopicTargetRelationship(new TargetRelationship(this, topic, type));
     }
 
     /**
@@ -93,9 +101,7 @@ public abstract class SpecNodeWithRelationships extends SpecNode {
      * @param title The title of the topic to be related to.
      */
     public void addRelationshipToTarget(final SpecTopic topic, final RelationshipType type, final String title) {
-        final TargetRelationship relationship = new TargetRelationship(this, topic, type, title);
-        topicTargetRelationships.add(relationship);
-        relationships.add(relationship);
+        addTopicTargetRelationship(new TargetRelationship(this, topic, type, title));
     }
 
     /**
@@ -105,9 +111,7 @@ public abstract class SpecNodeWithRelationships extends SpecNode {
      * @param type  The type of the relationship.
      */
     public void addRelationshipToTarget(final Level level, final RelationshipType type) {
-        final TargetRelationship relationship = new TargetRelationship(this, level, type);
-        levelRelationships.add(relationship);
-        relationships.add(relationship);
+        addLevelRelationship(new TargetRelationship(this, level, type));
     }
 
     /**
@@ -118,9 +122,41 @@ public abstract class SpecNodeWithRelationships extends SpecNode {
      * @param title The title of the target level to be related to.
      */
     public void addRelationshipToTarget(final Level level, final RelationshipType type, final String title) {
-        final TargetRelationship relationship = new TargetRelationship(this, level, type, title);
-        levelRelationships.add(relationship);
-        relationships.add(relationship);
+        addLevelRelationship(new TargetRelationship(this, level, type, title));
+    }
+
+    /**
+     * Store a relationship to a topic.
+     *
+     * @param relationship The relationship to be stored.
+     */
+    protected void addTopicRelationship(final TopicRelationship relationship) {
+        relationshipIndex.add(relationship, true);
+        topicRelationshipIndex.add(relationship, true);
+    }
+
+    /**
+     * Store a relationship to a topic target.
+     *
+     * @param relationship The relationship to be stored.
+     */
+    protected void addTopicTargetRelationship(final TargetRelationship relationship) {
+        relationshipIndex.add(relationship, true);
+        targetRelationshipIndex.add(relationship, false);
+        // Topic targets can also be treated as topic relationships, so create the topic relationship once up front
+        topicRelationshipIndex.add(new TopicRelationship(relationship.getPrimaryRelationship(),
+                (SpecTopic) relationship.getSecondaryRelationship(), relationship.getType()), false);
+    }
+
+    /**
+     * Store a relationship to a level.
+     *
+     * @param relationship The relationship to be stored.
+     */
+    protected void addLevelRelationship(final TargetRelationship relationship) {
+        relationshipIndex.add(relationship, true);
+        targetRelationshipIndex.add(relationship, true);
+        levelRelationshipIndex.add(relationship, true);
     }
 
     // End of the basic getter/setter methods for this Topic.
@@ -129,88 +165,61 @@ public abstract class SpecNodeWithRelationships extends SpecNode {
      * Gets a list of relationships for the Topic.
      */
     public List<Relationship> getRelationships() {
-        return Collections.unmodifiableList(relationships);
+        return relationshipIndex.getAll();
     }
 
     /**
      * Gets a list of previous relationships for the Topic.
      */
     public List<Relationship> getPreviousRelationships() {
-        final List<Relationship> prevRelationships = new LinkedList<Relationship>();
-        for (final Relationship r : relationships) {
-            if (r.getType() == RelationshipType.PREVIOUS) {
-                prevRelationships.add(r);
-            }
-        }
-        return prevRelationships;
+        return relationshipIndex.get(RelationshipType.PREVIOUS);
     }
 
     /**
      * Gets a list of next relationships for the Topic.
      */
     public List<Relationship> getNextRelationships() {
-        final List<Relationship> nextRelationships = new LinkedList<Relationship>();
-        for (final Relationship r : relationships) {
-            if (r.getType() == RelationshipType.NEXT) {
-                nextRelationships.add(r);
-            }
-        }
-        return nextRelationships;
+        return relationshipIndex.get(RelationshipType.NEXT);
     }
 
     /**
      * Gets a list of prerequisite relationships for the topic.
      */
     public List<Relationship> getPrerequisiteRelationships() {
-        final List<Relationship> prerequisiteRelationships = new LinkedList<Relationship>();
-        for (final Relationship r : relationships) {
-            if (r.getType() == RelationshipType.PREREQUISITE) {
-                prerequisiteRelationships.add(r);
-            }
-        }
-        return prerequisiteRelationships;
+        return relationshipIndex.get(RelationshipType.PREREQUISITE);
     }
 
     /**
      * Gets a list of related relationships for the topic.
      */
     public List<Relationship> getRelatedRelationships() {
-        final List<Relationship> relatedRelationships = new LinkedList<Relationship>();
-        for (final Relationship r : relationships) {
-            if (r.getType() == RelationshipType.REFER_TO) {
-                relatedRelationships.add(r);
-            }
-        }
-        return relatedRelationships;
+        return relationshipIndex.get(RelationshipType.REFER_TO);
     }
 
     /**
      * Gets a list of link-list relationships for the topic.
      */
     public List<Relationship> getLinkListRelationships() {
-        final List<Relationship> linkListRelationships = new LinkedList<Relationship>();
-        for (final Relationship r : relationships) {
-            if (r.getType() == RelationshipType.LINKLIST) {
-                linkListRelationships.add(r);
-            }
-        }
-        return linkListRelationships;
+        return relationshipIndex.get(RelationshipType.LINKLIST);
     }
 
     protected String getRelationshipText(final String spacer) {
         final StringBuilder output = new StringBuilder();
-        if (!getPrerequisiteRelationships().isEmpty()) {
-            boolean useLongSyntax = printRelationshipsWithLongSyntax(getPrerequisiteRelationships());
+        final List<Relationship> prerequisiteRelationships = getPrerequisiteRelationships();
+        if (!prerequisiteRelationships.isEmpty()) {
+            boolean useLongSyntax = printRelationshipsWithLongSyntax(prerequisiteRelationships);
             output.append(generateRelationshipText(RelationshipType.PREREQUISITE, !useLongSyntax, spacer));
         }
 
-        if (!getRelatedRelationships().isEmpty()) {
-            boolean useLongSyntax = printRelationshipsWithLongSyntax(getRelatedRelationships());
+        final List<Relationship> relatedRelationships = getRelatedRelationships();
+        if (!relatedRelationships.isEmpty()) {
+            boolean useLongSyntax = printRelationshipsWithLongSyntax(relatedRelationships);
             output.append(generateRelationshipText(RelationshipType.REFER_TO, !useLongSyntax, spacer));
         }
 
-        if (!getLinkListRelationships().isEmpty()) {
-            boolean useLongSyntax = printRelationshipsWithLongSyntax(getLinkListRelationships());
+        final List<Relationship> linkListRelationships = getLinkListRelationships();
+        if (!linkListRelationships.isEmpty()) {
+            boolean useLongSyntax = printRelationshipsWithLongSyntax(linkListRelationships);
             output.append(generateRelationshipText(RelationshipType.LINKLIST, !useLongSyntax, spacer));
         }
 
@@ -301,4 +310,63 @@ public abstract class SpecNodeWithRelationships extends SpecNode {
         retValue.append("]");
         return retValue.toString();
     }
+
+    /**
+     * Stores a set of relationships in the order they were added, indexed by their relationship type. The lists returned are
+     * read-only views, so no lists need to be created when the relationships are looked up.
+     * <p/>
+     * Relationships can be added as either primary or secondary relationships, where all the primary relationships will be
+     * ordered before the secondary relationships.
+     *
+     * @param <T> The type of relationships stored.
+     */
+    protected static class RelationshipIndex<T extends Relationship> {
+        private final Entries<T> allEntries = new Entries<T>();
+        private final Map<RelationshipType, Entries<T>> entriesByType = new EnumMap<RelationshipType, Entries<T>>(RelationshipType.class);
+
+        public void add(final T relationship, final boolean primary) {
+            allEntries.add(relationship, primary);
+
+            Entries<T> entries = entriesByType.get(relationship.getType());
+            if (entries == null) {
+                entries = new Entries<T>();
+                entriesByType.put(relationship.getType(), entries);
+            }
+            entries.add(relationship, primary);
+        }
+
+        /**
+         * Gets all the relationships.
+         *
+         * @return A read-only list of all the relationships.
+         */
+        public List<T> getAll() {
+            return allEntries.view;
+        }
+
+        /**
+         * Gets the relationships for a specific relationship type.
+         *
+         * @param type The relationship type.
+         * @return A read-only list of the relationships for the type.
+         */
+        public List<T> get(final RelationshipType type) {
+            final Entries<T> entries = entriesByType.get(type);
+            return entries == null ? Collections.<T>emptyList() : entries.view;
+        }
+
+        private static class Entries<T> {
+            private final List<T> list = new ArrayList<T>();
+            private final List<T> view = Collections.unmodifiableList(list);
+            private int primaryCount = 0;
+
+            void add(final T relationship, final boolean primary) {
+                if (primary) {
+                    list.add(primaryCount++, relationship);
+                } else {
+                    list.add(relationship);
+                }
+            }
+        }
+    }
 }
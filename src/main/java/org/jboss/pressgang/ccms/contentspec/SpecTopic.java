@@ -27,6 +27,7 @@ package org.jboss.pressgang.ccms.contentspec;
  * @author lnewson
  */
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -121,11 +122,16 @@ public class SpecTopic extends SpecNodeWithRelationships implements ITopicNode {
      * @param id The Content Specification Topic ID.
      */
     public void setId(final String id) {
+        final String oldId = this.id;
+        final Integer oldDBId = DBId;
+
         // Set the DBId as well if it isn't a new id
         if (id.matches(CSConstants.EXISTING_TOPIC_ID_REGEX)) {
             DBId = Integer.parseInt(id);
         }
         this.id = id;
+
+        updateIndexedTopicIds(oldId, oldDBId);
     }
 
     /**
@@ -143,7 +149,25 @@ public class SpecTopic extends SpecNodeWithRelationships implements ITopicNode {
      * @param id The Database ID for the Topic.
      */
     public void setDBId(Integer id) {
+        final Integer oldDBId = DBId;
         DBId = id;
+
+        updateIndexedTopicIds(this.id, oldDBId);
+    }
+
+    /**
+     * Updates the ids that the topic is indexed by in its content spec, if the topic belongs to a content spec.
+     *
+     * @param oldId   The previous topic id.
+     * @param oldDBId The previous topic database id.
+     */
+    private void updateIndexedTopicIds(final String oldId, final Integer oldDBId) {
+        if (parent != null) {
+            final SpecNodeIndex index = findSpecNodeIndex(false);
+            if (index != null) {
+                index.updateTopicIds(this, oldId, oldDBId);
+            }
+        }
     }
 
     /**
@@ -206,9 +230,7 @@ public class SpecTopic extends SpecNodeWithRelationships implements ITopicNode {
      * @param type  The type of the relationship.
      */
     public void addRelationshipToProcessTopic(final SpecTopic topic, final RelationshipType type) {
-        final ProcessRelationship relationship = new ProcessRelationship(this, topic, type);
-        topicTargetRelationships.add(relationship);
-        relationships.add(relationship);
+        addTopicTargetRelationship(new ProcessRelationship(this, topic, type));
     }
 
     /**
@@ -219,9 +241,7 @@ public class SpecTopic extends SpecNodeWithRelationships implements ITopicNode {
      * @param title The title of the topic to be related to.
      */
     public void addRelationshipToProcessTopic(final SpecTopic topic, final RelationshipType type, final String title) {
-        final ProcessRelationship relationship = new ProcessRelationship(this, topic, type, title);
-        topicTargetRelationships.add(relationship);
-        relationships.add(relationship);
+        addTopicTargetRelationship(new ProcessRelationship(this, topic, type, title));
     }
 
     /**
@@ -261,178 +281,91 @@ public class SpecTopic extends SpecNodeWithRelationships implements ITopicNode {
     /**
      * Gets the list of Topic to Topic relationships.
      *
-     * @return An ArrayList of TopicRelationship's or an empty array if none are found.
+     * @return A read-only List of TopicRelationship's or an empty list if none are found.
      */
     public List<TopicRelationship> getTopicRelationships() {
-        ArrayList<TopicRelationship> relationships = new ArrayList<TopicRelationship>(topicRelationships);
-        for (final TargetRelationship relationship : topicTargetRelationships) {
-            relationships.add(new TopicRelationship(relationship.getPrimaryRelationship(), (SpecTopic) relationship.getSecondaryRelationship(),
-                    relationship.getType()));
-        }
-        return relationships;
+        return topicRelationshipIndex.getAll();
     }
 
     /**
      * Gets the list of Target relationships.
      *
-     * @return A List of TargetRelationship's or an empty array if none are found.
+     * @return A read-only List of TargetRelationship's or an empty list if none are found.
      */
     public List<TargetRelationship> getTargetRelationships() {
-        final List<TargetRelationship> relationships = new ArrayList<TargetRelationship>(levelRelationships);
-        relationships.addAll(topicTargetRelationships);
-        return relationships;
+        return targetRelationshipIndex.getAll();
     }
 
     /**
      * Gets the list of Topic Relationships for this topic whose type is "RELATED".
      *
-     * @return A list of related topic relationships
+     * @return A read-only list of related topic relationships
      */
     public List<TopicRelationship> getRelatedTopicRelationships() {
-        final ArrayList<TopicRelationship> relationships = new ArrayList<TopicRelationship>();
-        /* Check the topic to topic relationships for related relationships */
-        for (final TopicRelationship relationship : topicRelationships) {
-            if (relationship.getType() == RelationshipType.REFER_TO) {
-                relationships.add(relationship);
-            }
-        }
-        /* Check the topic to target relationships for related relationships */
-        for (final TargetRelationship relationship : topicTargetRelationships) {
-            if (relationship.getType() == RelationshipType.REFER_TO) {
-                relationships.add(new TopicRelationship(relationship.getPrimaryRelationship(), (SpecTopic) relationship.getSecondaryRelationship(),
-                        relationship.getType()));
-            }
-        }
-        return relationships;
+        return topicRelationshipIndex.get(RelationshipType.REFER_TO);
     }
 
     /**
      * Gets the list of Level Relationships for this topic whose type is "RELATED".
      *
-     * @return A list of related level relationships
+     * @return A read-only list of related level relationships
      */
     public List<TargetRelationship> getRelatedLevelRelationships() {
-        final ArrayList<TargetRelationship> relationships = new ArrayList<TargetRelationship>();
-        for (final TargetRelationship relationship : levelRelationships) {
-            if (relationship.getType() == RelationshipType.REFER_TO) {
-                relationships.add(relationship);
-            }
-        }
-        return relationships;
+        return levelRelationshipIndex.get(RelationshipType.REFER_TO);
     }
 
     /**
      * Gets the list of Topic Relationships for this topic whose type is "PREREQUISITE".
      *
-     * @return A list of prerequisite topic relationships
+     * @return A read-only list of prerequisite topic relationships
      */
     public List<TopicRelationship> getPrerequisiteTopicRelationships() {
-        final ArrayList<TopicRelationship> relationships = new ArrayList<TopicRelationship>();
-        for (final TopicRelationship relationship : topicRelationships) {
-            if (relationship.getType() == RelationshipType.PREREQUISITE) {
-                relationships.add(relationship);
-            }
-        }
-        for (final TargetRelationship relationship : topicTargetRelationships) {
-            if (relationship.getType() == RelationshipType.PREREQUISITE) {
-                relationships.add(new TopicRelationship(relationship.getPrimaryRelationship(), (SpecTopic) relationship.getSecondaryRelationship(),
-                        relationship.getType()));
-            }
-        }
-        return relationships;
+        return topicRelationshipIndex.get(RelationshipType.PREREQUISITE);
     }
 
     /**
      * Gets the list of Level Relationships for this topic whose type is "PREREQUISITE".
      *
-     * @return A list of prerequisite level relationships
+     * @return A read-only list of prerequisite level relationships
      */
     public List<TargetRelationship> getPrerequisiteLevelRelationships() {
-        final ArrayList<TargetRelationship> relationships = new ArrayList<TargetRelationship>();
-        for (final TargetRelationship relationship : levelRelationships) {
-            if (relationship.getType() == RelationshipType.PREREQUISITE) {
-                relationships.add(relationship);
-            }
-        }
-        return relationships;
+        return levelRelationshipIndex.get(RelationshipType.PREREQUISITE);
     }
 
     /**
      * Gets the list of Topic Relationships for this topic whose type is "LINKLIST".
      *
-     * @return A list of link list topic relationships
+     * @return A read-only list of link list topic relationships
      */
     public List<TopicRelationship> getLinkListTopicRelationships() {
-        final ArrayList<TopicRelationship> relationships = new ArrayList<TopicRelationship>();
-        for (final TopicRelationship relationship : topicRelationships) {
-            if (relationship.getType() == RelationshipType.LINKLIST) {
-                relationships.add(relationship);
-            }
-        }
-        for (final TargetRelationship relationship : topicTargetRelationships) {
-            if (relationship.getType() == RelationshipType.LINKLIST) {
-                relationships.add(new TopicRelationship(relationship.getPrimaryRelationship(), (SpecTopic) relationship.getSecondaryRelationship(),
-                        relationship.getType()));
-            }
-        }
-        return relationships;
+        return topicRelationshipIndex.get(RelationshipType.LINKLIST);
     }
 
     /**
      * Gets the list of Level Relationships for this topic whose type is "LINKLIST".
      *
-     * @return A list of link list level relationships
+     * @return A read-only list of link list level relationships
      */
     public List<TargetRelationship> getLinkListLevelRelationships() {
-        final ArrayList<TargetRelationship> relationships = new ArrayList<TargetRelationship>();
-        for (final TargetRelationship relationship : levelRelationships) {
-            if (relationship.getType() == RelationshipType.LINKLIST) {
-                relationships.add(relationship);
-            }
-        }
-        return relationships;
+        return levelRelationshipIndex.get(RelationshipType.LINKLIST);
     }
 
     /**
      * Gets the list of Topic Relationships for this topic whose type is "NEXT".
      *
-     * @return A list of next topic relationships
+     * @return A read-only list of next topic relationships
      */
     public List<TopicRelationship> getNextTopicRelationships() {
-        ArrayList<TopicRelationship> relationships = new ArrayList<TopicRelationship>();
-        for (TopicRelationship relationship : topicRelationships) {
-            if (relationship.getType() == RelationshipType.NEXT) {
-                relationships.add(relationship);
-            }
-        }
-        for (TargetRelationship relationship : topicTargetRelationships) {
-            if (relationship.getType() == RelationshipType.NEXT) {
-                relationships.add(new TopicRelationship(relationship.getPrimaryRelationship(), (SpecTopic) relationship.getSecondaryRelationship(),
-                        relationship.getType()));
-            }
-        }
-        return relationships;
+        return topicRelationshipIndex.get(RelationshipType.NEXT);
     }
 
     /**
      * Gets the list of Topic Relationships for this topic whose type is "PREVIOUS".
      *
-     * @return A list of previous topic relationships
+     * @return A read-only list of previous topic relationships
      */
     public List<TopicRelationship> getPrevTopicRelationships() {
-        ArrayList<TopicRelationship> relationships = new ArrayList<TopicRelationship>();
-        for (TopicRelationship relationship : topicRelationships) {
-            if (relationship.getType() == RelationshipType.PREVIOUS) {
-                relationships.add(relationship);
-            }
-        }
-        for (TargetRelationship relationship : topicTargetRelationships) {
-            if (relationship.getType() == RelationshipType.PREVIOUS) {
-                relationships.add(new TopicRelationship(relationship.getPrimaryRelationship(), (SpecTopic) relationship.getSecondaryRelationship(),
-                        relationship.getType()));
-            }
-        }
-        return relationships;
+        return topicRelationshipIndex.get(RelationshipType.PREVIOUS);
     }
 
     @Override
@@ -441,34 +374,15 @@ public class SpecTopic extends SpecNodeWithRelationships implements ITopicNode {
             return null;
         } else if (getParent() instanceof Level) {
             final Level parent = (Level) getParent();
-            Integer previousNode = 0;
-
-            // Get the position of the level in its parents nodes
-            Integer nodePos = parent.nodes.indexOf(this);
-
-            // If the level isn't the first node then get the previous nodes step
-            if (nodePos > 0) {
-                Node node = parent.nodes.get(nodePos - 1);
-                previousNode = node.getStep();
-                // If the add node is a level then add the number of nodes it contains
-                if (node instanceof Level) {
-                    previousNode = (previousNode == null ? 0 : previousNode) + ((Level) node).getTotalNumberOfChildren();
-                }
-            } else if (nodePos == -1) {
+            final Integer step = parent.getChildNodeStep(this);
+            if (step != null) {
+                return step;
+            } else if (parent.getLevelType() == LevelType.BASE) {
                 // The node is a front matter topic, so use the parents step
-                if (parent.getLevelType() == LevelType.BASE) {
-                    previousNode = -1;
-                } else {
-                    previousNode = parent.getStep() - 1;
-                }
+                return 0;
             } else {
-                previousNode = parent.getStep();
+                return parent.getStep();
             }
-            // Make sure the previous nodes step isn't 0
-            previousNode = previousNode == null ? 0 : previousNode;
-
-            // Add one since we got the previous nodes step
-            return previousNode + 1;
         } else if (getParent() instanceof KeyValueNode) {
             return getParent().getStep();
         } else {
@@ -486,7 +400,7 @@ public class SpecTopic extends SpecNodeWithRelationships implements ITopicNode {
             output.append(" [" + getTargetId() + "]");
         }
 
-        final String spacer = getSpacer() + SPACER;
+        final String spacer = getNestedSpacer();
         output.append(getRelationshipText(spacer));
 
         setText(output.toString());
@@ -509,7 +423,13 @@ public class SpecTopic extends SpecNodeWithRelationships implements ITopicNode {
 
     @Override
     public String toString() {
-        return getSpacer() + getText() + "\n";
+        return writeToString();
+    }
+
+    @Override
+    public void writeTo(final Appendable output) throws IOException {
+        writeSpacerTo(output);
+        output.append(getText()).append('\n');
     }
 
     @Override
@@ -35,6 +35,7 @@ public abstract class BaseBugLinkStrategy<T extends BugLinkOptions> {
     protected static final String ENCODING = "UTF-8";
     protected static final DateFormat DATE_FORMATTER = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss");
     private String serverUrl;
+    private volatile BugLinkTemplate template = null;
 
     protected BaseBugLinkStrategy() {
     }
@@ -83,6 +84,7 @@ public abstract class BaseBugLinkStrategy<T extends BugLinkOptions> {
 
     protected void setServerUrl(final String serverUrl) {
         this.serverUrl = serverUrl;
+        template = null;
     }
 
     protected String getFixedServerUrl() {
@@ -106,4 +108,105 @@ public abstract class BaseBugLinkStrategy<T extends BugLinkOptions> {
         return  encodedEnvironment.replace("Build+Date%3A+", "Build+Date%3A+&BUILD_DATE;")
                 .replace("Build+Name%3A+", "Build+Name%3A+&BUILD_NAME;");
     }
+
+    /**
+     * Gets the compiled bug link template for a set of bug options and build name/date. The template is only compiled once and
+     * is reused while bug options with the same values, and the same build name and build date are used.
+     *
+     * @param bugOptions The bug options to get the template for.
+     * @param buildName  The name of the build.
+     * @param buildDate  The date of the build.
+     * @return The compiled bug link template.
+     * @throws UnsupportedEncodingException Thrown if the static url segments can't be encoded.
+     */
+    protected BugLinkTemplate getTemplate(final T bugOptions, final String buildName, final Date buildDate) throws
+            UnsupportedEncodingException {
+        BugLinkTemplate currentTemplate = template;
+        if (currentTemplate == null || !currentTemplate.isTemplateFor(bugOptions, buildName, buildDate)) {
+            final String encodedBaseEnvironment = URLEncoder.encode(buildBaseEnvironment(bugOptions, buildName, buildDate).toString(),
+                    ENCODING);
+            currentTemplate = new BugLinkTemplate(bugOptions, buildName, buildDate, getBugLinkBaseUrl(bugOptions),
+                    encodedBaseEnvironment, addBuildNameAndDateEntities(encodedBaseEnvironment), compileStaticUrlParameters(bugOptions));
+            template = currentTemplate;
+        }
+
+        return currentTemplate;
+    }
+
+    /**
+     * Gets the url that bug links are created against, excluding any query parameters.
+     *
+     * @param bugOptions The bug options to get the url for.
+     * @return The url for the bug links.
+     */
+    protected String getBugLinkBaseUrl(final T bugOptions) {
+        return getFixedServerUrl();
+    }
+
+    /**
+     * Builds the encoded query parameters for a bug link, that are the same for every bug link created with a set of bug
+     * options. Each parameter should be prefixed with an "&amp;amp;" separator.
+     *
+     * @param bugOptions The bug options to build the parameters from.
+     * @return The encoded query parameters.
+     * @throws UnsupportedEncodingException Thrown if the parameters can't be encoded.
+     */
+    protected String compileStaticUrlParameters(final T bugOptions) throws UnsupportedEncodingException {
+        return "";
+    }
+
+    /**
+     * A precompiled bug link, that contains the encoded segments of a bug link url that don't change between topics for a single
+     * build.
+     */
+    protected static class BugLinkTemplate {
+        private final BugLinkOptions bugOptions;
+        private final String buildName;
+        private final Date buildDate;
+        private final String baseUrl;
+        private final String encodedBaseEnvironment;
+        private final String encodedBaseEnvironmentWithEntities;
+        private final String encodedStaticParameters;
+
+        protected BugLinkTemplate(final BugLinkOptions bugOptions, final String buildName, final Date buildDate, final String baseUrl,
+                final String encodedBaseEnvironment, final String encodedBaseEnvironmentWithEntities,
+                final String encodedStaticParameters) {
+            // Take a copy of the options, as the options may be changed after the template is created
+            this.bugOptions = bugOptions == null ? null : bugOptions.clone();
+            this.buildName = buildName;
+            this.buildDate = buildDate == null ? null : new Date(buildDate.getTime());
+            this.baseUrl = baseUrl;
+            this.encodedBaseEnvironment = encodedBaseEnvironment;
+            this.encodedBaseEnvironmentWithEntities = encodedBaseEnvironmentWithEntities;
+            this.encodedStaticParameters = encodedStaticParameters;
+        }
+
+        protected boolean isTemplateFor(final BugLinkOptions bugOptions, final String buildName, final Date buildDate) {
+            return (this.bugOptions == null ? bugOptions == null : this.bugOptions.equals(bugOptions)) && (this.buildName == null ?
+                    buildName == null : this.buildName.equals(buildName)) && (this.buildDate == null ? buildDate == null : this.buildDate
+                    .equals(buildDate));
+        }
+
+        /**
+         * @return The url that bug links are created against, excluding any query parameters.
+         */
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        /**
+         * @param withEntities If the build name and date entities should be included.
+         * @return The encoded build name and date environment details.
+         */
+        public String getEncodedBaseEnvironment(boolean withEntities) {
+            return withEntities ? encodedBaseEnvironmentWithEntities : encodedBaseEnvironment;
+        }
+
+        /**
+         * @return The encoded query parameters that are the same for every bug link.
+         */
+        public String getEncodedStaticParameters() {
+            return encodedStaticParameters;
+        }
+    }
 }
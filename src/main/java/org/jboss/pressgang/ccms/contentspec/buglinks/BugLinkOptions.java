@@ -19,7 +19,9 @@
 
 package org.jboss.pressgang.ccms.contentspec.buglinks;
 
-public class BugLinkOptions {
+import com.google.common.base.Objects;
+
+public class BugLinkOptions implements Cloneable {
     private String baseUrl = null;
     private boolean injectLinks = true;
     private boolean useEntities = false;
@@ -50,4 +52,28 @@ public class BugLinkOptions {
     public void setUseEntities(boolean useEntities) {
         this.useEntities = useEntities;
     }
+
+    @Override
+    public BugLinkOptions clone() {
+        try {
+            return (BugLinkOptions) super.clone();
+        } catch (CloneNotSupportedException e) {
+            // This should never happen, since the class is Cloneable
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final BugLinkOptions other = (BugLinkOptions) o;
+        return injectLinks == other.injectLinks && useEntities == other.useEntities && Objects.equal(baseUrl, other.baseUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(baseUrl, injectLinks, useEntities);
+    }
 }
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jboss.pressgang.ccms.contentspec.enums.BugLinkType;
 
@@ -38,6 +39,8 @@ public class BugLinkStrategyFactory {
 
     private boolean internalsRegistered = false;
     private Map<BugLinkType, SortedSet<Helper>> map = Collections.synchronizedMap(new HashMap<BugLinkType, SortedSet<Helper>>());
+    private final Map<List<Object>, BaseBugLinkStrategy<?>> pooledStrategies = new ConcurrentHashMap<List<Object>,
+            BaseBugLinkStrategy<?>>();
 
     public static BugLinkStrategyFactory getInstance() {
         if (INSTANCE == null) {
@@ -87,6 +90,55 @@ public class BugLinkStrategyFactory {
         }
     }
 
+    /**
+     * Get a pooled strategy instance to be used for the specified type, server url and additional arguments. The first time a
+     * strategy is requested for a type, server url and set of additional arguments a new strategy is created, and the same
+     * instance is returned for any later requests with equal values. This allows any connections or cached data held by the
+     * strategy to be reused.
+     * <p/>
+     * Note: The additional arguments are compared using their equals() methods, so arguments that don't implement equals() will
+     * only match the exact same instance.
+     *
+     * @param type           The type of strategy to get (eg JIRA, BUGZILLA, etc...)
+     * @param serverUrl      The url that the bug links should be used against.
+     * @param additionalArgs Any additional arguments that are needed to instantiate/configure the strategy.
+     * @param <T>
+     * @return A registered strategy, or an internal/default helper if no registered strategies exist.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends BaseBugLinkStrategy<?>> T getPooledStrategy(final BugLinkType type, final String serverUrl,
+            final Object... additionalArgs) {
+        // Pooled strategies are only ever created by create() for the same type and server url, so the casts are as safe as the
+        // cast that create() does
+        final List<Object> key = new ArrayList<Object>();
+        key.add(type);
+        key.add(serverUrl);
+        if (additionalArgs != null) {
+            key.addAll(Arrays.asList(additionalArgs));
+        }
+        T strategy = (T) pooledStrategies.get(key);
+        if (strategy == null) {
+            synchronized (pooledStrategies) {
+                strategy = (T) pooledStrategies.get(key);
+                if (strategy == null) {
+                    strategy = create(type, serverUrl, additionalArgs);
+                    if (strategy != null) {
+                        pooledStrategies.put(key, strategy);
+                    }
+                }
+            }
+        }
+
+        return strategy;
+    }
+
+    /**
+     * Removes all the pooled strategy instances, so that new instances are created the next time they are requested.
+     */
+    public void clearPooledStrategies() {
+        pooledStrategies.clear();
+    }
+
     protected synchronized void registerInternals() {
         if (!internalsRegistered) {
             if (!map.containsKey(BugLinkType.JIRA)) {
@@ -154,6 +206,9 @@ public class BugLinkStrategyFactory {
             map.put(type, new TreeSet<Helper>());
         }
         map.get(type).add(helper);
+
+        // The new helper may need to be used instead of any pooled strategies
+        clearPooledStrategies();
     }
 
     private Integer fixPriority(final Integer priority) {
@@ -19,6 +19,8 @@
 
 package org.jboss.pressgang.ccms.contentspec.buglinks;
 
+import com.google.common.base.Objects;
+
 public class BugzillaBugLinkOptions extends BugLinkOptions {
 
     private String product = null;
@@ -84,4 +86,18 @@ public class BugzillaBugLinkOptions extends BugLinkOptions {
     public void setKeywords(String keywords) {
         this.keywords = keywords;
     }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (!super.equals(o)) return false;
+
+        final BugzillaBugLinkOptions other = (BugzillaBugLinkOptions) o;
+        return injectAssignee == other.injectAssignee && Objects.equal(product, other.product) && Objects.equal(component,
+                other.component) && Objects.equal(version, other.version) && Objects.equal(keywords, other.keywords);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Objects.hashCode(product, component, version, keywords, injectAssignee);
+    }
 }
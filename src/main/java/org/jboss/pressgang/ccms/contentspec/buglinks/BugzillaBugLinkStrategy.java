@@ -24,7 +24,16 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import com.j2bugzilla.base.BugField;
 import com.j2bugzilla.base.BugFieldValue;
@@ -49,21 +58,61 @@ public class BugzillaBugLinkStrategy extends BaseBugLinkStrategy<BugzillaBugLink
     protected static final String BUGZILLA_DESCRIPTION_TEMPLATE = "Title: %s\n\n" + "Describe the issue:\n\n\nSuggestions for " +
             "improvement:\n\n\nAdditional information:";
 
+    protected static final long DEFAULT_CACHE_TTL = TimeUnit.MINUTES.toMillis(10);
+
     private BugzillaConnector connector;
-    private boolean connected = false;
+    private volatile boolean connected = false;
+    private volatile long cacheTTL = DEFAULT_CACHE_TTL;
+    private final Map<String, CachedValue<Product>> productCache = new ConcurrentHashMap<String, CachedValue<Product>>();
+    private volatile CachedValue<Set<String>> keywordsCache = null;
+    private volatile ExecutorService executor = null;
 
     public BugzillaBugLinkStrategy() {
     }
 
     @Override
     public void initialise(final String bugzillaUrl, final Object... args) {
-        connector = new BugzillaConnector();
+        connector = createConnector();
+        connected = false;
         setServerUrl(bugzillaUrl);
+        invalidateCache();
     }
 
-    protected void connect() throws ConnectionException {
-        connected = true;
+    protected BugzillaConnector createConnector() {
+        return new BugzillaConnector();
+    }
+
+    protected synchronized void connect() throws ConnectionException {
         connector.connectTo(getFixedBugzillaUrl());
+        connected = true;
+    }
+
+    /**
+     * Sets how long the Bugzilla product and keyword details should be cached for, before they are looked up again.
+     *
+     * @param ttl  The amount of time to cache the details for.
+     * @param unit The unit of time that the ttl is in.
+     */
+    public void setCacheTTL(final long ttl, final TimeUnit unit) {
+        cacheTTL = unit.toMillis(ttl);
+    }
+
+    /**
+     * Removes all the cached Bugzilla product and keyword details.
+     */
+    public void invalidateCache() {
+        productCache.clear();
+        keywordsCache = null;
+    }
+
+    /**
+     * Sets the executor to use to run independent calls to the Bugzilla server at the same time. If no executor is set, then
+     * the calls are run one at a time.
+     *
+     * @param executor The executor to run the calls with, or null to run the calls one at a time.
+     */
+    public void setExecutor(final ExecutorService executor) {
+        this.executor = executor;
     }
 
     protected String getFixedBugzillaUrl() {
@@ -73,40 +122,27 @@ public class BugzillaBugLinkStrategy extends BaseBugLinkStrategy<BugzillaBugLink
     @Override
     public String generateUrl(final BugzillaBugLinkOptions bzOptions, final SpecTopic specTopic, String buildName,
             final Date buildDate) throws UnsupportedEncodingException {
+        final BugLinkTemplate template = getTemplate(bzOptions, buildName, buildDate);
         final BaseTopicWrapper<?> topic = specTopic.getTopic();
 
         final String bugzillaDescription = URLEncoder.encode(String.format(BUGZILLA_DESCRIPTION_TEMPLATE, topic.getTitle()), ENCODING);
-        final StringBuilder bugzillaEnvironment = buildBaseEnvironment(bzOptions, buildName, buildDate);
-        bugzillaEnvironment.append("\nTopic ID: ").append(topic.getTopicId()).append("-").append(topic.getTopicRevision());
-        final StringBuilder bugzillaBuildID = new StringBuilder();
-        bugzillaBuildID.append(topic.getBugzillaBuildId());
-
-        if (specTopic.getRevision() == null) {
-            bugzillaBuildID.append(" [Latest]");
-            bugzillaEnvironment.append(" [Latest]");
-        } else {
-            bugzillaBuildID.append(" [Specified]");
-            bugzillaEnvironment.append(" [Specified]");
-        }
+        final String revisionType = specTopic.getRevision() == null ? " [Latest]" : " [Specified]";
+        final String bugzillaBuildID = topic.getBugzillaBuildId() + revisionType;
 
-        // Encode the URL and add in the build name/date entities
-        final String encodedBugzillaEnvironment;
-        if (bzOptions.isUseEntities()) {
-            encodedBugzillaEnvironment = addBuildNameAndDateEntities(URLEncoder.encode(bugzillaEnvironment.toString(), ENCODING));
-        } else {
-            encodedBugzillaEnvironment = URLEncoder.encode(bugzillaEnvironment.toString(), ENCODING);
-        }
+        // Encode the topic environment details and add them to the precompiled build name/date details
+        final String encodedBugzillaEnvironment = template.getEncodedBaseEnvironment(bzOptions.isUseEntities()) + URLEncoder.encode(
+                "\nTopic ID: " + topic.getTopicId() + "-" + topic.getTopicRevision() + revisionType, ENCODING);
 
-        return generateUrl(bzOptions, bugzillaBuildID.toString(), bugzillaDescription, encodedBugzillaEnvironment, null);
+        return generateUrl(template, bzOptions, bugzillaBuildID, bugzillaDescription, encodedBugzillaEnvironment, null);
     }
 
     @Override
     public String generateUrl(final BugzillaBugLinkOptions bzOptions, final InitialContent initialContent, String buildName,
             final Date buildDate) throws UnsupportedEncodingException {
+        final BugLinkTemplate template = getTemplate(bzOptions, buildName, buildDate);
         final String bugzillaDescription = URLEncoder.encode(
                 String.format(BUGZILLA_DESCRIPTION_TEMPLATE, initialContent.getParent().getTitle()), ENCODING);
-        final StringBuilder bugzillaEnvironment = buildBaseEnvironment(bzOptions, buildName, buildDate);
-        bugzillaEnvironment.append("\nTopic IDs:");
+        final StringBuilder bugzillaEnvironment = new StringBuilder("\nTopic IDs:");
 
         for (final SpecTopic initialContentTopic : initialContent.getSpecTopics()) {
             final BaseTopicWrapper<?> topic = initialContentTopic.getTopic();
@@ -120,15 +156,11 @@ public class BugzillaBugLinkStrategy extends BaseBugLinkStrategy<BugzillaBugLink
             }
         }
 
-        // Encode the URL and add in the build name/date entities
-        final String encodedBugzillaEnvironment;
-        if (bzOptions.isUseEntities()) {
-            encodedBugzillaEnvironment = addBuildNameAndDateEntities(URLEncoder.encode(bugzillaEnvironment.toString(), ENCODING));
-        } else {
-            encodedBugzillaEnvironment = URLEncoder.encode(bugzillaEnvironment.toString(), ENCODING);
-        }
+        // Encode the topic environment details and add them to the precompiled build name/date details
+        final String encodedBugzillaEnvironment = template.getEncodedBaseEnvironment(bzOptions.isUseEntities()) + URLEncoder.encode(
+                bugzillaEnvironment.toString(), ENCODING);
 
-        return generateUrl(bzOptions, null, bugzillaDescription, encodedBugzillaEnvironment, null);
+        return generateUrl(template, bzOptions, null, bugzillaDescription, encodedBugzillaEnvironment, null);
     }
 
     @Override
@@ -164,22 +196,52 @@ public class BugzillaBugLinkStrategy extends BaseBugLinkStrategy<BugzillaBugLink
 
     protected String generateUrl(final BugzillaBugLinkOptions bzOptions, final String buildId, final String encodedDescription,
             final String encodedEnvironment, final String bugzillaAssignedTo) throws UnsupportedEncodingException {
+        return generateUrl(getBugLinkBaseUrl(bzOptions), compileStaticUrlParameters(bzOptions), bzOptions, buildId, encodedDescription,
+                encodedEnvironment, bugzillaAssignedTo);
+    }
+
+    protected String generateUrl(final BugLinkTemplate template, final BugzillaBugLinkOptions bzOptions, final String buildId,
+            final String encodedDescription, final String encodedEnvironment,
+            final String bugzillaAssignedTo) throws UnsupportedEncodingException {
+        return generateUrl(template.getBaseUrl(), template.getEncodedStaticParameters(), bzOptions, buildId, encodedDescription,
+                encodedEnvironment, bugzillaAssignedTo);
+    }
+
+    private String generateUrl(final String baseUrl, final String encodedStaticParameters, final BugzillaBugLinkOptions bzOptions,
+            final String buildId, final String encodedDescription, final String encodedEnvironment,
+            final String bugzillaAssignedTo) throws UnsupportedEncodingException {
         // build the bugzilla url options
-        final StringBuilder bugzillaURLComponents = new StringBuilder("?");
-        bugzillaURLComponents.append("cf_environment=").append(encodedEnvironment);
-        bugzillaURLComponents.append("&amp;");
-        bugzillaURLComponents.append("comment=").append(encodedDescription);
+        final StringBuilder bugzillaURL = new StringBuilder(baseUrl);
+        bugzillaURL.append("?");
+        bugzillaURL.append("cf_environment=").append(encodedEnvironment);
+        bugzillaURL.append("&amp;");
+        bugzillaURL.append("comment=").append(encodedDescription);
 
         if (!isNullOrEmpty(buildId)) {
-            bugzillaURLComponents.append("&amp;");
-            bugzillaURLComponents.append("cf_build_id=").append(URLEncoder.encode(buildId, ENCODING));
+            bugzillaURL.append("&amp;");
+            bugzillaURL.append("cf_build_id=").append(URLEncoder.encode(buildId, ENCODING));
         }
 
         if (bzOptions.isInjectAssignee() && !isNullOrEmpty(bugzillaAssignedTo)) {
-            bugzillaURLComponents.append("&amp;");
-            bugzillaURLComponents.append("assigned_to=").append(bugzillaAssignedTo);
+            bugzillaURL.append("&amp;");
+            bugzillaURL.append("assigned_to=").append(bugzillaAssignedTo);
         }
 
+        // add the options that are the same for every bug link
+        bugzillaURL.append(encodedStaticParameters);
+
+        return bugzillaURL.toString();
+    }
+
+    @Override
+    protected String getBugLinkBaseUrl(final BugzillaBugLinkOptions bzOptions) {
+        return getFixedBugzillaUrl() + "enter_bug.cgi";
+    }
+
+    @Override
+    protected String compileStaticUrlParameters(final BugzillaBugLinkOptions bzOptions) throws UnsupportedEncodingException {
+        final StringBuilder bugzillaURLComponents = new StringBuilder();
+
         // check the content spec options first
         if (bzOptions != null && bzOptions.getProduct() != null) {
             bugzillaURLComponents.append("&amp;");
@@ -221,25 +283,38 @@ public class BugzillaBugLinkStrategy extends BaseBugLinkStrategy<BugzillaBugLink
             }
         }
 
-        // build the bugzilla url with the base components
-        return getFixedBugzillaUrl() + "enter_bug.cgi" + bugzillaURLComponents.toString();
+        return bugzillaURLComponents.toString();
     }
 
     @Override
     public void validate(final BugzillaBugLinkOptions bugzillaOptions) throws ValidationException {
         if (!connected) {
-            try {
-                connect();
-            } catch (ConnectionException e) {
-                throw new RuntimeException(e);
+            synchronized (this) {
+                if (!connected) {
+                    try {
+                        connect();
+                    } catch (ConnectionException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
             }
         }
-        final GetProduct getProduct = new GetProduct(bugzillaOptions.getProduct());
-        final GetBugField getBugField = new GetBugField("keywords");
+
+        // Start looking up the keywords while the product is being validated
+        final ExecutorService executor = this.executor;
+        Future<Set<String>> keywordsFuture = null;
+        if (executor != null && !isNullOrEmpty(bugzillaOptions.getKeywords()) && !isNullOrEmpty(bugzillaOptions.getProduct())) {
+            keywordsFuture = executor.submit(new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() throws Exception {
+                    return getBugzillaKeywords();
+                }
+            });
+        }
+
         try {
             if (!isNullOrEmpty(bugzillaOptions.getProduct())) {
-                connector.executeMethod(getProduct);
-                final Product product = getProduct.getProduct();
+                final Product product = getBugzillaProduct(bugzillaOptions.getProduct());
                 if (product == null) {
                     throw new ValidationException("No Bugzilla Product exists for product \"" + bugzillaOptions.getProduct() + "\", " +
                             "or it is a private Product.");
@@ -271,26 +346,19 @@ public class BugzillaBugLinkStrategy extends BaseBugLinkStrategy<BugzillaBugLink
 
             // Validate the keywords
             if (!isNullOrEmpty(bugzillaOptions.getKeywords())) {
-                connector.executeMethod(getBugField);
-                final BugField bugField = getBugField.getBugField();
-                final List<BugFieldValue> values = bugField.getValues();
+                final Set<String> validKeywords = keywordsFuture == null ? getBugzillaKeywords() : getKeywordsResult(keywordsFuture);
 
                 final String[] keywords = bugzillaOptions.getKeywords().split("\\s*,\\s*");
                 for (final String keyword : keywords) {
-                    boolean found = false;
-                    for (final BugFieldValue value : values) {
-                        if (value.getName() != null && value.getName().equals(keyword)) {
-                            found = true;
-                            break;
-                        }
-                    }
-
-                    if (!found) {
+                    if (!validKeywords.contains(keyword)) {
                         throw new ValidationException("No Bugzilla Keyword exists for keyword \"" + keyword + "\".");
                     }
                 }
             }
         } catch (ValidationException e) {
+            if (keywordsFuture != null) {
+                keywordsFuture.cancel(true);
+            }
             throw e;
         } catch (InstantiationException e) {
             throw new RuntimeException(e);
@@ -349,6 +417,102 @@ public class BugzillaBugLinkStrategy extends BaseBugLinkStrategy<BugzillaBugLink
         }
     }
 
+    /**
+     * Gets the details for a Bugzilla product, from the cache or the Bugzilla server if it isn't cached or has expired.
+     *
+     * @param productName The name of the product.
+     * @return The product details, or null if the product doesn't exist. Products that don't exist aren't cached, so that they are
+     *         found as soon as they are created.
+     */
+    protected Product getBugzillaProduct(final String productName) throws BugzillaException, InstantiationException,
+            IllegalAccessException {
+        CachedValue<Product> cachedProduct = productCache.get(productName);
+        if (cachedProduct == null || cachedProduct.isExpired()) {
+            final Product product = lookupBugzillaProduct(productName);
+            if (product == null) {
+                productCache.remove(productName);
+                return null;
+            }
+
+            cachedProduct = new CachedValue<Product>(product, System.currentTimeMillis() + cacheTTL);
+            productCache.put(productName, cachedProduct);
+        }
+        return cachedProduct.getValue();
+    }
+
+    /**
+     * Gets the names of the keywords that exist on the Bugzilla server, from the cache or the Bugzilla server if they aren't
+     * cached or have expired.
+     *
+     * @return The set of keyword names.
+     */
+    protected Set<String> getBugzillaKeywords() throws BugzillaException, InstantiationException, IllegalAccessException {
+        CachedValue<Set<String>> cachedKeywords = keywordsCache;
+        if (cachedKeywords == null || cachedKeywords.isExpired()) {
+            cachedKeywords = new CachedValue<Set<String>>(lookupBugzillaKeywords(), System.currentTimeMillis() + cacheTTL);
+            keywordsCache = cachedKeywords;
+        }
+        return cachedKeywords.getValue();
+    }
+
+    /**
+     * Looks up the details for a Bugzilla product from the Bugzilla server.
+     *
+     * @param productName The name of the product.
+     * @return The product details, or null if the product doesn't exist.
+     */
+    protected Product lookupBugzillaProduct(final String productName) throws BugzillaException, InstantiationException,
+            IllegalAccessException {
+        final GetProduct getProduct = new GetProduct(productName);
+        connector.executeMethod(getProduct);
+        return getProduct.getProduct();
+    }
+
+    /**
+     * Looks up the names of the keywords that exist on the Bugzilla server.
+     *
+     * @return The set of keyword names.
+     */
+    protected Set<String> lookupBugzillaKeywords() throws BugzillaException, InstantiationException, IllegalAccessException {
+        final GetBugField getBugField = new GetBugField("keywords");
+        connector.executeMethod(getBugField);
+        final BugField bugField = getBugField.getBugField();
+        final List<BugFieldValue> values = bugField.getValues();
+
+        final Set<String> keywords = new HashSet<String>();
+        for (final BugFieldValue value : values) {
+            if (value.getName() != null) {
+                keywords.add(value.getName());
+            }
+        }
+        return keywords;
+    }
+
+    private Set<String> getKeywordsResult(final Future<Set<String>> keywordsFuture) throws BugzillaException, InstantiationException,
+            IllegalAccessException {
+        try {
+            return keywordsFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof BugzillaException) {
+                throw (BugzillaException) cause;
+            } else if (cause instanceof InstantiationException) {
+                throw (InstantiationException) cause;
+            } else if (cause instanceof IllegalAccessException) {
+                throw (IllegalAccessException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
     protected ProductComponent getBugzillaComponent(final String component, final Product product) {
         if (product.getComponents() != null) {
             for (final ProductComponent componentEntity : product.getComponents()) {
@@ -372,4 +536,25 @@ public class BugzillaBugLinkStrategy extends BaseBugLinkStrategy<BugzillaBugLink
 
         return null;
     }
+
+    /**
+     * A value that has been looked up from the Bugzilla server, along with the time that the value expires.
+     */
+    private static class CachedValue<T> {
+        private final T value;
+        private final long expiryTime;
+
+        private CachedValue(final T value, final long expiryTime) {
+            this.value = value;
+            this.expiryTime = expiryTime;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() > expiryTime;
+        }
+    }
 }
@@ -19,6 +19,8 @@
 
 package org.jboss.pressgang.ccms.contentspec.buglinks;
 
+import com.google.common.base.Objects;
+
 public class JIRABugLinkOptions extends BugLinkOptions {
     private String project;
     private String component;
@@ -56,4 +58,18 @@ public class JIRABugLinkOptions extends BugLinkOptions {
     public void setVersion(String version) {
         this.version = version;
     }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (!super.equals(o)) return false;
+
+        final JIRABugLinkOptions other = (JIRABugLinkOptions) o;
+        return Objects.equal(project, other.project) && Objects.equal(component, other.component) && Objects.equal(labels,
+                other.labels) && Objects.equal(version, other.version);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Objects.hashCode(project, component, labels, version);
+    }
 }
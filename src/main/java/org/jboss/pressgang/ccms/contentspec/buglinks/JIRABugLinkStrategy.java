@@ -24,9 +24,10 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import org.jboss.pressgang.ccms.contentspec.InitialContent;
@@ -53,9 +54,16 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
     protected static final String DESCRIPTION_TEMPLATE = "Title: %s\n\n" + "Describe the issue:\n\n\nSuggestions for " +
             "improvement:\n\n\nAdditional information:";
 
+    protected static final long DEFAULT_CACHE_TTL = TimeUnit.MINUTES.toMillis(10);
+
     private JIRARESTInterface client = null;
-    private List<JIRAProject> projects = null;
-    private Map<String, JIRAProject> projectKeyMap = new HashMap<String, JIRAProject>();
+    private volatile List<JIRAProject> projects = null;
+    private volatile long projectsExpiryTime = 0L;
+    /**
+     * The cached JIRA project details, keyed by the server url and project.
+     */
+    private final Map<String, CachedJIRAProject> projectCache = new ConcurrentHashMap<String, CachedJIRAProject>();
+    private volatile long cacheTTL = DEFAULT_CACHE_TTL;
 
     public JIRABugLinkStrategy() {
     }
@@ -66,34 +74,65 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
         if (jiraUrl != null) {
             client = JIRAProxyFactory.create(jiraUrl).getRESTClient();
         }
+        // The list of all projects is only valid for a single server
+        projects = null;
+    }
+
+    /**
+     * Sets how long the JIRA project, component and version details should be cached for, before they are looked up again.
+     *
+     * @param ttl  The amount of time to cache the details for.
+     * @param unit The unit of time that the ttl is in.
+     */
+    public void setCacheTTL(final long ttl, final TimeUnit unit) {
+        cacheTTL = unit.toMillis(ttl);
+    }
+
+    /**
+     * Removes all the cached JIRA project, component and version details.
+     */
+    public void invalidateCache() {
+        projects = null;
+        projectCache.clear();
+    }
+
+    /**
+     * Removes the cached JIRA project, component and version details for a single project on the current server.
+     *
+     * @param project The project key, name or id.
+     */
+    public void invalidateCache(final String project) {
+        projectCache.remove(getProjectCacheKey(project));
     }
 
     @Override
     public String generateUrl(final JIRABugLinkOptions bugOptions, final SpecTopic specTopic, final String buildName,
             Date buildDate) throws UnsupportedEncodingException {
+        final BugLinkTemplate template = getTemplate(bugOptions, buildName, buildDate);
         final BaseTopicWrapper<?> topic = specTopic.getTopic();
 
         final String description = URLEncoder.encode(String.format(DESCRIPTION_TEMPLATE, topic.getTitle()), ENCODING);
-        final StringBuilder jiraEnvironment = buildBaseEnvironment(bugOptions, buildName, buildDate);
-        jiraEnvironment.append("\nTopic ID: ").append(topic.getTopicId()).append("-").append(topic.getTopicRevision());
+        final StringBuilder jiraEnvironment = new StringBuilder("\nTopic ID: ");
+        jiraEnvironment.append(topic.getTopicId()).append("-").append(topic.getTopicRevision());
         if (specTopic.getRevision() == null) {
             jiraEnvironment.append(" [Latest]");
         } else {
             jiraEnvironment.append(" [Specified]");
         }
 
-        // Encode the URL and add in the build name/date entities
-        final String encodedJIRAEnvironment = addBuildNameAndDateEntities(URLEncoder.encode(jiraEnvironment.toString(), ENCODING));
+        // Encode the topic environment details and add them to the precompiled build name/date details
+        final String encodedJIRAEnvironment = template.getEncodedBaseEnvironment(true) + URLEncoder.encode(jiraEnvironment.toString(),
+                ENCODING);
 
-        return generateUrl(bugOptions, description, encodedJIRAEnvironment);
+        return generateUrl(template, description, encodedJIRAEnvironment);
     }
 
     @Override
     public String generateUrl(final JIRABugLinkOptions bugOptions, final InitialContent initialContent, final String buildName,
             Date buildDate) throws UnsupportedEncodingException {
+        final BugLinkTemplate template = getTemplate(bugOptions, buildName, buildDate);
         final String description = URLEncoder.encode(String.format(DESCRIPTION_TEMPLATE, initialContent.getParent().getTitle()), ENCODING);
-        final StringBuilder jiraEnvironment = buildBaseEnvironment(bugOptions, buildName, buildDate);
-        jiraEnvironment.append("\nTopic IDs:");
+        final StringBuilder jiraEnvironment = new StringBuilder("\nTopic IDs:");
 
         for (final SpecTopic initialContentTopic : initialContent.getSpecTopics()) {
             final BaseTopicWrapper<?> topic = initialContentTopic.getTopic();
@@ -107,15 +146,11 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
             }
         }
 
-        // Encode the URL and add in the build name/date entities
-        final String encodedJIRAEnvironment;
-        if (bugOptions.isUseEntities()) {
-            encodedJIRAEnvironment = addBuildNameAndDateEntities(URLEncoder.encode(jiraEnvironment.toString(), ENCODING));
-        } else {
-            encodedJIRAEnvironment = URLEncoder.encode(jiraEnvironment.toString(), ENCODING);
-        }
+        // Encode the topic environment details and add them to the precompiled build name/date details
+        final String encodedJIRAEnvironment = template.getEncodedBaseEnvironment(bugOptions.isUseEntities()) + URLEncoder.encode(
+                jiraEnvironment.toString(), ENCODING);
 
-        return generateUrl(bugOptions, description, encodedJIRAEnvironment);
+        return generateUrl(template, description, encodedJIRAEnvironment);
     }
 
     @Override
@@ -123,14 +158,14 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
             final Date buildDate) throws UnsupportedEncodingException {
         final StringBuilder retValue = new StringBuilder(super.generateEntities(bugOptions, buildName, buildDate));
 
-        final JIRAProject project = getJIRAProject(client, bugOptions.getProject());
+        final CachedJIRAProject project = getCachedJIRAProject(client, bugOptions.getProject());
         if (project == null) {
             throw new BugLinkException("The JIRA Project \"" + bugOptions.getProject() + "\" cannot be found");
         } else {
-            retValue.append("<!ENTITY BUILD_JIRA_PID \"").append(project.getId()).append("\">\n");
+            retValue.append("<!ENTITY BUILD_JIRA_PID \"").append(project.getProject().getId()).append("\">\n");
 
             if (bugOptions.getComponent() != null) {
-                final JIRAComponent component = getJIRAComponent(bugOptions.getComponent(), project);
+                final JIRAComponent component = project.getComponent(bugOptions.getComponent());
                 if (component == null) {
                     throw new BugLinkException("The JIRA Component \"" + bugOptions.getComponent() + "\" cannot be found");
                 } else {
@@ -139,7 +174,7 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
             }
 
             if (bugOptions.getVersion() != null) {
-                final JIRAVersion version = getJIRAVersion(bugOptions.getVersion(), project);
+                final JIRAVersion version = project.getVersion(bugOptions.getVersion());
                 if (version == null) {
                     throw new BugLinkException("The JIRA Version \"" + bugOptions.getVersion() + "\" cannot be found");
                 } else {
@@ -153,15 +188,42 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
 
     protected String generateUrl(final JIRABugLinkOptions bugOptions, final String encodedDescription,
             final String encodedJIRAEnvironment) throws UnsupportedEncodingException {
-        // build the bugzilla url options
-        final StringBuilder JIRAURLComponents = new StringBuilder("?issuetype=1");
+        return generateUrl(getBugLinkBaseUrl(bugOptions), compileStaticUrlParameters(bugOptions), encodedDescription,
+                encodedJIRAEnvironment);
+    }
+
+    protected String generateUrl(final BugLinkTemplate template, final String encodedDescription,
+            final String encodedJIRAEnvironment) throws UnsupportedEncodingException {
+        return generateUrl(template.getBaseUrl(), template.getEncodedStaticParameters(), encodedDescription, encodedJIRAEnvironment);
+    }
+
+    private String generateUrl(final String baseUrl, final String encodedStaticParameters, final String encodedDescription,
+            final String encodedJIRAEnvironment) {
+        // build the JIRA url with the base components
+        final StringBuilder JIRAURL = new StringBuilder(baseUrl);
+        JIRAURL.append("?issuetype=1");
+
+        JIRAURL.append("&amp;");
+        JIRAURL.append("environment=").append(encodedJIRAEnvironment);
+        JIRAURL.append("&amp;");
+        JIRAURL.append("description=").append(encodedDescription);
 
-        JIRAURLComponents.append("&amp;");
-        JIRAURLComponents.append("environment=").append(encodedJIRAEnvironment);
-        JIRAURLComponents.append("&amp;");
-        JIRAURLComponents.append("description=").append(encodedDescription);
+        // add the options that are the same for every bug link
+        JIRAURL.append(encodedStaticParameters);
 
-        final JIRAProject project = getJIRAProject(client, bugOptions.getProject());
+        return JIRAURL.toString();
+    }
+
+    @Override
+    protected String getBugLinkBaseUrl(final JIRABugLinkOptions bugOptions) {
+        return getFixedServerUrl() + "secure/CreateIssueDetails!init.jspa";
+    }
+
+    @Override
+    protected String compileStaticUrlParameters(final JIRABugLinkOptions bugOptions) throws UnsupportedEncodingException {
+        final StringBuilder JIRAURLComponents = new StringBuilder();
+
+        final CachedJIRAProject project = getCachedJIRAProject(client, bugOptions.getProject());
         if (project == null) {
             throw new BugLinkException("The JIRA Project \"" + bugOptions.getProject() + "\" cannot be found");
         } else {
@@ -170,7 +232,7 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
             if (bugOptions.isUseEntities()) {
                 JIRAURLComponents.append("&BUILD_JIRA_PID;");
             } else {
-                JIRAURLComponents.append(project.getId());
+                JIRAURLComponents.append(project.getProject().getId());
             }
 
             if (bugOptions.getComponent() != null) {
@@ -179,8 +241,8 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
                 if (bugOptions.isUseEntities()) {
                     JIRAURLComponents.append("&BUILD_JIRA_CID;");
                 } else {
-                    final JIRAComponent component = getJIRAComponent(bugOptions.getComponent(), project);
-                    if (project == null) {
+                    final JIRAComponent component = project.getComponent(bugOptions.getComponent());
+                    if (component == null) {
                         throw new BugLinkException("The JIRA Component \"" + bugOptions.getComponent() + "\" cannot be found");
                     } else {
                         JIRAURLComponents.append(component.getId());
@@ -194,8 +256,8 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
                 if (bugOptions.isUseEntities()) {
                     JIRAURLComponents.append("&BUILD_JIRA_VID;");
                 } else {
-                    final JIRAVersion version = getJIRAVersion(bugOptions.getVersion(), project);
-                    if (project == null) {
+                    final JIRAVersion version = project.getVersion(bugOptions.getVersion());
+                    if (version == null) {
                         throw new BugLinkException("The JIRA Version \"" + bugOptions.getVersion() + "\" cannot be found");
                     } else {
                         JIRAURLComponents.append(version.getId());
@@ -212,8 +274,7 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
                 }
             }
 
-            // build the JIRA url with the base components
-            return getFixedServerUrl() + "secure/CreateIssueDetails!init.jspa" + JIRAURLComponents.toString();
+            return JIRAURLComponents.toString();
         }
     }
 
@@ -222,13 +283,13 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
         if (isNullOrEmpty(jiraOptions.getProject())) {
             throw new ValidationException("No Jira Project was specified.");
         } else {
-            final JIRAProject project = getJIRAProject(client, jiraOptions.getProject());
+            final CachedJIRAProject project = getCachedJIRAProject(client, jiraOptions.getProject());
             if (project == null) {
                 throw new ValidationException("No JIRA Project exists for project \"" + jiraOptions.getProject() + "\".");
             } else {
                 // Validate the JIRA Component
                 if (jiraOptions.getComponent() != null) {
-                    final JIRAComponent component = getJIRAComponent(jiraOptions.getComponent(), project);
+                    final JIRAComponent component = project.getComponent(jiraOptions.getComponent());
                     if (component == null) {
                         throw new ValidationException("No JIRA Component exists for component \"" + jiraOptions.getComponent() + "\".");
                     }
@@ -236,7 +297,7 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
 
                 // Validate the JIRA Version
                 if (jiraOptions.getVersion() != null) {
-                    final JIRAVersion version = getJIRAVersion(jiraOptions.getVersion(), project);
+                    final JIRAVersion version = project.getVersion(jiraOptions.getVersion());
                     if (version == null) {
                         throw new ValidationException("No JIRA Version exists for version \"" + jiraOptions.getVersion() + "\".");
                     }
@@ -290,52 +351,109 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
     }
 
     protected JIRAProject getJIRAProject(final JIRARESTInterface client, final String project) {
-        try {
-            // Check our key map first
-            if (projectKeyMap.containsKey(project)) {
-                return projectKeyMap.get(project);
+        final CachedJIRAProject cachedProject = getCachedJIRAProject(client, project);
+        return cachedProject == null ? null : cachedProject.getProject();
+    }
+
+    /**
+     * Gets the cached details for a JIRA project, or looks up the project if it isn't cached or the cached details have expired.
+     *
+     * @param client  The client to use to lookup the project.
+     * @param project The project key, name or id.
+     * @return The cached project details, or null if the project doesn't exist or couldn't be looked up. Only projects that
+     *         definitely don't exist are cached, so failed lookups are retried.
+     */
+    protected CachedJIRAProject getCachedJIRAProject(final JIRARESTInterface client, final String project) {
+        final String key = getProjectCacheKey(project);
+        CachedJIRAProject cachedProject = projectCache.get(key);
+        if (cachedProject == null || cachedProject.isExpired()) {
+            final JIRAProject projectEntity;
+            try {
+                projectEntity = findJIRAProject(client, project);
+            } catch (ProviderException e) {
+                // The lookup failed, so don't cache anything as the project may exist
+                return null;
+            } catch (ClientResponseFailure e) {
+                // The lookup failed, so don't cache anything as the project may exist
+                return null;
+            } catch (ProjectLookupFailedException e) {
+                // The project exists, but its details couldn't be loaded
+                return null;
             }
 
-            if (projects == null) {
-                // Try and get the project first if the project entered is the project key
-                JIRAProject projectEntity = null;
-                try {
-                    projectEntity = client.getProject(project);
-                } catch (Exception e) {
-                    LOG.debug("", e);
-                    // do nothing as we will pick up a missing project later
-                }
+            cachedProject = new CachedJIRAProject(projectEntity, System.currentTimeMillis() + cacheTTL);
+            projectCache.put(key, cachedProject);
+        }
 
-                // If the project isn't null then we found a matching one, otherwise load all the projects
-                if (projectEntity != null) {
-                    projectKeyMap.put(project, projectEntity);
-                    return projectEntity;
-                } else {
-                    projects = client.getProjects();
-                }
+        // Projects that definitely don't exist are cached as well, so that they aren't looked up again
+        return cachedProject.getProject() == null ? null : cachedProject;
+    }
+
+    private String getProjectCacheKey(final String project) {
+        return getServerUrl() + " " + project;
+    }
+
+    /**
+     * Finds a JIRA project on the server, without using the cached details.
+     *
+     * @param client  The client to use to lookup the project.
+     * @param project The project key, name or id.
+     * @return The matching project, or null if the project definitely doesn't exist.
+     * @throws ProviderException      Thrown if the lookup failed.
+     * @throws ClientResponseFailure Thrown if the lookup failed.
+     * @throws ProjectLookupFailedException Thrown if the project exists, but its details couldn't be loaded.
+     */
+    private JIRAProject findJIRAProject(final JIRARESTInterface client, final String project) {
+        List<JIRAProject> projects = this.projects;
+        if (projects == null || System.currentTimeMillis() > projectsExpiryTime) {
+            // Try and get the project first if the project entered is the project key
+            JIRAProject projectEntity = null;
+            try {
+                projectEntity = client.getProject(project);
+            } catch (Exception e) {
+                LOG.debug("", e);
+                // do nothing as we will pick up a missing project later
+            }
+
+            // If the project isn't null then we found a matching one, otherwise load all the projects
+            if (projectEntity != null) {
+                return projectEntity;
+            } else {
+                projects = client.getProjects();
+                this.projects = projects;
+                projectsExpiryTime = System.currentTimeMillis() + cacheTTL;
             }
+        }
 
-            // Check all the projects to find one that matches
-            for (final JIRAProject projectEntity : projects) {
-                if (projectEntity.getKey() != null && projectEntity.getKey().equals(project)) {
-                    return projectEntity;
-                } else if ((projectEntity.getName() != null && projectEntity.getName().equals(project)) || (NUMBER_PATTERN.matcher(
-                        project).matches() && projectEntity.getId().equals(Long.parseLong(project)))) {
-                    // Load the project from the server as we'll need it to get the components/versions
-                    final JIRAProject foundProject = client.getProject(projectEntity.getKey());
-                    projectKeyMap.put(project, foundProject);
-                    return foundProject;
+        // Check all the projects to find one that matches
+        for (final JIRAProject projectEntity : projects) {
+            if (projectEntity.getKey() != null && projectEntity.getKey().equals(project)) {
+                return projectEntity;
+            } else if ((projectEntity.getName() != null && projectEntity.getName().equals(project)) || (NUMBER_PATTERN.matcher(
+                    project).matches() && projectEntity.getId().equals(Long.parseLong(project)))) {
+                // Load the project from the server as we'll need it to get the components/versions
+                final JIRAProject fullProjectEntity = client.getProject(projectEntity.getKey());
+                if (fullProjectEntity == null) {
+                    throw new ProjectLookupFailedException(project);
                 }
+                return fullProjectEntity;
             }
-        } catch (ProviderException e) {
-            // We have to catch this because of the Error Interceptor
-        } catch (ClientResponseFailure e) {
-            // Do nothing, as if an error occurs than it likely means the project doesn't exist
         }
 
         return null;
     }
 
+    /**
+     * Thrown when a JIRA project is known to exist, but its details couldn't be loaded.
+     */
+    private static class ProjectLookupFailedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ProjectLookupFailedException(final String project) {
+            super("Unable to load the details for the \"" + project + "\" JIRA project");
+        }
+    }
+
     protected JIRAComponent getJIRAComponent(final String component, final JIRAProject project) {
         if (project.getComponents() != null) {
             for (final JIRAComponent componentEntity : project.getComponents()) {
@@ -363,4 +481,61 @@ public class JIRABugLinkStrategy extends BaseBugLinkStrategy<JIRABugLinkOptions>
 
         return null;
     }
+
+    /**
+     * The cached details of a JIRA project, along with the components and versions that have been looked up for the project.
+     */
+    protected class CachedJIRAProject {
+        private final JIRAProject project;
+        private final long expiryTime;
+        private final Map<String, JIRAComponent> components = new ConcurrentHashMap<String, JIRAComponent>();
+        private final Map<String, JIRAVersion> versions = new ConcurrentHashMap<String, JIRAVersion>();
+
+        protected CachedJIRAProject(final JIRAProject project, final long expiryTime) {
+            this.project = project;
+            this.expiryTime = expiryTime;
+        }
+
+        public JIRAProject getProject() {
+            return project;
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() > expiryTime;
+        }
+
+        /**
+         * Gets a component of the project.
+         *
+         * @param component The component name or id.
+         * @return The matching component, or null if the component doesn't exist.
+         */
+        public JIRAComponent getComponent(final String component) {
+            JIRAComponent componentEntity = components.get(component);
+            if (componentEntity == null) {
+                componentEntity = getJIRAComponent(component, project);
+                if (componentEntity != null) {
+                    components.put(component, componentEntity);
+                }
+            }
+            return componentEntity;
+        }
+
+        /**
+         * Gets a version of the project.
+         *
+         * @param version The version name or id.
+         * @return The matching version, or null if the version doesn't exist.
+         */
+        public JIRAVersion getVersion(final String version) {
+            JIRAVersion versionEntity = versions.get(version);
+            if (versionEntity == null) {
+                versionEntity = getJIRAVersion(version, project);
+                if (versionEntity != null) {
+                    versions.put(version, versionEntity);
+                }
+            }
+            return versionEntity;
+        }
+    }
 }
@@ -19,81 +19,154 @@
 
 package org.jboss.pressgang.ccms.contentspec.sort;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
 
 import org.jboss.pressgang.ccms.contentspec.Node;
 import org.jboss.pressgang.ccms.wrapper.CSNodeWrapper;
 
 public class CSNodeSorter {
     public static <T extends Node> LinkedHashMap<CSNodeWrapper, T> sortMap(Map<CSNodeWrapper, T> map) {
+        return sort(map).getSortedMap();
+    }
+
+    /**
+     * Sorts a map of nodes using the next node references, in a single pass over the map. Any entries that can't be placed in the
+     * chain (because the chain is broken or cyclic) are added to the end of the sorted map, in the order they appear in the
+     * original map.
+     *
+     * @param map The unordered map.
+     * @return The result of the sort, containing the sorted map and details on any entries that couldn't be placed.
+     */
+    public static <T extends Node> SortResult<T> sort(Map<CSNodeWrapper, T> map) {
         // If the map is empty then just return an empty map
-        if (map.isEmpty()) return new LinkedHashMap<CSNodeWrapper, T>(map);
+        if (map.isEmpty()) return new SortResult<T>(new LinkedHashMap<CSNodeWrapper, T>(map), 0, false, false);
 
-        final LinkedHashMap<CSNodeWrapper, T> retValue = new LinkedHashMap<CSNodeWrapper, T>();
+        final Set<CSNodeWrapper> placedNodes = new HashSet<CSNodeWrapper>();
         final LinkedList<Map.Entry<CSNodeWrapper, T>> sortIndex = new LinkedList<Map.Entry<CSNodeWrapper, T>>();
+        boolean broken = false;
+        boolean cyclic = false;
 
         /*
          * Note: To sort the map we have to use the next node references to create this. Since we also don't know the initial node,
          * we have to work in reverse. So we initially find the last node and then work backwards to until we get the initial node.
+         * To avoid scanning the whole map for every node, the entries are first indexed by the id of their next node.
          */
+        final Map<Integer, Map.Entry<CSNodeWrapper, T>> previousEntries = new HashMap<Integer, Map.Entry<CSNodeWrapper, T>>();
+        Map.Entry<CSNodeWrapper, T> nodeEntry = null;
+        for (final Map.Entry<CSNodeWrapper, T> entry : map.entrySet()) {
+            final CSNodeWrapper nextNode = entry.getKey().getNextNode();
+            if (nextNode == null) {
+                // Find the last node in the map
+                if (nodeEntry == null) {
+                    nodeEntry = entry;
+                } else {
+                    broken = true;
+                }
+            } else if (nextNode.getId() == null) {
+                broken = true;
+            } else if (!previousEntries.containsKey(nextNode.getId())) {
+                previousEntries.put(nextNode.getId(), entry);
+            } else {
+                // Two nodes point to the same next node, so only one of them can be placed
+                broken = true;
+            }
+        }
 
-        // Find the last node in the map
-        Map.Entry<CSNodeWrapper, T> nodeEntry = findLastEntry(map);
-
-        // Add the initial entry to the linked hash map
-        sortIndex.add(nodeEntry);
-
-        // Add the following entries to the map
-        while ((nodeEntry = findEntry(map, nodeEntry.getKey().getId())) != null) {
-            sortIndex.addFirst(nodeEntry);
+        if (nodeEntry == null) {
+            // Every node has a next node, so there is no end to the chain
+            cyclic = true;
+        } else {
+            // Add the initial entry to the linked hash map
+            sortIndex.add(nodeEntry);
+            placedNodes.add(nodeEntry.getKey());
+
+            // Add the following entries to the map
+            while (nodeEntry.getKey().getId() != null && (nodeEntry = previousEntries.get(nodeEntry.getKey().getId())) != null) {
+                if (placedNodes.contains(nodeEntry.getKey())) {
+                    cyclic = true;
+                    break;
+                }
+                sortIndex.addFirst(nodeEntry);
+                placedNodes.add(nodeEntry.getKey());
+            }
         }
 
         // Now create the map since the we have order
+        final LinkedHashMap<CSNodeWrapper, T> sortedMap = new LinkedHashMap<CSNodeWrapper, T>();
         for (final Map.Entry<CSNodeWrapper, T> sortKey : sortIndex) {
-            retValue.put(sortKey.getKey(), sortKey.getValue());
+            sortedMap.put(sortKey.getKey(), sortKey.getValue());
         }
 
-        return retValue;
-    }
-
-    /**
-     * Find the entry, how has a next node that matches a specified by a node id.
-     *
-     * @param map The map to find the entry from.
-     * @param id  The next node ID of to find in the map
-     * @return The Entry value where the key matches the node id otherwise null.
-     */
-    private static <T extends Node> Map.Entry<CSNodeWrapper, T> findEntry(Map<CSNodeWrapper, T> map, Integer id) {
-        if (id == null) return null;
-
+        // Add any entries that couldn't be placed to the end, so that they aren't lost
+        int unplacedCount = 0;
         for (final Map.Entry<CSNodeWrapper, T> entry : map.entrySet()) {
-            if (entry.getKey().getNextNode() != null && entry.getKey().getNextNode().getId().equals(id)) {
-                return entry;
+            if (!sortedMap.containsKey(entry.getKey())) {
+                sortedMap.put(entry.getKey(), entry.getValue());
+                unplacedCount++;
             }
         }
 
-        return null;
+        return new SortResult<T>(sortedMap, unplacedCount, broken || unplacedCount > 0, cyclic);
     }
 
     /**
-     * Finds the initial entry for the unordered map.
+     * The result of sorting a map of nodes based on their next node references.
      *
-     * @param map The unordered map.
-     * @return The initial entry to start sorting the map from.
+     * @param <T> The type of node that was sorted.
      */
-    private static <T extends Node> Map.Entry<CSNodeWrapper, T> findLastEntry(Map<CSNodeWrapper, T> map) {
-        Map.Entry<CSNodeWrapper, T> nodeEntry = null;
+    public static class SortResult<T extends Node> {
+        private final LinkedHashMap<CSNodeWrapper, T> sortedMap;
+        private final int unplacedCount;
+        private final boolean brokenChain;
+        private final boolean cyclicChain;
+
+        protected SortResult(final LinkedHashMap<CSNodeWrapper, T> sortedMap, int unplacedCount, boolean brokenChain,
+                boolean cyclicChain) {
+            this.sortedMap = sortedMap;
+            this.unplacedCount = unplacedCount;
+            this.brokenChain = brokenChain;
+            this.cyclicChain = cyclicChain;
+        }
 
-        // Find the initial entry
-        for (final Map.Entry<CSNodeWrapper, T> entry : map.entrySet()) {
-            if (entry.getKey().getNextNode() == null) {
-                nodeEntry = entry;
-                break;
-            }
+        /**
+         * Get the sorted map. Entries that couldn't be placed in the chain are at the end of the map.
+         *
+         * @return The sorted map.
+         */
+        public LinkedHashMap<CSNodeWrapper, T> getSortedMap() {
+            return sortedMap;
         }
 
-        return nodeEntry;
+        /**
+         * Get the number of entries that couldn't be placed using the next node references.
+         *
+         * @return The number of unplaced entries.
+         */
+        public int getUnplacedCount() {
+            return unplacedCount;
+        }
+
+        /**
+         * Checks if the next node references had multiple ends, duplicate references or missing links.
+         *
+         * @return True if the chain of nodes was broken, otherwise false.
+         */
+        public boolean isBrokenChain() {
+            return brokenChain;
+        }
+
+        /**
+         * Checks if the next node references looped back on themselves.
+         *
+         * @return True if the chain of nodes contained a cycle, otherwise false.
+         */
+        public boolean isCyclicChain() {
+            return cyclicChain;
+        }
     }
 }
@@ -0,0 +1,97 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.structures;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.pressgang.ccms.wrapper.CSNodeWrapper;
+
+/**
+ * A builder used to accumulate translation strings and the nodes they map to, into a list of StringToCSNodeCollection's. The
+ * collections are kept in the order that their translation string was first added.
+ */
+public class StringToCSNodeCollectionBuilder {
+    private final boolean allowDuplicates;
+    /**
+     * The collections, keyed by their translation string. Only used when duplicates aren't allowed.
+     */
+    private final Map<String, StringToCSNodeCollection> collectionsByString = new LinkedHashMap<String, StringToCSNodeCollection>();
+    /**
+     * The collections in the order they were added. Only used when duplicates are allowed.
+     */
+    private final List<StringToCSNodeCollection> collections = new ArrayList<StringToCSNodeCollection>();
+
+    /**
+     * @param allowDuplicates If the same translation string can be added multiple times, otherwise the nodes for a duplicate
+     *                        translation string are added to the existing collection.
+     */
+    public StringToCSNodeCollectionBuilder(final boolean allowDuplicates) {
+        this.allowDuplicates = allowDuplicates;
+    }
+
+    /**
+     * Add a node for a translation string.
+     *
+     * @param translationString The translation string.
+     * @param node              The node that the translation string maps to.
+     * @return This builder.
+     */
+    public StringToCSNodeCollectionBuilder add(final String translationString, final CSNodeWrapper node) {
+        getCollection(translationString).addNode(node);
+        return this;
+    }
+
+    private StringToCSNodeCollection getCollection(final String translationString) {
+        if (allowDuplicates) {
+            final StringToCSNodeCollection collection = new StringToCSNodeCollection(translationString);
+            collections.add(collection);
+            return collection;
+        } else {
+            StringToCSNodeCollection collection = collectionsByString.get(translationString);
+            if (collection == null) {
+                collection = new StringToCSNodeCollection(translationString);
+                collectionsByString.put(translationString, collection);
+            }
+            return collection;
+        }
+    }
+
+    /**
+     * Gets the number of collections that have been built.
+     *
+     * @return The number of collections.
+     */
+    public int size() {
+        return allowDuplicates ? collections.size() : collectionsByString.size();
+    }
+
+    /**
+     * Builds the list of collections, in the order that their translation strings were first added. The builder can continue to
+     * be used after calling this method.
+     *
+     * @return The list of collections.
+     */
+    public List<StringToCSNodeCollection> build() {
+        return new ArrayList<StringToCSNodeCollection>(allowDuplicates ? collections : collectionsByString.values());
+    }
+}
@@ -27,9 +27,15 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang.StringUtils;
 import org.jboss.pressgang.ccms.contentspec.Appendix;
@@ -69,6 +75,7 @@ import org.jboss.pressgang.ccms.wrapper.CSNodeWrapper;
 import org.jboss.pressgang.ccms.wrapper.CSRelatedNodeWrapper;
 import org.jboss.pressgang.ccms.wrapper.ContentSpecWrapper;
 import org.jboss.pressgang.ccms.wrapper.TagWrapper;
+import org.jboss.pressgang.ccms.wrapper.TopicWrapper;
 
 public class CSTransformer {
 
@@ -87,6 +94,21 @@ public class CSTransformer {
      */
     public static ContentSpec transform(final ContentSpecWrapper spec, final DataProviderFactory providerFactory,
             final boolean includeChecksum) {
+        return transform(spec, providerFactory, includeChecksum, null);
+    }
+
+    /**
+     * Transforms a content spec datasource entity into a generic content spec object. The top level chapters, parts, etc... are
+     * transformed in parallel using the executor, and the results are then merged in the same order that they would have been
+     * transformed serially.
+     *
+     * @param spec            The content spec entity to be transformed.
+     * @param providerFactory
+     * @param executor        The executor to transform the top level levels with, or null to transform on the current thread.
+     * @return The generic Content Spec object that was transformed from the entity.
+     */
+    public static ContentSpec transform(final ContentSpecWrapper spec, final DataProviderFactory providerFactory,
+            final boolean includeChecksum, final ExecutorService executor) {
         // local variables that are used to map transformed content
         Map<Integer, Node> nodes = new HashMap<Integer, Node>();
         Map<String, SpecTopic> topicTargets = new HashMap<String, SpecTopic>();
@@ -104,6 +126,10 @@ public class CSTransformer {
         if (spec.getChildren() != null) {
             final List<CSNodeWrapper> childNodes = spec.getChildren().getItems();
             final HashMap<CSNodeWrapper, Node> levelNodes = new HashMap<CSNodeWrapper, Node>();
+
+            // Start transforming the top level levels in the background, if an executor was provided
+            final Map<CSNodeWrapper, Future<LevelTransformResult>> levelTasks = submitLevelTransformations(childNodes, executor);
+
             for (final CSNodeWrapper childNode : childNodes) {
                 if (childNode.getNodeType() == CommonConstants.CS_NODE_TOPIC) {
                     final SpecTopic topic = transformSpecTopic(childNode, nodes, topicTargets, relationshipFromNodes);
@@ -123,6 +149,11 @@ public class CSTransformer {
                     if (CommonConstants.CS_LOCALE_TITLE.equalsIgnoreCase(childNode.getTitle())) {
                         localeFound = true;
                     }
+                } else if (levelTasks.containsKey(childNode)) {
+                    // Merge the results in the same order as the serial transformation, so that the output is identical
+                    final LevelTransformResult result = getLevelTransformResult(levelTasks, childNode);
+                    result.mergeInto(nodes, topicTargets, relationshipFromNodes, processes);
+                    levelNodes.put(childNode, result.getLevel());
                 } else {
                     final Level level = transformLevel(childNode, nodes, topicTargets, relationshipFromNodes, processes);
                     levelNodes.put(childNode, level);
@@ -173,6 +204,71 @@ public class CSTransformer {
         return contentSpec;
     }
 
+    /**
+     * Submits each of the level nodes to the executor to be transformed. Each task transforms into its own set of maps, so that no
+     * state is shared between the tasks.
+     *
+     * @param childNodes The top level child nodes of a content spec.
+     * @param executor   The executor to transform the levels with, or null if the levels shouldn't be transformed in parallel.
+     * @return A mapping of level nodes to the task that is transforming the level.
+     */
+    private static Map<CSNodeWrapper, Future<LevelTransformResult>> submitLevelTransformations(final List<CSNodeWrapper> childNodes,
+            final ExecutorService executor) {
+        final Map<CSNodeWrapper, Future<LevelTransformResult>> levelTasks = new HashMap<CSNodeWrapper,
+                Future<LevelTransformResult>>();
+        if (executor == null) return levelTasks;
+
+        for (final CSNodeWrapper childNode : childNodes) {
+            if (EntityUtilities.isNodeALevel(childNode)) {
+                levelTasks.put(childNode, executor.submit(new Callable<LevelTransformResult>() {
+                    @Override
+                    public LevelTransformResult call() throws Exception {
+                        final LevelTransformResult result = new LevelTransformResult();
+                        result.level = transformLevel(childNode, result.nodes, result.topicTargets, result.relationshipFromNodes,
+                                result.processes);
+                        return result;
+                    }
+                }));
+            }
+        }
+
+        return levelTasks;
+    }
+
+    /**
+     * Waits for a level transformation task to complete and gets its result. If the task failed then any remaining tasks are
+     * cancelled and the original exception is rethrown.
+     *
+     * @param levelTasks The level transformation tasks.
+     * @param levelNode  The level node to get the result for.
+     * @return The result of transforming the level node.
+     */
+    private static LevelTransformResult getLevelTransformResult(final Map<CSNodeWrapper, Future<LevelTransformResult>> levelTasks,
+            final CSNodeWrapper levelNode) {
+        try {
+            return levelTasks.get(levelNode).get();
+        } catch (InterruptedException e) {
+            cancelLevelTransformations(levelTasks);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The content spec transformation was interrupted", e);
+        } catch (ExecutionException e) {
+            cancelLevelTransformations(levelTasks);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            } else {
+                throw new IllegalStateException("Failed to transform a level", e.getCause());
+            }
+        }
+    }
+
+    private static void cancelLevelTransformations(final Map<CSNodeWrapper, Future<LevelTransformResult>> levelTasks) {
+        for (final Future<LevelTransformResult> task : levelTasks.values()) {
+            task.cancel(true);
+        }
+    }
+
     private static int setLineNumbers(final Node node, int current) {
         if (node instanceof ContentSpec) {
             for (final Node childNode : ((ContentSpec) node).getNodes()) {
@@ -647,13 +743,35 @@ public class CSTransformer {
         // Create the unique id map
         final Map<String, SpecTopic> uniqueIdSpecTopicMap = ContentSpecUtilities.getUniqueIdSpecTopicMap(contentSpec);
 
+        // Lookup all the topics used in processes up front, so they don't need to be fetched one at a time
+        final TopicProvider topicProvider = providerFactory.getProvider(TopicProvider.class);
+        final Map<Integer, TopicWrapper> processTopics = prefetchProcessTopics(processes, topicProvider);
+
         // Apply the process relationships
         for (final Process process : processes) {
-            process.processTopics(uniqueIdSpecTopicMap, targetTopics, providerFactory.getProvider(TopicProvider.class),
+            process.processTopics(uniqueIdSpecTopicMap, targetTopics, processTopics, topicProvider,
                     providerFactory.getProvider(ServerSettingsProvider.class));
         }
     }
 
+    /**
+     * Looks up all the existing topics used in a list of processes in bulk, so that they can be used when processing the topics.
+     *
+     * @param processes     The processes to lookup the topics for.
+     * @param topicProvider The topic provider to lookup the topic entities from.
+     * @return A mapping of topic ids to their topic entities.
+     */
+    protected static Map<Integer, TopicWrapper> prefetchProcessTopics(final List<Process> processes, final TopicProvider topicProvider) {
+        final Set<Integer> topicIds = new LinkedHashSet<Integer>();
+        for (final Process process : processes) {
+            if (!process.isTopicsProcessed()) {
+                topicIds.addAll(process.getExistingTopicDBIds());
+            }
+        }
+
+        return EntityUtilities.getTopicsByIds(topicProvider, topicIds);
+    }
+
     protected static void applyFixedURLs(final CSNodeWrapper node, final SpecNode specNode) {
         if (!isNullOrEmpty(node.getFixedURL())) {
             specNode.setFixedUrl(node.getFixedURL());
@@ -671,4 +789,30 @@ public class CSTransformer {
             return false;
         }
     }
+
+    /**
+     * Holds the transformed level and the mappings that were built while transforming a level in parallel.
+     */
+    private static class LevelTransformResult {
+        private final Map<Integer, Node> nodes = new HashMap<Integer, Node>();
+        private final Map<String, SpecTopic> topicTargets = new HashMap<String, SpecTopic>();
+        private final List<CSNodeWrapper> relationshipFromNodes = new ArrayList<CSNodeWrapper>();
+        private final List<Process> processes = new ArrayList<Process>();
+        private Level level;
+
+        public Level getLevel() {
+            return level;
+        }
+
+        /**
+         * Merges the mappings built while transforming the level into the content spec wide mappings.
+         */
+        public void mergeInto(final Map<Integer, Node> nodes, final Map<String, SpecTopic> topicTargets,
+                final List<CSNodeWrapper> relationshipFromNodes, final List<Process> processes) {
+            nodes.putAll(this.nodes);
+            topicTargets.putAll(this.topicTargets);
+            relationshipFromNodes.addAll(this.relationshipFromNodes);
+            processes.addAll(this.processes);
+        }
+    }
 }
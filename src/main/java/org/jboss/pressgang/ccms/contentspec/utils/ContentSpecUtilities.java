@@ -41,6 +41,7 @@ import org.jboss.pressgang.ccms.contentspec.ITopicNode;
 import org.jboss.pressgang.ccms.contentspec.InfoTopic;
 import org.jboss.pressgang.ccms.contentspec.Level;
 import org.jboss.pressgang.ccms.contentspec.Node;
+import org.jboss.pressgang.ccms.contentspec.NodeIterator;
 import org.jboss.pressgang.ccms.contentspec.SpecNode;
 import org.jboss.pressgang.ccms.contentspec.SpecTopic;
 import org.jboss.pressgang.ccms.contentspec.constants.CSConstants;
@@ -80,8 +81,7 @@ public class ContentSpecUtilities {
      * @return The MD5 hash representing the content spec contents.
      */
     public static String getContentSpecChecksum(final ContentSpec contentSpec) {
-        final String contentSpecString = contentSpec.toString();
-        return getContentSpecChecksum(contentSpecString);
+        return contentSpec.calculateChecksum();
     }
 
     /**
@@ -655,11 +655,11 @@ public class ContentSpecUtilities {
             }
 
             if (childNode instanceof Level) {
-                fixedUrls.addAll(getFixedURLs((Level) childNode));
+                collectFixedURLs((Level) childNode, fixedUrls);
             }
         }
 
-        fixedUrls.addAll(getFixedURLs(contentSpec.getBaseLevel()));
+        collectFixedURLs(contentSpec.getBaseLevel(), fixedUrls);
 
         return fixedUrls;
     }
@@ -672,21 +672,16 @@ public class ContentSpecUtilities {
      */
     public static Set<String> getFixedURLs(final Level level) {
         final Set<String> fixedUrls = new HashSet<String>();
+        collectFixedURLs(level, fixedUrls);
+        return fixedUrls;
+    }
 
-        for (final Node childNode : level.getChildNodes()) {
-            if (childNode instanceof SpecNode) {
-                final SpecNode specNode = ((SpecNode) childNode);
-                if (!isNullOrEmpty(specNode.getFixedUrl())) {
-                    fixedUrls.add(specNode.getFixedUrl());
-                }
-            }
-
-            if (childNode instanceof Level) {
-                fixedUrls.addAll(getFixedURLs((Level) childNode));
+    private static void collectFixedURLs(final Level level, final Set<String> fixedUrls) {
+        for (final SpecNode specNode : new NodeIterator<SpecNode>(level, SpecNode.class)) {
+            if (!isNullOrEmpty(specNode.getFixedUrl())) {
+                fixedUrls.add(specNode.getFixedUrl());
             }
         }
-
-        return fixedUrls;
     }
 
     /**
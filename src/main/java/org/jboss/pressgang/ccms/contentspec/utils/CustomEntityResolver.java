@@ -0,0 +1,217 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.utils;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.pressgang.ccms.utils.common.XMLUtilities;
+import org.w3c.dom.Document;
+import org.w3c.dom.Entity;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Resolves a list of custom entities in strings and XML documents. The entities are indexed by name when the resolver is created, so
+ * that all the entity references in a string or document can be resolved in a single scan of the string or document.
+ * <p/>
+ * The entities are resolved as if they were replaced one at a time, in the order they were defined. So if an entities value
+ * references an entity that is defined after it, then that reference is resolved as well.
+ * <p/>
+ * Note: This class isn't thread safe, as the resolved entity values are cached.
+ */
+public class CustomEntityResolver {
+    private final Map<String, CustomEntity> entities = new HashMap<String, CustomEntity>();
+
+    /**
+     * @param customEntities The custom entities to resolve.
+     */
+    public CustomEntityResolver(final List<Entity> customEntities) {
+        for (final Entity entity : customEntities) {
+            // If an entity is defined more than once then the first definition wins
+            if (!entities.containsKey(entity.getNodeName())) {
+                entities.put(entity.getNodeName(), new CustomEntity(entities.size(), entity.getTextContent()));
+            }
+        }
+    }
+
+    /**
+     * Checks if the resolver has any entities to resolve.
+     *
+     * @return True if there are no custom entities, otherwise false.
+     */
+    public boolean isEmpty() {
+        return entities.isEmpty();
+    }
+
+    /**
+     * Replace any references to the custom entities in a string with the entities value.
+     *
+     * @param value The string to resolve the entities in.
+     * @return The string with the entities resolved, or the original string if it doesn't reference any custom entities.
+     */
+    public String resolve(final String value) {
+        if (value == null || entities.isEmpty()) return value;
+
+        return resolve(value, -1);
+    }
+
+    /**
+     * Replace any references to the custom entities, that were defined after a specific entity, in a string.
+     *
+     * @param value         The string to resolve the entities in.
+     * @param afterPosition The position of the entity that the entities to resolve must be defined after, or -1 for all entities.
+     * @return The string with the entities resolved, or the original string if it doesn't reference any matching entities.
+     */
+    private String resolve(final String value, final int afterPosition) {
+        StringBuilder retValue = null;
+        int copiedIndex = 0;
+        int ampIndex = value.indexOf('&');
+        while (ampIndex != -1) {
+            final int semiColonIndex = value.indexOf(';', ampIndex + 1);
+            if (semiColonIndex == -1) break;
+
+            final CustomEntity entity = entities.get(value.substring(ampIndex + 1, semiColonIndex));
+            if (entity != null && entity.position > afterPosition) {
+                final String entityValue = getResolvedValue(entity);
+                if (retValue == null) {
+                    retValue = new StringBuilder(value.length() + entityValue.length());
+                }
+                retValue.append(value, copiedIndex, ampIndex).append(entityValue);
+                copiedIndex = semiColonIndex + 1;
+                ampIndex = value.indexOf('&', copiedIndex);
+            } else {
+                // Not a custom entity, so look for the next possible reference after this ampersand
+                ampIndex = value.indexOf('&', ampIndex + 1);
+            }
+        }
+
+        if (retValue == null) {
+            return value;
+        } else {
+            return retValue.append(value, copiedIndex, value.length()).toString();
+        }
+    }
+
+    /**
+     * Gets the value of an entity, with any references to entities defined after it resolved.
+     *
+     * @param entity The entity to get the value for.
+     * @return The resolved value of the entity.
+     */
+    private String getResolvedValue(final CustomEntity entity) {
+        if (entity.resolvedValue == null) {
+            entity.resolvedValue = entity.value == null ? "" : resolve(entity.value, entity.position);
+        }
+        return entity.resolvedValue;
+    }
+
+    /**
+     * Replace any references to the custom entities in an XML document with the entities value.
+     *
+     * @param doc The document to resolve the entities in.
+     * @return True if any entities were resolved, otherwise false.
+     * @throws SAXException Thrown if an entities value is not valid XML.
+     */
+    public boolean resolve(final Document doc) throws SAXException {
+        if (doc == null || entities.isEmpty()) return false;
+
+        // Find all the references first, as the document can't be modified while it is being traversed
+        final LinkedList<EntityReference> entityReferences = new LinkedList<EntityReference>();
+        findEntityReferences(doc, -1, entityReferences);
+
+        boolean entitiesResolved = false;
+        while (!entityReferences.isEmpty()) {
+            final EntityReference entityReference = entityReferences.removeFirst();
+            final CustomEntity entity = entities.get(entityReference.getNodeName());
+            final Node entityValue = doc.importNode(getEntityFragment(entity), true);
+            final Node parent = entityReference.getParentNode();
+
+            // Inserting the child moves it out of the imported node, so always insert the first child
+            while (entityValue.getFirstChild() != null) {
+                final Node child = parent.insertBefore(entityValue.getFirstChild(), entityReference);
+
+                // The value may reference entities that are defined after this entity, so they need to be resolved as well
+                if (child instanceof EntityReference) {
+                    addEntityReference((EntityReference) child, entity.position, entityReferences);
+                } else {
+                    findEntityReferences(child, entity.position, entityReferences);
+                }
+            }
+            parent.removeChild(entityReference);
+            entitiesResolved = true;
+        }
+
+        return entitiesResolved;
+    }
+
+    private void findEntityReferences(final Node node, final int afterPosition, final List<EntityReference> entityReferences) {
+        Node child = node.getFirstChild();
+        while (child != null) {
+            if (child instanceof EntityReference) {
+                addEntityReference((EntityReference) child, afterPosition, entityReferences);
+            } else if (child.hasChildNodes()) {
+                findEntityReferences(child, afterPosition, entityReferences);
+            }
+            child = child.getNextSibling();
+        }
+    }
+
+    private void addEntityReference(final EntityReference entityReference, final int afterPosition,
+            final List<EntityReference> entityReferences) {
+        final CustomEntity entity = entities.get(entityReference.getNodeName());
+        if (entity != null && entity.position > afterPosition) {
+            entityReferences.add(entityReference);
+        }
+    }
+
+    private Node getEntityFragment(final CustomEntity entity) throws SAXException {
+        if (entity.fragment == null) {
+            final String tempXml = "<tempRoot>" + entity.value + "</tempRoot>";
+            entity.fragment = XMLUtilities.convertStringToDocument(tempXml).getDocumentElement();
+        }
+
+        return entity.fragment;
+    }
+
+    private static class CustomEntity {
+        /**
+         * The position the entity was defined at.
+         */
+        private final int position;
+        private final String value;
+        /**
+         * The value with any references to entities defined after this entity resolved. This is only resolved when first used.
+         */
+        private String resolvedValue;
+        /**
+         * The parsed value, wrapped in a root element. The value is only parsed when first used.
+         */
+        private Node fragment;
+
+        CustomEntity(final int position, final String value) {
+            this.position = position;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An Appendable that feeds the UTF-8 encoded form of everything appended to it into a MessageDigest, so that a hash can be
+ * calculated for some text without having to build the entire text in memory first.
+ */
+public class DigestAppendable implements Appendable {
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_SIZE = 4096;
+
+    private final MessageDigest messageDigest;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferLength = 0;
+    private char pendingHighSurrogate = 0;
+
+    /**
+     * Creates an Appendable that calculates a MD5 hash.
+     *
+     * @return The new MD5 Appendable.
+     */
+    public static DigestAppendable createMD5() {
+        try {
+            return new DigestAppendable(MessageDigest.getInstance("MD5"));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support MD5
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public DigestAppendable(final MessageDigest messageDigest) {
+        this.messageDigest = messageDigest;
+    }
+
+    @Override
+    public DigestAppendable append(final CharSequence csq) {
+        return append(csq == null ? "null" : csq, 0, csq == null ? 4 : csq.length());
+    }
+
+    @Override
+    public DigestAppendable append(final CharSequence csq, final int start, final int end) {
+        final CharSequence chars = csq == null ? "null" : csq;
+        for (int i = start; i < end; i++) {
+            append(chars.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public DigestAppendable append(final char c) {
+        if (pendingHighSurrogate != 0) {
+            final char highSurrogate = pendingHighSurrogate;
+            pendingHighSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                writeCodePoint(Character.toCodePoint(highSurrogate, c));
+                return this;
+            } else {
+                // Unpaired surrogates are replaced in the same way as String.getBytes()
+                writeByte('?');
+            }
+        }
+
+        if (Character.isHighSurrogate(c)) {
+            pendingHighSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            writeByte('?');
+        } else {
+            writeCodePoint(c);
+        }
+        return this;
+    }
+
+    /**
+     * Completes the hash calculation and gets the hash as a lower case hexadecimal string. The Appendable is reset afterwards,
+     * so it can be reused for another calculation.
+     *
+     * @return The hexadecimal representation of the hash.
+     */
+    public String getHexDigest() {
+        if (pendingHighSurrogate != 0) {
+            pendingHighSurrogate = 0;
+            writeByte('?');
+        }
+        flush();
+
+        final byte[] digest = messageDigest.digest();
+        final char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_CHARS[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_CHARS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private void writeCodePoint(final int codePoint) {
+        if (codePoint < 0x80) {
+            writeByte(codePoint);
+        } else if (codePoint < 0x800) {
+            writeByte(0xC0 | (codePoint >> 6));
+            writeByte(0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            writeByte(0xE0 | (codePoint >> 12));
+            writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+            writeByte(0x80 | (codePoint & 0x3F));
+        } else {
+            writeByte(0xF0 | (codePoint >> 18));
+            writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+            writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+            writeByte(0x80 | (codePoint & 0x3F));
+        }
+    }
+
+    private void writeByte(final int b) {
+        if (bufferLength == BUFFER_SIZE) {
+            flush();
+        }
+        buffer[bufferLength++] = (byte) b;
+    }
+
+    private void flush() {
+        messageDigest.update(buffer, 0, bufferLength);
+        bufferLength = 0;
+    }
+}
@@ -23,10 +23,17 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
 import java.util.TreeMap;
 
+import org.apache.commons.lang.StringUtils;
+import org.jboss.pressgang.ccms.contentspec.ContentSpec;
+import org.jboss.pressgang.ccms.contentspec.ITopicNode;
 import org.jboss.pressgang.ccms.contentspec.entities.AuthorInformation;
 import org.jboss.pressgang.ccms.contentspec.entities.Revision;
 import org.jboss.pressgang.ccms.contentspec.entities.RevisionList;
@@ -37,6 +44,7 @@ import org.jboss.pressgang.ccms.provider.DataProviderFactory;
 import org.jboss.pressgang.ccms.provider.LocaleProvider;
 import org.jboss.pressgang.ccms.provider.TagProvider;
 import org.jboss.pressgang.ccms.provider.TopicProvider;
+import org.jboss.pressgang.ccms.provider.TranslatedTopicProvider;
 import org.jboss.pressgang.ccms.provider.exception.NotFoundException;
 import org.jboss.pressgang.ccms.utils.constants.CommonConstants;
 import org.jboss.pressgang.ccms.utils.structures.NameIDSortMap;
@@ -55,6 +63,14 @@ import org.jboss.pressgang.ccms.wrapper.base.BaseTopicWrapper;
 import org.jboss.pressgang.ccms.wrapper.collection.CollectionWrapper;
 
 public class EntityUtilities {
+    /**
+     * The maximum number of topics to lookup in a single bulk call.
+     */
+    private static final int BULK_TOPIC_LOOKUP_SIZE = 100;
+    /**
+     * The query used to lookup a list of topics by their ids.
+     */
+    private static final String TOPIC_IDS_QUERY = "query;topicIds=";
 
     /**
      * Gets a translated topic based on a topic id, revision and locale.
@@ -91,6 +107,89 @@ public class EntityUtilities {
         return null;
     }
 
+    /**
+     * Gets a translated topic based on a topic id, revision, translated content spec node id and locale, using a prebuilt index.
+     * If the topic isn't in the index, then the translations are looked up individually.
+     *
+     * @param providerFactory    The factory to produce entity providers to lookup entity details.
+     * @param translatedTopics   The index of translated topics.
+     * @param id                 The topic id.
+     * @param rev                The topic revision the translation was made from.
+     * @param translatedCSNodeId The translated content spec node id, or null if the translation isn't for a specific node.
+     * @param locale             The locale of the translation.
+     * @return The matching translated topic, or null if one doesn't exist.
+     * @see #getTranslatedTopicIndex(DataProviderFactory, Collection)
+     */
+    public static TranslatedTopicWrapper getTranslatedTopicByTopicAndNodeId(final DataProviderFactory providerFactory,
+            final TranslatedTopicIndex translatedTopics, final Integer id, final Integer rev, final Integer translatedCSNodeId,
+            final String locale) {
+        if (translatedTopics != null && translatedTopics.containsTopic(id)) {
+            return translatedTopics.getTranslatedTopic(id, rev, translatedCSNodeId, locale);
+        } else {
+            return getTranslatedTopicByTopicAndNodeId(providerFactory, id, rev, translatedCSNodeId, locale);
+        }
+    }
+
+    /**
+     * Builds an index of all the translations for the topics used in a content spec. The translations are looked up in batches,
+     * instead of once per topic.
+     *
+     * @param providerFactory The factory to produce entity providers to lookup entity details.
+     * @param contentSpec     The content spec to get the topic translations for.
+     * @return An index of the translated topics.
+     */
+    public static TranslatedTopicIndex getTranslatedTopicIndex(final DataProviderFactory providerFactory, final ContentSpec contentSpec) {
+        final Set<Integer> topicIds = new HashSet<Integer>();
+        for (final ITopicNode topicNode : contentSpec.getAllTopicNodes()) {
+            if (topicNode.getDBId() != null && topicNode.getDBId() > 0) {
+                topicIds.add(topicNode.getDBId());
+            }
+        }
+
+        return getTranslatedTopicIndex(providerFactory, topicIds);
+    }
+
+    /**
+     * Builds an index of all the translations for a set of topics. The translations are looked up in batches, instead of once per
+     * topic.
+     *
+     * @param providerFactory The factory to produce entity providers to lookup entity details.
+     * @param topicIds        The ids of the topics to get the translations for.
+     * @return An index of the translated topics. Topics in a batch that the provider reported as not found aren't marked as
+     *         loaded in the index.
+     */
+    public static TranslatedTopicIndex getTranslatedTopicIndex(final DataProviderFactory providerFactory,
+            final Collection<Integer> topicIds) {
+        final TranslatedTopicIndex index = new TranslatedTopicIndex();
+        if (topicIds == null || topicIds.isEmpty()) return index;
+
+        final TranslatedTopicProvider translatedTopicProvider = providerFactory.getProvider(TranslatedTopicProvider.class);
+        final List<Integer> uniqueTopicIds = new ArrayList<Integer>(new LinkedHashSet<Integer>(topicIds));
+        for (int i = 0; i < uniqueTopicIds.size(); i += BULK_TOPIC_LOOKUP_SIZE) {
+            final List<Integer> batch = uniqueTopicIds.subList(i, Math.min(i + BULK_TOPIC_LOOKUP_SIZE, uniqueTopicIds.size()));
+            final CollectionWrapper<TranslatedTopicWrapper> batchTranslatedTopics;
+            try {
+                batchTranslatedTopics = translatedTopicProvider.getTranslatedTopicsWithQuery(buildTopicIdsQuery(batch));
+            } catch (NotFoundException e) {
+                // Don't mark the topics in the batch as loaded, so that their translations are looked up individually instead
+                continue;
+            }
+
+            if (batchTranslatedTopics != null && batchTranslatedTopics.getItems() != null) {
+                for (final TranslatedTopicWrapper translatedTopic : batchTranslatedTopics.getItems()) {
+                    index.addTranslatedTopic(translatedTopic);
+                }
+            }
+
+            // Mark the topics as loaded, so that topics with no translations don't need to be looked up again
+            for (final Integer topicId : batch) {
+                index.addTopicId(topicId);
+            }
+        }
+
+        return index;
+    }
+
     /**
      * Gets a translated content spec based on a content spec id and revision
      */
@@ -128,22 +227,33 @@ public class EntityUtilities {
         final CollectionWrapper<TranslatedContentSpecWrapper> translatedContentSpecs = providerFactory.getProvider(ContentSpecProvider
                 .class).getContentSpec(id, rev).getTranslatedContentSpecs();
 
-        TranslatedContentSpecWrapper closestTranslation = null;
+        final NavigableMap<Integer, TranslatedContentSpecWrapper> revisions = getTranslatedContentSpecsByRevision(translatedContentSpecs);
+        final Map.Entry<Integer, TranslatedContentSpecWrapper> closestTranslation = rev == null ? revisions.lastEntry() : revisions
+                .floorEntry(rev);
+
+        return closestTranslation == null ? null : closestTranslation.getValue();
+    }
+
+    /**
+     * Orders a collection of translated content specs by the content spec revision that they were translated from. If more than one
+     * translation exists for a revision, then the first translation is used.
+     *
+     * @param translatedContentSpecs The translated content specs to order.
+     * @return A map of content spec revisions to translated content specs, that can be used to find the closest translation.
+     */
+    public static NavigableMap<Integer, TranslatedContentSpecWrapper> getTranslatedContentSpecsByRevision(
+            final CollectionWrapper<TranslatedContentSpecWrapper> translatedContentSpecs) {
+        final NavigableMap<Integer, TranslatedContentSpecWrapper> revisions = new TreeMap<Integer, TranslatedContentSpecWrapper>();
         if (translatedContentSpecs != null && translatedContentSpecs.getItems() != null) {
-            final List<TranslatedContentSpecWrapper> entities = translatedContentSpecs.getItems();
-            for (final TranslatedContentSpecWrapper translatedContentSpec : entities) {
-                if (
-                    // Ensure that the translation is the newest translation possible
-                        (closestTranslation == null || closestTranslation.getContentSpecRevision() < translatedContentSpec
-                                .getContentSpecRevision())
-                                // Ensure that the translation revision is less than or equal to the revision specified
-                                && (rev == null || translatedContentSpec.getContentSpecRevision() <= rev)) {
-                    closestTranslation = translatedContentSpec;
+            for (final TranslatedContentSpecWrapper translatedContentSpec : translatedContentSpecs.getItems()) {
+                final Integer revision = translatedContentSpec.getContentSpecRevision();
+                if (revision != null && !revisions.containsKey(revision)) {
+                    revisions.put(revision, translatedContentSpec);
                 }
             }
         }
 
-        return closestTranslation;
+        return revisions;
     }
 
     public static TreeMap<NameIDSortMap, ArrayList<TagWrapper>> getCategoriesMappedToTags(final BaseTopicWrapper<?> source) {
@@ -283,6 +393,39 @@ public class EntityUtilities {
         return pushedTranslatedTopic;
     }
 
+    /**
+     * Gets the translated topic, for a locale and translated content spec node, with the highest topic revision that is less than
+     * or equal to the source topics revision.
+     *
+     * @param translatedTopics The index of the source topics translations, which can be reused for multiple lookups.
+     * @param source           The topic to find the translation for.
+     * @param translatedCSNode The translated content spec node the translation is for, or null if it isn't for a specific node.
+     * @param locale           The locale of the translation.
+     * @return The closest matching translated topic, or null if one doesn't exist.
+     * @see #getTranslatedTopicIndex(TopicWrapper)
+     */
+    public static TranslatedTopicWrapper returnClosestTranslatedTopic(final TranslatedTopicIndex translatedTopics,
+            final TopicWrapper source, final TranslatedCSNodeWrapper translatedCSNode, final String locale) {
+        final Integer translatedCSNodeId = translatedCSNode == null ? null : translatedCSNode.getId();
+        return translatedTopics.getClosestTranslatedTopic(source.getId(), source.getTopicRevision(), translatedCSNodeId, locale);
+    }
+
+    /**
+     * Builds an index of a topics translations, so that multiple lookups can be done without scanning all the translations each time.
+     *
+     * @param source The topic to index the translations for.
+     * @return An index of the topics translations.
+     */
+    public static TranslatedTopicIndex getTranslatedTopicIndex(final TopicWrapper source) {
+        final TranslatedTopicIndex index = new TranslatedTopicIndex();
+        if (source.getTranslatedTopics() != null && source.getTranslatedTopics().getItems() != null) {
+            index.addTranslatedTopics(source.getTranslatedTopics().getItems());
+        }
+        index.addTopicId(source.getId());
+
+        return index;
+    }
+
     public static TranslatedTopicWrapper returnPushedTranslatedTopic(final TranslatedTopicWrapper source) {
         return returnPushedTranslatedTopic(source, null);
     }
@@ -302,15 +445,35 @@ public class EntityUtilities {
         if (!isDummyTopic(source)) return true;
 
         /* Check that a translation exists that is the same locale as the base topic */
-        boolean baseTranslationExists = false;
-        if (source.getTopic().getTranslatedTopics() != null && source.getTopic().getTranslatedTopics().getItems() != null) {
+        final LocaleWrapper baseLocale = source.getTopic().getLocale();
+        if (baseLocale != null && source.getTopic().getTranslatedTopics() != null && source.getTopic().getTranslatedTopics().getItems()
+                != null) {
             final List<TranslatedTopicWrapper> topics = source.getTopic().getTranslatedTopics().getItems();
             for (final TranslatedTopicWrapper translatedTopic : topics) {
-                if (translatedTopic.getLocale().equals(source.getTopic().getLocale())) baseTranslationExists = true;
+                if (translatedTopic.getLocale() != null && baseLocale.getValue().equals(translatedTopic.getLocale().getValue())) {
+                    return true;
+                }
             }
         }
 
-        return baseTranslationExists;
+        return false;
+    }
+
+    /**
+     * Checks if a dummy translated topic has been pushed for translation, using a prebuilt index of the topics translations.
+     *
+     * @param translatedTopics The index of the source topics translations. The index can contain the translations of other topics,
+     *                         such as one built for a whole content spec.
+     * @param source           The translated topic to check.
+     * @return True if the topic has been pushed for translation, otherwise false.
+     * @see #getTranslatedTopicIndex(TopicWrapper)
+     */
+    public static boolean hasBeenPushedForTranslation(final TranslatedTopicIndex translatedTopics, final TranslatedTopicWrapper source) {
+        if (!isDummyTopic(source)) return true;
+
+        /* Check that a translation exists that is the same locale as the base topic */
+        final LocaleWrapper baseLocale = source.getTopic().getLocale();
+        return baseLocale != null && translatedTopics.containsLocale(source.getTopic().getId(), baseLocale.getValue());
     }
 
     /*
@@ -374,6 +537,50 @@ public class EntityUtilities {
         return topicProvider.getTopic(node.getEntityId(), node.getEntityRevision());
     }
 
+    /**
+     * Gets the latest revision of a set of topics, using as few calls to the topic provider as possible. The topics are looked up
+     * in batches, so that the size of each request stays bounded.
+     *
+     * @param topicProvider The topic provider to lookup the topic entities from.
+     * @param topicIds      The ids of the topics to lookup.
+     * @return A mapping of topic ids to their topic entities. Any topics that couldn't be found won't be in the map, including
+     *         every topic in a batch that the provider reported as not found.
+     */
+    public static Map<Integer, TopicWrapper> getTopicsByIds(final TopicProvider topicProvider, final Collection<Integer> topicIds) {
+        final Map<Integer, TopicWrapper> topics = new HashMap<Integer, TopicWrapper>();
+        if (topicIds == null || topicIds.isEmpty()) return topics;
+
+        final List<Integer> uniqueTopicIds = new ArrayList<Integer>(new LinkedHashSet<Integer>(topicIds));
+        for (int i = 0; i < uniqueTopicIds.size(); i += BULK_TOPIC_LOOKUP_SIZE) {
+            final List<Integer> batch = uniqueTopicIds.subList(i, Math.min(i + BULK_TOPIC_LOOKUP_SIZE, uniqueTopicIds.size()));
+            final CollectionWrapper<TopicWrapper> batchTopics;
+            try {
+                batchTopics = topicProvider.getTopicsWithQuery(buildTopicIdsQuery(batch));
+            } catch (NotFoundException e) {
+                // None of the topics in the batch exist, so leave them out of the map and let the caller handle them individually
+                continue;
+            }
+
+            if (batchTopics != null && batchTopics.getItems() != null) {
+                for (final TopicWrapper topic : batchTopics.getItems()) {
+                    topics.put(topic.getId(), topic);
+                }
+            }
+        }
+
+        return topics;
+    }
+
+    /**
+     * Builds the query to lookup a set of topics by their ids.
+     *
+     * @param topicIds The ids of the topics to lookup.
+     * @return The query that will match all the topic ids.
+     */
+    private static String buildTopicIdsQuery(final Collection<Integer> topicIds) {
+        return TOPIC_IDS_QUERY + StringUtils.join(topicIds, ",");
+    }
+
     /**
      * Checks to see if the node is some representation of a Topic entity.
      *
@@ -5,7 +5,9 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 
@@ -19,6 +21,7 @@ import org.jboss.pressgang.ccms.contentspec.ITopicNode;
 import org.jboss.pressgang.ccms.contentspec.KeyValueNode;
 import org.jboss.pressgang.ccms.contentspec.Level;
 import org.jboss.pressgang.ccms.contentspec.Node;
+import org.jboss.pressgang.ccms.contentspec.NodeIterator;
 import org.jboss.pressgang.ccms.contentspec.SpecNode;
 import org.jboss.pressgang.ccms.contentspec.enums.LevelType;
 import org.jboss.pressgang.ccms.contentspec.enums.TopicType;
@@ -35,6 +38,16 @@ public class FixedURLGenerator {
             "(?<EverythingElse>.*)$");
     private static final List<TopicType> STATIC_FIXED_URL_TOPIC_TYPES = Arrays.asList(TopicType.ABSTRACT, TopicType.AUTHOR_GROUP,
             TopicType.LEGAL_NOTICE, TopicType.REVISION_HISTORY);
+    private static final TopicTitleCache TOPIC_TITLE_CACHE = new TopicTitleCache();
+
+    /**
+     * Get the cache used to store the condition processed titles and URL titles for topics.
+     *
+     * @return The topic title cache.
+     */
+    public static TopicTitleCache getTopicTitleCache() {
+        return TOPIC_TITLE_CACHE;
+    }
 
     /**
      * Generate the fixed urls and sets it where required for a content specification.
@@ -56,6 +69,103 @@ public class FixedURLGenerator {
         generateFixedUrlForNodes(nodesWithoutFixedUrls, existingFixedUrls, fixedUrlPropertyTagId);
     }
 
+    /**
+     * Generate the fixed urls for a content specification, using a registry from a previous run so that the fixed urls are only
+     * regenerated for nodes that have changed. Nodes that are new, have had their fixed url removed or have had the details used to
+     * generate their fixed url changed will have a fixed url generated. Fixed urls that weren't generated by the registry are kept.
+     *
+     * @param contentSpec           The content spec to generate fixed urls for.
+     * @param registry              The registry from the previous run, or a new registry.
+     * @param fixedUrlPropertyTagId The Fixed URL Property Tag ID.
+     */
+    public static void generateFixedUrls(final ContentSpec contentSpec, final FixedURLRegistry registry,
+            final Integer fixedUrlPropertyTagId) {
+        final List<SpecNode> specNodes = getAllSpecNodes(contentSpec);
+
+        // Release the fixed urls for any nodes that no longer exist
+        final Set<SpecNode> currentNodes = Collections.newSetFromMap(new IdentityHashMap<SpecNode, Boolean>());
+        currentNodes.addAll(specNodes);
+        for (final SpecNode registeredNode : registry.getRegisteredNodes()) {
+            if (!currentNodes.contains(registeredNode)) {
+                registry.unregisterNode(registeredNode);
+            }
+        }
+
+        // Find the nodes that have changed, making sure to reserve the fixed urls of any unchanged nodes first
+        final List<SpecNode> changedNodes = new ArrayList<SpecNode>();
+        for (final SpecNode specNode : specNodes) {
+            final String source = getFixedUrlSource(specNode, fixedUrlPropertyTagId);
+            if (registry.isNodeUpToDate(specNode, source)) {
+                continue;
+            }
+
+            final String fixedUrl = specNode.getFixedUrl();
+            if (!isNullOrEmpty(fixedUrl) && !fixedUrl.equals(registry.getRegisteredFixedUrl(specNode))) {
+                // The fixed url was set outside of the registry, so keep it as is
+                registry.registerNode(specNode, fixedUrl, null);
+            } else if (requiresFixedUrl(specNode)) {
+                registry.unregisterNode(specNode);
+                changedNodes.add(specNode);
+            }
+        }
+
+        for (final SpecNode specNode : changedNodes) {
+            final String fixedUrl = generateFixedURLForNode(specNode, registry, fixedUrlPropertyTagId);
+            specNode.setFixedUrl(fixedUrl);
+            registry.registerNode(specNode, fixedUrl, getFixedUrlSource(specNode, fixedUrlPropertyTagId));
+        }
+    }
+
+    /**
+     * Get the details used to generate a fixed url for a spec node, so that it can be determined if the fixed url needs to be
+     * regenerated.
+     *
+     * @param specNode              The spec node to get the source details for.
+     * @param fixedUrlPropertyTagId The Fixed URL Property Tag ID.
+     * @return A string representing the details used to generate the nodes fixed url.
+     */
+    protected static String getFixedUrlSource(final SpecNode specNode, final Integer fixedUrlPropertyTagId) {
+        final StringBuilder source = new StringBuilder(specNode.getClass().getName()).append("\n").append(specNode.getTitle());
+        if (specNode instanceof ITopicNode) {
+            final ITopicNode topicNode = (ITopicNode) specNode;
+            final BaseTopicWrapper<?> topic = topicNode.getTopic();
+            source.append("\n").append(topicNode.getTopicType()).append("\n").append(specNode.getConditionStatement(true));
+            if (topic != null) {
+                final PropertyTagInTopicWrapper fixedUrl = topic.getProperty(fixedUrlPropertyTagId);
+                source.append("\n").append(topic.getTitle()).append("\n").append(fixedUrl == null ? null : fixedUrl.getValue());
+            }
+        } else if (specNode instanceof Level) {
+            source.append("\n").append(((Level) specNode).getLevelType());
+        }
+
+        return source.toString();
+    }
+
+    /**
+     * Checks if a spec node needs a fixed url to be generated for it, if it doesn't have one.
+     *
+     * @param specNode The spec node to check.
+     * @return True if a fixed url should be generated for the node, otherwise false.
+     */
+    protected static boolean requiresFixedUrl(final SpecNode specNode) {
+        if (specNode instanceof CommonContent) {
+            // Ignore common content as it can't have a fixed url
+            return false;
+        } else if (specNode instanceof Level) {
+            final Level level = (Level) specNode;
+
+            // Ignore initial content and base levels
+            return level.getLevelType() != LevelType.INITIAL_CONTENT && level.getLevelType() != LevelType.BASE;
+        } else if (specNode instanceof ITopicNode) {
+            final ITopicNode topicNode = ((ITopicNode) specNode);
+
+            // Ignore info topics
+            return topicNode.getTopicType() != TopicType.INFO && topicNode.getTopicType() != TopicType.INITIAL_CONTENT;
+        } else {
+            return true;
+        }
+    }
+
     /**
      * Collect the fixed url information from a list of spec nodes.
      *
@@ -67,24 +177,7 @@ public class FixedURLGenerator {
             final Set<String> existingFixedUrls) {
         for (final SpecNode specNode : specNodes) {
             if (isNullOrEmpty(specNode.getFixedUrl())) {
-                if (specNode instanceof CommonContent) {
-                    // Ignore common content as it can't have a fixed url
-                    continue;
-                } else if (specNode instanceof Level) {
-                    final Level level = (Level) specNode;
-
-                    // Ignore initial content and base levels
-                    if (level.getLevelType() != LevelType.INITIAL_CONTENT && level.getLevelType() != LevelType.BASE) {
-                        nodesWithoutFixedUrls.add(specNode);
-                    }
-                } else if (specNode instanceof ITopicNode) {
-                    final ITopicNode topicNode = ((ITopicNode) specNode);
-
-                    // Ignore info topics
-                    if (topicNode.getTopicType() != TopicType.INFO && topicNode.getTopicType() != TopicType.INITIAL_CONTENT) {
-                        nodesWithoutFixedUrls.add(specNode);
-                    }
-                } else {
+                if (requiresFixedUrl(specNode)) {
                     nodesWithoutFixedUrls.add(specNode);
                 }
             } else {
@@ -110,11 +203,11 @@ public class FixedURLGenerator {
             }
 
             if (childNode instanceof Level) {
-                specNodes.addAll(getAllSpecNodes((Level) childNode));
+                collectSpecNodes((Level) childNode, specNodes);
             }
         }
 
-        specNodes.addAll(getAllSpecNodes(contentSpec.getBaseLevel()));
+        collectSpecNodes(contentSpec.getBaseLevel(), specNodes);
 
         return specNodes;
     }
@@ -127,18 +220,14 @@ public class FixedURLGenerator {
      */
     protected static List<SpecNode> getAllSpecNodes(final Level level) {
         final List<SpecNode> specNodes = new ArrayList<SpecNode>();
+        collectSpecNodes(level, specNodes);
+        return specNodes;
+    }
 
-        for (final Node childNode : level.getChildNodes()) {
-            if (childNode instanceof SpecNode) {
-                specNodes.add((SpecNode) childNode);
-            }
-
-            if (childNode instanceof Level) {
-                specNodes.addAll(getAllSpecNodes((Level) childNode));
-            }
+    private static void collectSpecNodes(final Level level, final List<SpecNode> specNodes) {
+        for (final SpecNode specNode : new NodeIterator<SpecNode>(level, SpecNode.class)) {
+            specNodes.add(specNode);
         }
-
-        return specNodes;
     }
 
     public static void generateFixedUrlForNodes(final Collection<SpecNode> specNodes, final Integer fixedUrlPropertyTagId) {
@@ -147,13 +236,19 @@ public class FixedURLGenerator {
 
     public static void generateFixedUrlForNodes(final Collection<SpecNode> specNodes, final Set<String> existingFixedUrls,
             final Integer fixedUrlPropertyTagId) {
+        generateFixedUrlForNodes(specNodes, new FixedURLRegistry(existingFixedUrls), fixedUrlPropertyTagId);
+    }
+
+    public static void generateFixedUrlForNodes(final Collection<SpecNode> specNodes, final FixedURLRegistry registry,
+            final Integer fixedUrlPropertyTagId) {
         // Create the fixed urls for any nodes that didn't have urls
         for (final SpecNode specNode : specNodes) {
             // Generate a fixed url
-            final String value = generateFixedURLForNode(specNode, existingFixedUrls, fixedUrlPropertyTagId);
+            final String value = generateFixedURLForNode(specNode, registry, fixedUrlPropertyTagId);
 
             // Set the fixed url on the node
-            setFixedURL(specNode, value, existingFixedUrls);
+            specNode.setFixedUrl(value);
+            registry.add(value);
         }
     }
 
@@ -177,6 +272,19 @@ public class FixedURLGenerator {
      */
     public static String generateFixedURLForNode(final SpecNode specNode, final Set<String> existingFixedUrls,
             final Integer fixedUrlPropertyTagId) {
+        return generateFixedURLForNode(specNode, new FixedURLRegistry(existingFixedUrls), fixedUrlPropertyTagId);
+    }
+
+    /**
+     * Generate a fixed url for a specific content spec node, making sure that it is valid within the Content Specification.
+     *
+     * @param specNode              The spec node to generate the fixed url for.
+     * @param registry              The registry of fixed urls that are already in use.
+     * @param fixedUrlPropertyTagId
+     * @return A unique generate file name for the specified node.
+     */
+    public static String generateFixedURLForNode(final SpecNode specNode, final FixedURLRegistry registry,
+            final Integer fixedUrlPropertyTagId) {
         String value;
         if (specNode instanceof ITopicNode) {
             final ITopicNode topicNode = (ITopicNode) specNode;
@@ -188,17 +296,15 @@ public class FixedURLGenerator {
             } else if (topic != null) {
                 // See if a fixed url property exists for the topic and it's valid
                 final PropertyTagInTopicWrapper fixedUrl = topic.getProperty(fixedUrlPropertyTagId);
-                if (fixedUrl != null && !existingFixedUrls.contains(fixedUrl.getValue())) {
+                if (fixedUrl != null && !registry.contains(fixedUrl.getValue())) {
                     value = fixedUrl.getValue();
                 } else {
                     // Get the topic title with conditional content removed
-                    final String topicTitle;
                     if (topic instanceof TranslatedTopicWrapper) {
-                        topicTitle = ContentSpecUtilities.getTopicTitleWithConditions(topicNode, ((TranslatedTopicWrapper) topic).getTopic());
+                        value = TOPIC_TITLE_CACHE.getURLTitle(topicNode, ((TranslatedTopicWrapper) topic).getTopic());
                     } else {
-                        topicTitle = ContentSpecUtilities.getTopicTitleWithConditions(topicNode, topic);
+                        value = TOPIC_TITLE_CACHE.getURLTitle(topicNode, topic);
                     }
-                    value = createURLTitle(topicTitle);
                 }
             } else {
                 value = createURLTitle(specNode.getTitle());
@@ -211,7 +317,7 @@ public class FixedURLGenerator {
         }
 
         // If the basic url already exists or couldn't be generated then fix it up
-        if (isNullOrEmpty(value) || existingFixedUrls.contains(value)) {
+        if (isNullOrEmpty(value) || registry.contains(value)) {
             // If the title has no characters that can be used in a url, then just use a generic one
             String baseUrlName = value;
             if (isNullOrEmpty(baseUrlName) || baseUrlName.matches("^\\d+$")) {
@@ -227,15 +333,7 @@ public class FixedURLGenerator {
             }
 
             // Add a numerical prefix until we have something unique
-            String postFix = "";
-            for (int uniqueCount = 1; ; ++uniqueCount) {
-                if (!existingFixedUrls.contains(baseUrlName + postFix)) {
-                    value = baseUrlName + postFix;
-                    break;
-                } else {
-                    postFix = uniqueCount + "";
-                }
-            }
+            value = registry.getUniqueFixedUrl(baseUrlName);
         }
 
         return value;
@@ -0,0 +1,207 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.pressgang.ccms.contentspec.SpecNode;
+
+/**
+ * A registry of the fixed urls used in a content spec. The registry tracks the next postfix to try for each base url name, so that
+ * unique fixed urls can be found without probing every previously used postfix. It also records the source details that were used
+ * to generate each nodes fixed url, so that the fixed urls can be regenerated for only the nodes that have changed.
+ */
+public class FixedURLRegistry {
+    private final Set<String> fixedUrls;
+    /**
+     * The next postfix to check for each base url name. A postfix of 0 means the base url name itself.
+     */
+    private final Map<String, Integer> postFixCounters = new HashMap<String, Integer>();
+    private final Map<SpecNode, RegisteredNode> registeredNodes = new IdentityHashMap<SpecNode, RegisteredNode>();
+
+    public FixedURLRegistry() {
+        this(new HashSet<String>());
+    }
+
+    /**
+     * Create a registry that uses an existing set of fixed urls. Any changes made to the registry are also made to the set.
+     *
+     * @param fixedUrls The set of existing fixed urls.
+     */
+    public FixedURLRegistry(final Set<String> fixedUrls) {
+        this.fixedUrls = fixedUrls;
+    }
+
+    /**
+     * Checks if a fixed url is already in use.
+     *
+     * @param fixedUrl The fixed url to check.
+     * @return True if the fixed url is in use, otherwise false.
+     */
+    public boolean contains(final String fixedUrl) {
+        return fixedUrls.contains(fixedUrl);
+    }
+
+    /**
+     * Mark a fixed url as being in use.
+     *
+     * @param fixedUrl The fixed url to add.
+     * @return True if the fixed url wasn't already in use, otherwise false.
+     */
+    public boolean add(final String fixedUrl) {
+        return fixedUrls.add(fixedUrl);
+    }
+
+    /**
+     * Release a fixed url so that it can be used again.
+     *
+     * @param fixedUrl The fixed url to remove.
+     * @return True if the fixed url was in use, otherwise false.
+     */
+    public boolean remove(final String fixedUrl) {
+        if (!fixedUrls.remove(fixedUrl)) return false;
+
+        // The url may have been generated from a base url name, so make sure that the postfix can be reused.
+        resetPostFixCounter(fixedUrl, 0);
+        final int length = fixedUrl.length();
+        for (int i = length - 1; i > 0 && Character.isDigit(fixedUrl.charAt(i)); i--) {
+            if (fixedUrl.charAt(i) != '0') {
+                try {
+                    resetPostFixCounter(fixedUrl.substring(0, i), Integer.parseInt(fixedUrl.substring(i)));
+                } catch (NumberFormatException e) {
+                    // The postfix is too large to have been generated, so it can't be a postfix
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private void resetPostFixCounter(final String baseUrlName, final int postFix) {
+        final Integer counter = postFixCounters.get(baseUrlName);
+        if (counter != null && counter > postFix) {
+            postFixCounters.put(baseUrlName, postFix);
+        }
+    }
+
+    /**
+     * Get a unique fixed url for a base url name, by adding a numerical postfix until the url is unique. The returned fixed url isn't
+     * marked as being in use.
+     *
+     * @param baseUrlName The base url name.
+     * @return A fixed url that isn't in use.
+     */
+    public String getUniqueFixedUrl(final String baseUrlName) {
+        final Integer counter = postFixCounters.get(baseUrlName);
+        int postFix = counter == null ? 0 : counter;
+
+        String fixedUrl = postFix == 0 ? baseUrlName : (baseUrlName + postFix);
+        while (fixedUrls.contains(fixedUrl)) {
+            fixedUrl = baseUrlName + (++postFix);
+        }
+        postFixCounters.put(baseUrlName, postFix);
+
+        return fixedUrl;
+    }
+
+    /**
+     * Record the fixed url for a spec node, as well as the source details that were used to create it.
+     *
+     * @param specNode The spec node that the fixed url was set on.
+     * @param fixedUrl The fixed url.
+     * @param source   The source details used to create the fixed url, or null if the fixed url wasn't generated.
+     */
+    public void registerNode(final SpecNode specNode, final String fixedUrl, final String source) {
+        final RegisteredNode existingNode = registeredNodes.put(specNode, new RegisteredNode(fixedUrl, source));
+        if (existingNode != null && existingNode.fixedUrl != null && !existingNode.fixedUrl.equals(fixedUrl)) {
+            remove(existingNode.fixedUrl);
+        }
+        if (fixedUrl != null) {
+            add(fixedUrl);
+        }
+    }
+
+    /**
+     * Remove a spec node from the registry and release its fixed url.
+     *
+     * @param specNode The spec node to remove.
+     */
+    public void unregisterNode(final SpecNode specNode) {
+        final RegisteredNode existingNode = registeredNodes.remove(specNode);
+        if (existingNode != null && existingNode.fixedUrl != null) {
+            remove(existingNode.fixedUrl);
+        }
+    }
+
+    /**
+     * Checks if a spec node has been registered and that neither it's fixed url or the source details used to create the fixed url
+     * have changed since it was registered. If the fixed url wasn't generated, then only the fixed url is checked.
+     *
+     * @param specNode The spec node to check.
+     * @param source   The current source details for the spec node.
+     * @return True if the node is registered and hasn't changed, otherwise false.
+     */
+    public boolean isNodeUpToDate(final SpecNode specNode, final String source) {
+        final RegisteredNode registeredNode = registeredNodes.get(specNode);
+        return registeredNode != null && equals(registeredNode.fixedUrl, specNode.getFixedUrl()) && (registeredNode.source == null ||
+                equals(registeredNode.source, source));
+    }
+
+    /**
+     * Get the fixed url that was registered for a spec node.
+     *
+     * @param specNode The spec node to get the fixed url for.
+     * @return The registered fixed url, or null if the node isn't registered.
+     */
+    public String getRegisteredFixedUrl(final SpecNode specNode) {
+        final RegisteredNode registeredNode = registeredNodes.get(specNode);
+        return registeredNode == null ? null : registeredNode.fixedUrl;
+    }
+
+    /**
+     * Get the spec nodes that have been registered.
+     *
+     * @return An unmodifiable list of the registered spec nodes.
+     */
+    public List<SpecNode> getRegisteredNodes() {
+        return Collections.unmodifiableList(new ArrayList<SpecNode>(registeredNodes.keySet()));
+    }
+
+    private static boolean equals(final String a, final String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static class RegisteredNode {
+        private final String fixedUrl;
+        private final String source;
+
+        RegisteredNode(final String fixedUrl, final String source) {
+            this.fixedUrl = fixedUrl;
+            this.source = source;
+        }
+    }
+}
@@ -20,13 +20,25 @@
 package org.jboss.pressgang.ccms.contentspec.utils;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
+import org.jboss.pressgang.ccms.contentspec.ContentSpec;
 import org.jboss.pressgang.ccms.contentspec.ITopicNode;
 import org.jboss.pressgang.ccms.provider.DataProviderFactory;
 import org.jboss.pressgang.ccms.provider.ServerSettingsProvider;
 import org.jboss.pressgang.ccms.provider.TopicProvider;
+import org.jboss.pressgang.ccms.wrapper.PropertyTagInTopicWrapper;
 import org.jboss.pressgang.ccms.wrapper.TopicWrapper;
 import org.jboss.pressgang.ccms.wrapper.collection.CollectionWrapper;
 
@@ -45,6 +57,19 @@ public class TopicPool {
     private final TopicProvider topicProvider;
     private final Integer cspIdPropertyTagId;
     private boolean initialised = false;
+    /**
+     * A mapping of CSP-ID property values to the ids of the saved topics, which is built the first time the pool is used to
+     * initialise a topic node after it has been saved.
+     */
+    private Map<String, Integer> cspIdToTopicId = null;
+    /**
+     * The chunks of new topics that have been created by a chunked save, that haven't been rolled back.
+     */
+    private final List<SavedChunk> createdChunks = new ArrayList<SavedChunk>();
+    /**
+     * The chunks of existing topics that have been updated by a chunked save.
+     */
+    private final List<SavedChunk> updatedChunks = new ArrayList<SavedChunk>();
 
     public TopicPool(final DataProviderFactory providerFactory) {
         this.topicProvider = providerFactory.getProvider(TopicProvider.class);
@@ -60,6 +85,7 @@ public class TopicPool {
      */
     public void addNewTopic(final TopicWrapper topic) {
         newTopicPool.addItem(topic);
+        cspIdToTopicId = null;
     }
 
     /**
@@ -69,6 +95,7 @@ public class TopicPool {
      */
     public void addUpdatedTopic(final TopicWrapper topic) {
         updatedTopicPool.addItem(topic);
+        cspIdToTopicId = null;
     }
 
     /**
@@ -99,6 +126,7 @@ public class TopicPool {
                 // The response is valid so set it as the pool
                 updatedTopicPool = response;
             }
+            cspIdToTopicId = null;
             initialised = true;
             return true;
         } catch (Exception e) {
@@ -108,39 +136,278 @@ public class TopicPool {
     }
 
     /**
-     * Initialises a content spec topic using the REST topics that exist
-     * within this pool. The topic pool must be saved and initialised before
-     * this call will work.
+     * Saves all the topics in the pool to the database using the REST API, by sending the topics in chunks.
      *
-     * @param topicNode
-     * @return
+     * @param batchSize The maximum number of topics to send in a single request.
+     * @return True if all the topics in the pool were saved successfully,
+     *         otherwise false.
+     * @see #savePool(int, ExecutorService, SaveProgressListener)
      */
-    public ITopicNode initialiseFromPool(final ITopicNode topicNode) {
+    public boolean savePool(final int batchSize) {
+        return savePool(batchSize, null, null);
+    }
+
+    /**
+     * Saves all the topics in the pool to the database using the REST API, by sending the topics in chunks. The results of each
+     * chunk are tracked, so if the save fails it can be resumed by calling this method again, which will only send the chunks
+     * that haven't been saved. Likewise {@link #rollbackPool()} will only delete the new topics from chunks that were created.
+     * <p/>
+     * Note: The new topics are all saved before any of the updated topics are saved.
+     *
+     * @param batchSize        The maximum number of topics to send in a single request.
+     * @param executor         The executor to send the chunks in parallel with, or null if the chunks should be sent one at a
+     *                         time. The amount of parallelism is bounded by the number of threads the executor uses.
+     * @param progressListener A listener to be notified each time a chunk is saved, or null if no progress should be reported.
+     * @return True if all the topics in the pool were saved successfully,
+     *         otherwise false.
+     */
+    public boolean savePool(final int batchSize, final ExecutorService executor, final SaveProgressListener progressListener) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be greater than zero.");
+        }
+
+        // If the pool has already been saved, then start again the same as a regular save would
         if (initialised) {
-            if (newTopicPool != null && !newTopicPool.isEmpty()) {
-                for (final TopicWrapper topic : newTopicPool.getItems()) {
-                    if (topic.getProperty(cspIdPropertyTagId) != null) {
-                        if (topic.getProperty(cspIdPropertyTagId).getValue().equals(topicNode.getUniqueId())) {
-                            topicNode.setId(Integer.toString(topic.getId()));
-                            return topicNode;
-                        }
-                    }
+            createdChunks.clear();
+            updatedChunks.clear();
+        }
+
+        final List<Integer> unsavedNewTopics = getUnsavedTopicIndexes(newTopicPool, createdChunks);
+        final List<Integer> unsavedUpdatedTopics = getUnsavedTopicIndexes(updatedTopicPool, updatedChunks);
+        final SaveProgress progress = new SaveProgress(unsavedNewTopics.size() + unsavedUpdatedTopics.size(), progressListener);
+
+        // Save the new topics
+        if (!saveChunks(newTopicPool, unsavedNewTopics, true, batchSize, executor, progress)) return false;
+
+        // Update the existing topics
+        if (!saveChunks(updatedTopicPool, unsavedUpdatedTopics, false, batchSize, executor, progress)) return false;
+
+        // Everything has been saved, so set the saved topics as the pool
+        if (!createdChunks.isEmpty()) {
+            newTopicPool = createTopicCollection(createdChunks);
+        }
+        if (!updatedChunks.isEmpty()) {
+            updatedTopicPool = createTopicCollection(updatedChunks);
+        }
+        cspIdToTopicId = null;
+        initialised = true;
+        return true;
+    }
+
+    /**
+     * Gets the indexes of the topics in a pool, that haven't been saved as part of a chunk.
+     *
+     * @param topicPool   The pool of topics.
+     * @param savedChunks The chunks from the pool that have been saved.
+     * @return The list of indexes for the topics that haven't been saved.
+     */
+    private List<Integer> getUnsavedTopicIndexes(final CollectionWrapper<TopicWrapper> topicPool, final List<SavedChunk> savedChunks) {
+        final List<Integer> unsavedTopics = new ArrayList<Integer>();
+        if (topicPool == null || topicPool.isEmpty()) return unsavedTopics;
+
+        final Set<TopicWrapper> savedTopics = Collections.newSetFromMap(new IdentityHashMap<TopicWrapper, Boolean>());
+        for (final SavedChunk savedChunk : savedChunks) {
+            savedTopics.addAll(savedChunk.topics);
+        }
+
+        final List<TopicWrapper> topics = topicPool.getItems();
+        for (int i = 0; i < topics.size(); i++) {
+            if (!savedTopics.contains(topics.get(i))) {
+                unsavedTopics.add(i);
+            }
+        }
+        return unsavedTopics;
+    }
+
+    /**
+     * Splits the unsaved topics from a pool into chunks and saves each chunk.
+     *
+     * @param topicPool     The pool of topics.
+     * @param unsavedTopics The indexes of the topics in the pool that need to be saved.
+     * @param newTopics     If the topics are new topics that need to be created, otherwise they are updated.
+     * @param batchSize     The maximum number of topics to send in a single request.
+     * @param executor      The executor to save the chunks in parallel with, or null if the chunks should be saved one at a time.
+     * @param progress      The progress of the overall save.
+     * @return True if all the chunks were saved successfully, otherwise false.
+     */
+    private boolean saveChunks(final CollectionWrapper<TopicWrapper> topicPool, final List<Integer> unsavedTopics,
+            final boolean newTopics, final int batchSize, final ExecutorService executor, final SaveProgress progress) {
+        if (unsavedTopics.isEmpty()) return true;
+
+        final List<TopicWrapper> topics = topicPool.getItems();
+        final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+        for (int i = 0; i < unsavedTopics.size(); i += batchSize) {
+            final List<Integer> chunkIndexes = unsavedTopics.subList(i, Math.min(i + batchSize, unsavedTopics.size()));
+            final List<TopicWrapper> chunkTopics = new ArrayList<TopicWrapper>();
+            for (final Integer index : chunkIndexes) {
+                chunkTopics.add(topics.get(index));
+            }
+
+            final int chunkIndex = chunkIndexes.get(0);
+            tasks.add(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return saveChunk(chunkIndex, chunkTopics, newTopics, progress);
+                }
+            });
+        }
+
+        if (executor == null) {
+            for (final Callable<Boolean> task : tasks) {
+                try {
+                    if (!task.call()) return false;
+                } catch (Exception e) {
+                    log.error("", e);
+                    return false;
                 }
             }
-            if (updatedTopicPool != null && !updatedTopicPool.isEmpty()) {
-                for (final TopicWrapper topic : updatedTopicPool.getItems()) {
-                    if (topic.getProperty(cspIdPropertyTagId) != null) {
-                        if (topic.getProperty(cspIdPropertyTagId).getValue().equals(topicNode.getUniqueId())) {
-                            topicNode.setId(Integer.toString(topic.getId()));
-                            return topicNode;
-                        }
+            return true;
+        } else {
+            boolean success = true;
+            try {
+                // Wait for all the chunks to finish, so that every chunk that was saved is tracked
+                for (final Future<Boolean> future : executor.invokeAll(tasks)) {
+                    if (!future.get()) {
+                        success = false;
                     }
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                log.error("", e.getCause());
+                return false;
+            }
+            return success;
+        }
+    }
+
+    /**
+     * Saves a single chunk of topics and tracks the result if it was saved successfully.
+     *
+     * @param chunkIndex The index of the first topic in the chunk, in the pool it came from.
+     * @param topics     The topics in the chunk.
+     * @param newTopics  If the topics are new topics that need to be created, otherwise they are updated.
+     * @param progress   The progress of the overall save.
+     * @return True if the chunk was saved successfully, otherwise false.
+     */
+    private boolean saveChunk(final int chunkIndex, final List<TopicWrapper> topics, final boolean newTopics,
+            final SaveProgress progress) {
+        try {
+            final CollectionWrapper<TopicWrapper> chunkPool = topicProvider.newTopicCollection();
+            for (final TopicWrapper topic : topics) {
+                chunkPool.addItem(topic);
+            }
+
+            final CollectionWrapper<TopicWrapper> response = newTopics ? topicProvider.createTopics(chunkPool) : topicProvider
+                    .updateTopics(chunkPool);
+            // Check that the response isn't empty (ie failed)
+            if (response == null) return false;
+            if (response.getItems() == null) return false;
+
+            final SavedChunk savedChunk = new SavedChunk(chunkIndex, topics, response.getItems());
+            synchronized (this) {
+                if (newTopics) {
+                    createdChunks.add(savedChunk);
+                } else {
+                    updatedChunks.add(savedChunk);
+                }
+            }
+            progress.chunkSaved(topics.size());
+            return true;
+        } catch (Exception e) {
+            log.error("", e);
+            return false;
+        }
+    }
+
+    /**
+     * Creates a collection containing the saved topics from a list of chunks, in the same order as the original pool.
+     *
+     * @param savedChunks The chunks of saved topics.
+     * @return The collection of saved topics.
+     */
+    private CollectionWrapper<TopicWrapper> createTopicCollection(final List<SavedChunk> savedChunks) {
+        final List<SavedChunk> sortedChunks = new ArrayList<SavedChunk>(savedChunks);
+        Collections.sort(sortedChunks, new Comparator<SavedChunk>() {
+            @Override
+            public int compare(final SavedChunk chunk1, final SavedChunk chunk2) {
+                return chunk1.chunkIndex < chunk2.chunkIndex ? -1 : (chunk1.chunkIndex == chunk2.chunkIndex ? 0 : 1);
+            }
+        });
+
+        final CollectionWrapper<TopicWrapper> collection = topicProvider.newTopicCollection();
+        for (final SavedChunk savedChunk : sortedChunks) {
+            for (final TopicWrapper topic : savedChunk.savedTopics) {
+                collection.addItem(topic);
+            }
+        }
+        return collection;
+    }
+
+    /**
+     * Initialises a content spec topic using the REST topics that exist
+     * within this pool. The topic pool must be saved and initialised before
+     * this call will work.
+     *
+     * @param topicNode The topic node to be initialised.
+     * @return The initialised topic node.
+     */
+    public ITopicNode initialiseFromPool(final ITopicNode topicNode) {
+        if (initialised) {
+            final Integer topicId = getCSPIdToTopicIdMap().get(topicNode.getUniqueId());
+            if (topicId != null) {
+                topicNode.setId(Integer.toString(topicId));
             }
         }
         return topicNode;
     }
 
+    /**
+     * Initialises all the topic nodes in a content spec using the REST topics that exist
+     * within this pool. The topic pool must be saved and initialised before
+     * this call will work.
+     *
+     * @param contentSpec The content spec whose topic nodes should be initialised.
+     */
+    public void initialiseAllFromPool(final ContentSpec contentSpec) {
+        if (initialised) {
+            for (final ITopicNode topicNode : contentSpec.getAllTopicNodes()) {
+                initialiseFromPool(topicNode);
+            }
+        }
+    }
+
+    /**
+     * Gets the mapping of CSP-ID property values to topic ids for the topics in the pool. Topics that are to be created take
+     * precedence over topics that are to be updated, if both have the same CSP-ID.
+     *
+     * @return The mapping of CSP-ID property values to topic ids.
+     */
+    private Map<String, Integer> getCSPIdToTopicIdMap() {
+        if (cspIdToTopicId == null) {
+            final Map<String, Integer> map = new HashMap<String, Integer>();
+            addTopicsToCSPIdMap(updatedTopicPool, map);
+            addTopicsToCSPIdMap(newTopicPool, map);
+            cspIdToTopicId = map;
+        }
+        return cspIdToTopicId;
+    }
+
+    private void addTopicsToCSPIdMap(final CollectionWrapper<TopicWrapper> topicPool, final Map<String, Integer> map) {
+        if (topicPool == null || topicPool.isEmpty()) return;
+
+        // Iterate in reverse, so that the first topic with a CSP-ID takes precedence
+        final List<TopicWrapper> topics = topicPool.getItems();
+        for (int i = topics.size() - 1; i >= 0; i--) {
+            final TopicWrapper topic = topics.get(i);
+            final PropertyTagInTopicWrapper cspIdProperty = topic.getProperty(cspIdPropertyTagId);
+            if (cspIdProperty != null && cspIdProperty.getValue() != null) {
+                map.put(cspIdProperty.getValue(), topic.getId());
+            }
+        }
+    }
+
     /**
      * Checks to see if the topic pool has been saved and initialised against
      * the REST Interface.
@@ -165,6 +432,11 @@ public class TopicPool {
      * in revision data when edited we can't roll back that data properly.
      */
     public void rollbackPool() {
+        if (!createdChunks.isEmpty()) {
+            rollbackCreatedChunks();
+            return;
+        }
+
         if (newTopicPool == null || newTopicPool.isEmpty()) return;
         final List<Integer> topicIds = new ArrayList<Integer>();
         for (final TopicWrapper topic : newTopicPool.getItems()) {
@@ -179,4 +451,71 @@ public class TopicPool {
 
     }
 
+    /**
+     * Rolls back the new topics that were created by a chunked save. Only the chunks that were actually created are deleted.
+     */
+    private void rollbackCreatedChunks() {
+        final List<Integer> topicIds = new ArrayList<Integer>();
+        for (final SavedChunk savedChunk : createdChunks) {
+            for (final TopicWrapper topic : savedChunk.savedTopics) {
+                topicIds.add(topic.getTopicId());
+            }
+        }
+        try {
+            topicProvider.deleteTopics(topicIds);
+            createdChunks.clear();
+            initialised = false;
+        } catch (Exception e) {
+            log.error("An error occurred while trying to rollback the Topic Pool", e);
+        }
+    }
+
+    /**
+     * A listener that is notified of the progress of a chunked save.
+     */
+    public static interface SaveProgressListener {
+        /**
+         * Called each time a chunk of topics has been saved.
+         *
+         * @param savedTopics The number of topics that have been saved so far.
+         * @param totalTopics The total number of topics that are being saved.
+         */
+        void chunkSaved(int savedTopics, int totalTopics);
+    }
+
+    /**
+     * The result of a chunk of topics that were saved successfully.
+     */
+    private static class SavedChunk {
+        private final int chunkIndex;
+        private final List<TopicWrapper> topics;
+        private final List<TopicWrapper> savedTopics;
+
+        private SavedChunk(final int chunkIndex, final List<TopicWrapper> topics, final List<TopicWrapper> savedTopics) {
+            this.chunkIndex = chunkIndex;
+            this.topics = topics;
+            this.savedTopics = savedTopics;
+        }
+    }
+
+    /**
+     * Tracks the progress of a chunked save and reports it to a listener.
+     */
+    private static class SaveProgress {
+        private final int totalTopics;
+        private final SaveProgressListener listener;
+        private int savedTopics = 0;
+
+        private SaveProgress(final int totalTopics, final SaveProgressListener listener) {
+            this.totalTopics = totalTopics;
+            this.listener = listener;
+        }
+
+        private synchronized void chunkSaved(final int chunkSize) {
+            savedTopics += chunkSize;
+            if (listener != null) {
+                listener.chunkSaved(savedTopics, totalTopics);
+            }
+        }
+    }
 }
@@ -0,0 +1,215 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.pressgang.ccms.contentspec.ITopicNode;
+import org.jboss.pressgang.ccms.wrapper.base.BaseTopicWrapper;
+
+/**
+ * A bounded cache of topic titles that have had conditions applied, and the URL titles created from them. Entries are keyed by the
+ * topic id, revision, condition and raw title, so that the title doesn't need to be re-processed every time a topic revision is used in a
+ * content spec. When the cache is full the least recently used entry is removed.
+ */
+public class TopicTitleCache {
+    public static final int DEFAULT_MAX_SIZE = 5000;
+
+    private final Map<CacheKey, CachedTitle> cache = new LinkedHashMap<CacheKey, CachedTitle>(16, 0.75f, true) {
+        private static final long serialVersionUID = -2713527367315392837L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<CacheKey, CachedTitle> eldest) {
+            return size() > maxSize;
+        }
+    };
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private volatile int maxSize;
+
+    public TopicTitleCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize The maximum number of titles to cache.
+     */
+    public TopicTitleCache(final int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * Gets a Topics title with conditional statements applied.
+     *
+     * @param topicNode The TopicNode of the topic to get the title for.
+     * @param topic     The actual topic to get the non-processed title from.
+     * @return The processed title that has the conditions applied.
+     * @see ContentSpecUtilities#getTopicTitleWithConditions(ITopicNode, BaseTopicWrapper)
+     */
+    public String getTitle(final ITopicNode topicNode, final BaseTopicWrapper<?> topic) {
+        return getCachedTitle(topicNode, topic).title;
+    }
+
+    /**
+     * Gets the URL title for a Topic, that has had conditional statements applied.
+     *
+     * @param topicNode The TopicNode of the topic to get the URL title for.
+     * @param topic     The actual topic to get the non-processed title from.
+     * @return The URL representation of the title with the conditions applied.
+     * @see FixedURLGenerator#createURLTitle(String)
+     */
+    public String getURLTitle(final ITopicNode topicNode, final BaseTopicWrapper<?> topic) {
+        final CachedTitle cachedTitle = getCachedTitle(topicNode, topic);
+        if (cachedTitle.urlTitle == null) {
+            cachedTitle.urlTitle = FixedURLGenerator.createURLTitle(cachedTitle.title);
+        }
+        return cachedTitle.urlTitle;
+    }
+
+    private CachedTitle getCachedTitle(final ITopicNode topicNode, final BaseTopicWrapper<?> topic) {
+        final CacheKey key = createKey(topicNode, topic);
+
+        // New or modified topics can't be cached, as the title may not match the revision
+        if (key == null) {
+            missCount.incrementAndGet();
+            return new CachedTitle(ContentSpecUtilities.getTopicTitleWithConditions(topicNode, topic));
+        }
+
+        CachedTitle cachedTitle;
+        synchronized (cache) {
+            cachedTitle = cache.get(key);
+        }
+
+        if (cachedTitle == null) {
+            missCount.incrementAndGet();
+            cachedTitle = new CachedTitle(ContentSpecUtilities.getTopicTitleWithConditions(topicNode, topic));
+            synchronized (cache) {
+                cache.put(key, cachedTitle);
+            }
+        } else {
+            hitCount.incrementAndGet();
+        }
+
+        return cachedTitle;
+    }
+
+    private CacheKey createKey(final ITopicNode topicNode, final BaseTopicWrapper<?> topic) {
+        if (topic.getId() == null || topic.getId() < 0 || topic.getRevision() == null) {
+            return null;
+        } else {
+            return new CacheKey(topic.getId(), topic.getRevision(), topicNode.getConditionStatement(true), topic.getTitle());
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Set the maximum number of titles to cache. If the cache is currently larger than the new size, then the least recently used
+     * titles will be removed as new titles are cached.
+     *
+     * @param maxSize The maximum number of titles to cache.
+     */
+    public void setMaxSize(final int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("The maximum cache size must be greater than 0");
+        this.maxSize = maxSize;
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Gets the ratio of lookups that were found in the cache.
+     *
+     * @return The hit ratio, between 0 and 1.
+     */
+    public double getHitRatio() {
+        final long hits = hitCount.get();
+        final long total = hits + missCount.get();
+        return total == 0 ? 0 : ((double) hits / total);
+    }
+
+    /**
+     * Remove all the cached titles and reset the statistics.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+    private static class CacheKey {
+        private final Integer topicId;
+        private final Integer topicRevision;
+        private final String condition;
+        private final String title;
+
+        CacheKey(final Integer topicId, final Integer topicRevision, final String condition, final String title) {
+            this.topicId = topicId;
+            this.topicRevision = topicRevision;
+            this.condition = condition;
+            this.title = title;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CacheKey)) return false;
+
+            final CacheKey other = (CacheKey) o;
+            return topicId.equals(other.topicId) && topicRevision.equals(other.topicRevision) && (condition == null ? other.condition ==
+                    null : condition.equals(other.condition)) && (title == null ? other.title == null : title.equals(other.title));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = topicId.hashCode();
+            result = 31 * result + topicRevision.hashCode();
+            result = 31 * result + (condition == null ? 0 : condition.hashCode());
+            result = 31 * result + (title == null ? 0 : title.hashCode());
+            return result;
+        }
+    }
+
+    private static class CachedTitle {
+        private final String title;
+        private volatile String urlTitle;
+
+        CachedTitle(final String title) {
+            this.title = title;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.pressgang.ccms.contentspec.ContentSpec;
+import org.jboss.pressgang.ccms.contentspec.FileList;
+import org.jboss.pressgang.ccms.contentspec.KeyValueNode;
+import org.jboss.pressgang.ccms.contentspec.Level;
+import org.jboss.pressgang.ccms.contentspec.Node;
+import org.jboss.pressgang.ccms.contentspec.structures.StringToCSNodeCollection;
+import org.jboss.pressgang.ccms.utils.common.StringUtilities;
+import org.jboss.pressgang.ccms.wrapper.CSNodeWrapper;
+
+/**
+ * Applies a set of translations from Zanata to the nodes of a Content Spec. The content spec nodes are indexed by their unique id
+ * and the translations are indexed by their trimmed source string up front, so that all the translations can be applied in a
+ * single pass.
+ */
+public class TranslatedStringsApplier {
+    private final Map<String, Node> nodesByUniqueId = new HashMap<String, Node>();
+    /**
+     * The translations from Zanata, grouped by their trimmed source string.
+     */
+    private final Map<String, Map<String, String>> translationsByTrimmedString = new HashMap<String, Map<String, String>>();
+
+    /**
+     * @param contentSpec  The content spec to apply the translations to.
+     * @param translations The translations from Zanata, where the key is the source string and the value is the translation.
+     */
+    public TranslatedStringsApplier(final ContentSpec contentSpec, final Map<String, String> translations) {
+        indexContentSpec(contentSpec);
+        indexTranslations(translations);
+    }
+
+    private void indexContentSpec(final ContentSpec contentSpec) {
+        for (final Node node : contentSpec.getNodes()) {
+            indexNode(node);
+            if (node instanceof FileList) {
+                for (final Node file : ((FileList) node).getValue()) {
+                    indexNode(file);
+                }
+            }
+        }
+
+        indexLevel(contentSpec.getBaseLevel());
+    }
+
+    private void indexLevel(final Level level) {
+        indexNode(level);
+
+        for (final Node node : level.getChildNodes()) {
+            if (node instanceof Level) {
+                indexLevel((Level) node);
+            } else {
+                indexNode(node);
+            }
+        }
+    }
+
+    private void indexNode(final Node node) {
+        // The first node found wins, to match ContentSpecUtilities.findMatchingContentSpecNode()
+        if (node.getUniqueId() != null && !nodesByUniqueId.containsKey(node.getUniqueId())) {
+            nodesByUniqueId.put(node.getUniqueId(), node);
+        }
+    }
+
+    private void indexTranslations(final Map<String, String> translations) {
+        for (final Map.Entry<String, String> entry : translations.entrySet()) {
+            if (entry.getKey() == null) continue;
+
+            final String trimmedString = entry.getKey().trim();
+            Map<String, String> matchingTranslations = translationsByTrimmedString.get(trimmedString);
+            if (matchingTranslations == null) {
+                matchingTranslations = new HashMap<String, String>();
+                translationsByTrimmedString.put(trimmedString, matchingTranslations);
+            }
+            matchingTranslations.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Apply the translations to the content spec nodes that each translation string maps to.
+     *
+     * @param stringToNodeCollections The translation strings and the nodes that each string maps to.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void apply(final List<StringToCSNodeCollection> stringToNodeCollections) {
+        for (final StringToCSNodeCollection stringToNodeCollection : stringToNodeCollections) {
+            final List<CSNodeWrapper> nodeCollections = stringToNodeCollection.getNodeCollections();
+            if (nodeCollections == null || nodeCollections.isEmpty()) continue;
+
+            final String translation = getTranslation(stringToNodeCollection.getTranslationString());
+            if (translation == null) continue;
+
+            for (final CSNodeWrapper node : nodeCollections) {
+                final Node contentSpecNode = nodesByUniqueId.get(node.getId() + "");
+                if (contentSpecNode instanceof KeyValueNode) {
+                    ((KeyValueNode) contentSpecNode).setTranslatedValue(translation);
+                } else if (contentSpecNode instanceof Level) {
+                    ((Level) contentSpecNode).setTranslatedTitle(translation);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the translation for an original string. Zanata will change the format of the strings that it returns, so here we account
+     * for any trimming that was done and add the padding that Zanata removed back to the translation.
+     *
+     * @param originalString The original untranslated string.
+     * @return The translation with any removed padding added back, or null if no translation exists.
+     */
+    protected String getTranslation(final String originalString) {
+        if (originalString == null) return null;
+
+        final String trimString = originalString.trim();
+        final Map<String, String> matchingTranslations = translationsByTrimmedString.get(trimString);
+        if (matchingTranslations == null) return null;
+
+        final int leftTrimCount;
+        final int rightTrimCount;
+        final String translation;
+        if (matchingTranslations.containsKey(originalString)) {
+            leftTrimCount = 0;
+            rightTrimCount = 0;
+            translation = matchingTranslations.get(originalString);
+        } else {
+            final String lTrimString = StringUtilities.ltrim(originalString);
+            final String rTrimString = StringUtilities.rtrim(originalString);
+            if (matchingTranslations.containsKey(lTrimString)) {
+                leftTrimCount = originalString.length() - lTrimString.length();
+                rightTrimCount = 0;
+                translation = matchingTranslations.get(lTrimString);
+            } else if (matchingTranslations.containsKey(rTrimString)) {
+                leftTrimCount = 0;
+                rightTrimCount = originalString.length() - rTrimString.length();
+                translation = matchingTranslations.get(rTrimString);
+            } else if (matchingTranslations.containsKey(trimString)) {
+                leftTrimCount = StringUtilities.ltrimCount(originalString);
+                rightTrimCount = StringUtilities.rtrimCount(originalString);
+                translation = matchingTranslations.get(trimString);
+            } else {
+                return null;
+            }
+        }
+
+        if (translation == null || translation.isEmpty()) return null;
+
+        // Build up the padding that Zanata removed
+        final StringBuilder fixedTranslation = new StringBuilder(leftTrimCount + translation.length() + rightTrimCount);
+        for (int i = 0; i < leftTrimCount; ++i) {
+            fixedTranslation.append(" ");
+        }
+        fixedTranslation.append(translation);
+        for (int i = 0; i < rightTrimCount; ++i) {
+            fixedTranslation.append(" ");
+        }
+
+        return fixedTranslation.toString();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.utils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.jboss.pressgang.ccms.wrapper.TranslatedTopicWrapper;
+
+/**
+ * An index of translated topics, grouped by their locale, topic id and translated content spec node id. Each group is ordered by the
+ * topic revision the translation was made from, so that both exact and closest revision lookups can be done without scanning every
+ * translation of a topic.
+ */
+public class TranslatedTopicIndex {
+    private final Map<TranslationKey, TreeMap<Integer, TranslatedTopicWrapper>> translations = new HashMap<TranslationKey,
+            TreeMap<Integer, TranslatedTopicWrapper>>();
+    private final Set<Integer> topicIds = new HashSet<Integer>();
+    private final Map<Integer, Set<String>> topicLocales = new HashMap<Integer, Set<String>>();
+
+    /**
+     * Add a translated topic to the index. If a translation already exists for the same locale, topic revision and translated
+     * content spec node, then the existing translation is kept.
+     *
+     * @param translatedTopic The translated topic to add.
+     */
+    public void addTranslatedTopic(final TranslatedTopicWrapper translatedTopic) {
+        if (translatedTopic.getLocale() == null || translatedTopic.getTopicId() == null || translatedTopic.getTopicRevision() == null) {
+            return;
+        }
+
+        final Integer translatedCSNodeId = translatedTopic.getTranslatedCSNode() == null ? null : translatedTopic.getTranslatedCSNode()
+                .getId();
+        final TranslationKey key = new TranslationKey(translatedTopic.getLocale().getValue(), translatedTopic.getTopicId(),
+                translatedCSNodeId);
+        TreeMap<Integer, TranslatedTopicWrapper> revisions = translations.get(key);
+        if (revisions == null) {
+            revisions = new TreeMap<Integer, TranslatedTopicWrapper>();
+            translations.put(key, revisions);
+        }
+        if (!revisions.containsKey(translatedTopic.getTopicRevision())) {
+            revisions.put(translatedTopic.getTopicRevision(), translatedTopic);
+        }
+        Set<String> locales = topicLocales.get(translatedTopic.getTopicId());
+        if (locales == null) {
+            locales = new HashSet<String>();
+            topicLocales.put(translatedTopic.getTopicId(), locales);
+        }
+        locales.add(translatedTopic.getLocale().getValue());
+    }
+
+    /**
+     * Add a collection of translated topics to the index.
+     *
+     * @param translatedTopics The translated topics to add.
+     */
+    public void addTranslatedTopics(final Collection<TranslatedTopicWrapper> translatedTopics) {
+        for (final TranslatedTopicWrapper translatedTopic : translatedTopics) {
+            addTranslatedTopic(translatedTopic);
+        }
+    }
+
+    /**
+     * Checks if the index contains any translations of a topic for a locale.
+     *
+     * @param topicId The topic id.
+     * @param locale  The locale to check for.
+     * @return True if at least one translation of the topic exists for the locale, otherwise false.
+     */
+    public boolean containsLocale(final Integer topicId, final String locale) {
+        final Set<String> locales = topicLocales.get(topicId);
+        return locales != null && locales.contains(locale);
+    }
+
+    /**
+     * Mark that the translations for a topic have been loaded into the index, even if the topic doesn't have any translations.
+     *
+     * @param topicId The topic id.
+     */
+    public void addTopicId(final Integer topicId) {
+        topicIds.add(topicId);
+    }
+
+    /**
+     * Checks if the translations for a topic have been loaded into the index.
+     *
+     * @param topicId The topic id.
+     * @return True if the topics translations have been loaded, otherwise false.
+     */
+    public boolean containsTopic(final Integer topicId) {
+        return topicIds.contains(topicId);
+    }
+
+    /**
+     * Gets a translated topic based on a topic id, revision, translated content spec node id and locale.
+     *
+     * @param id                 The topic id.
+     * @param rev                The topic revision the translation was made from.
+     * @param translatedCSNodeId The translated content spec node id, or null if the translation isn't for a specific node.
+     * @param locale             The locale of the translation.
+     * @return The matching translated topic, or null if one doesn't exist.
+     */
+    public TranslatedTopicWrapper getTranslatedTopic(final Integer id, final Integer rev, final Integer translatedCSNodeId,
+            final String locale) {
+        if (locale == null || rev == null) return null;
+
+        final TreeMap<Integer, TranslatedTopicWrapper> revisions = translations.get(new TranslationKey(locale, id, translatedCSNodeId));
+        return revisions == null ? null : revisions.get(rev);
+    }
+
+    /**
+     * Gets the translated topic with the highest topic revision that is less than or equal to a revision.
+     *
+     * @param id                 The topic id.
+     * @param rev                The maximum topic revision, or null to get the latest translation.
+     * @param translatedCSNodeId The translated content spec node id, or null if the translation isn't for a specific node.
+     * @param locale             The locale of the translation.
+     * @return The closest matching translated topic, or null if one doesn't exist.
+     */
+    public TranslatedTopicWrapper getClosestTranslatedTopic(final Integer id, final Integer rev, final Integer translatedCSNodeId,
+            final String locale) {
+        if (locale == null) return null;
+
+        final TreeMap<Integer, TranslatedTopicWrapper> revisions = translations.get(new TranslationKey(locale, id, translatedCSNodeId));
+        if (revisions == null) {
+            return null;
+        } else {
+            final Map.Entry<Integer, TranslatedTopicWrapper> entry = rev == null ? revisions.lastEntry() : revisions.floorEntry(rev);
+            return entry == null ? null : entry.getValue();
+        }
+    }
+
+    private static class TranslationKey {
+        private final String locale;
+        private final Integer topicId;
+        private final Integer translatedCSNodeId;
+
+        TranslationKey(final String locale, final Integer topicId, final Integer translatedCSNodeId) {
+            this.locale = locale;
+            this.topicId = topicId;
+            this.translatedCSNodeId = translatedCSNodeId;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TranslationKey)) return false;
+
+            final TranslationKey other = (TranslationKey) o;
+            return equals(locale, other.locale) && equals(topicId, other.topicId) && equals(translatedCSNodeId,
+                    other.translatedCSNodeId);
+        }
+
+        private static boolean equals(final Object a, final Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = locale == null ? 0 : locale.hashCode();
+            result = 31 * result + (topicId == null ? 0 : topicId.hashCode());
+            result = 31 * result + (translatedCSNodeId == null ? 0 : translatedCSNodeId.hashCode());
+            return result;
+        }
+    }
+}
@@ -31,15 +31,13 @@ import java.util.Set;
 
 import org.jboss.pressgang.ccms.contentspec.ContentSpec;
 import org.jboss.pressgang.ccms.contentspec.KeyValueNode;
-import org.jboss.pressgang.ccms.contentspec.Level;
 import org.jboss.pressgang.ccms.contentspec.Node;
 import org.jboss.pressgang.ccms.contentspec.structures.StringToCSNodeCollection;
+import org.jboss.pressgang.ccms.contentspec.structures.StringToCSNodeCollectionBuilder;
 import org.jboss.pressgang.ccms.provider.DataProviderFactory;
 import org.jboss.pressgang.ccms.provider.TranslatedCSNodeProvider;
 import org.jboss.pressgang.ccms.provider.TranslatedContentSpecProvider;
 import org.jboss.pressgang.ccms.provider.TranslatedTopicProvider;
-import org.jboss.pressgang.ccms.utils.common.StringUtilities;
-import org.jboss.pressgang.ccms.utils.common.XMLUtilities;
 import org.jboss.pressgang.ccms.utils.constants.CommonConstants;
 import org.jboss.pressgang.ccms.wrapper.CSNodeWrapper;
 import org.jboss.pressgang.ccms.wrapper.ContentSpecWrapper;
@@ -50,8 +48,6 @@ import org.jboss.pressgang.ccms.wrapper.TranslatedTopicWrapper;
 import org.jboss.pressgang.ccms.wrapper.collection.UpdateableCollectionWrapper;
 import org.w3c.dom.Document;
 import org.w3c.dom.Entity;
-import org.w3c.dom.EntityReference;
-import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 public class TranslationUtilities {
@@ -189,23 +185,22 @@ public class TranslationUtilities {
             final boolean allowDuplicates) {
         if (contentSpec == null) return null;
 
-        final List<StringToCSNodeCollection> retValue = new ArrayList<StringToCSNodeCollection>();
+        final StringToCSNodeCollectionBuilder builder = new StringToCSNodeCollectionBuilder(allowDuplicates);
 
         // Get all the translatable nodes and create the StringToCSNode collection
         final Set<CSNodeWrapper> contentSpecNodes = getAllTranslatableContentSpecNodes(contentSpec);
         for (final CSNodeWrapper node : contentSpecNodes) {
             // The node will either be a meta data field or a level
             if (node.getNodeType() == CommonConstants.CS_NODE_META_DATA) {
-                addTranslationToNodeDetailsToCollection(node.getAdditionalText(), node, allowDuplicates, retValue);
+                builder.add(node.getAdditionalText(), node);
             } else {
-                addTranslationToNodeDetailsToCollection(node.getTitle(), node, allowDuplicates, retValue);
+                builder.add(node.getTitle(), node);
             }
         }
 
-        return retValue;
+        return builder.build();
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     public static void replaceTranslatedStrings(final ContentSpecWrapper contentSpecEntity, final ContentSpec contentSpec,
             final Map<String, String> translations) {
         if (contentSpecEntity == null || translations == null || translations.size() == 0) return;
@@ -221,102 +216,28 @@ public class TranslationUtilities {
 
         if (stringToNodeCollections == null || stringToNodeCollections.size() == 0) return;
 
-        for (final StringToCSNodeCollection stringToNodeCollection : stringToNodeCollections) {
-            final String originalString = stringToNodeCollection.getTranslationString();
-            final ArrayList<CSNodeWrapper> nodeCollections = stringToNodeCollection.getNodeCollections();
-
-            if (nodeCollections != null && nodeCollections.size() != 0) {
-                // Zanata will change the format of the strings that it returns. Here we account for any trimming that was done.
-                final TranslationStringDetails fixedStringDetails = new TranslationStringDetails(translations, originalString);
-                if (fixedStringDetails.getFixedString() != null) {
-                    final String translation = translations.get(fixedStringDetails.getFixedString());
-
-                    if (translation != null && !translation.isEmpty()) {
-                        // Build up the padding that Zanata removed
-                        final StringBuilder leftTrimPadding = new StringBuilder();
-                        final StringBuilder rightTrimPadding = new StringBuilder();
-
-                        for (int i = 0; i < fixedStringDetails.getLeftTrimCount(); ++i)
-                            leftTrimPadding.append(" ");
-
-                        for (int i = 0; i < fixedStringDetails.getRightTrimCount(); ++i)
-                            rightTrimPadding.append(" ");
-
-                        final String fixedTranslation = leftTrimPadding.toString() + translation + rightTrimPadding.toString();
-
-                        for (final CSNodeWrapper node : nodeCollections) {
-                            final Node contentSpecNode = ContentSpecUtilities.findMatchingContentSpecNode(contentSpec, node.getId());
-                            if (contentSpecNode != null) {
-                                if (contentSpecNode instanceof KeyValueNode) {
-                                    ((KeyValueNode) contentSpecNode).setTranslatedValue(fixedTranslation);
-                                } else if (contentSpecNode instanceof Level) {
-                                    ((Level) contentSpecNode).setTranslatedTitle(fixedTranslation);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        new TranslatedStringsApplier(contentSpec, translations).apply(stringToNodeCollections);
     }
 
-    private static void addTranslationToNodeDetailsToCollection(final String text, final CSNodeWrapper node, final boolean allowDuplicates,
-            final List<StringToCSNodeCollection> translationStrings) {
-        final ArrayList<CSNodeWrapper> nodes = new ArrayList<CSNodeWrapper>();
-        nodes.add(node);
-        addTranslationToNodeDetailsToCollection(text, nodes, allowDuplicates, translationStrings);
-    }
-
-    private static void addTranslationToNodeDetailsToCollection(final String text, final ArrayList<CSNodeWrapper> nodes,
-            final boolean allowDuplicates, final List<StringToCSNodeCollection> translationStrings) {
-
-        if (allowDuplicates) {
-            translationStrings.add(new StringToCSNodeCollection(text).addNodeCollection(nodes));
-        } else {
-            final StringToCSNodeCollection stringToNodeCollection = findExistingText(text, translationStrings);
-
-            if (stringToNodeCollection == null) translationStrings.add(new StringToCSNodeCollection(text).addNodeCollection(nodes));
-            else stringToNodeCollection.addNodeCollection(nodes);
-        }
-    }
-
-    private static StringToCSNodeCollection findExistingText(final String text, final List<StringToCSNodeCollection> translationStrings) {
-        for (final StringToCSNodeCollection stringToNodeCollection : translationStrings) {
-            if (stringToNodeCollection.getTranslationString().equals(text)) return stringToNodeCollection;
-        }
-
-        return null;
+    public static boolean resolveCustomTopicEntities(final List<Entity> customEntities, final Document doc) throws SAXException {
+        return resolveCustomTopicEntities(new CustomEntityResolver(customEntities), doc);
     }
 
-    public static boolean resolveCustomTopicEntities(final List<Entity> customEntities, final Document doc) throws SAXException {
-        boolean entitiesResolved = false;
+    public static boolean resolveCustomTopicEntities(final CustomEntityResolver entityResolver, final Document doc) throws SAXException {
         /*
-         * Loop over each entity and try to see if it exists in the doc. If it does then remove the EntityReference node and insert
-         * the entities value.
+         * Find all the references to the custom entities in the doc, then remove each EntityReference node and insert the entities
+         * value.
          */
-        for (final Entity entity : customEntities) {
-            final List<org.w3c.dom.Node> entityReferences = XMLUtilities.getChildNodes(doc, entity.getNodeName());
-            for (final org.w3c.dom.Node entityReference : entityReferences) {
-                if (entityReference instanceof EntityReference) {
-                    final String tempXml = "<tempRoot>" + entity.getTextContent() + "</tempRoot>";
-                    final Document entityValueDoc = XMLUtilities.convertStringToDocument(tempXml);
-                    final org.w3c.dom.Node entityValue = doc.importNode(entityValueDoc.getDocumentElement(), true);
-
-                    final NodeList entityValueChildren = entityValue.getChildNodes();
-                    for (int k = 0; k < entityValueChildren.getLength(); k++) {
-                        entityReference.getParentNode().insertBefore(entityValueChildren.item(k), entityReference);
-                    }
-                    entityReference.getParentNode().removeChild(entityReference);
-
-                    entitiesResolved = true;
-                }
-            }
-        }
-
-        return entitiesResolved;
+        return entityResolver.resolve(doc);
     }
 
     public static void resolveCustomContentSpecEntities(final List<Entity> customEntities, final ContentSpecWrapper contentSpec) {
+        resolveCustomContentSpecEntities(new CustomEntityResolver(customEntities), contentSpec);
+    }
+
+    public static void resolveCustomContentSpecEntities(final CustomEntityResolver entityResolver, final ContentSpecWrapper contentSpec) {
+        if (entityResolver.isEmpty()) return;
+
         final List<CSNodeWrapper> translatableNodes = new ArrayList<CSNodeWrapper>();
 
         // Find all the translatable nodes first
@@ -329,18 +250,22 @@ public class TranslationUtilities {
         }
 
         // Resolve any custom entities
-        for (final Entity entity : customEntities) {
-            final String entityString = "&" + entity.getNodeName() + ";";
-            for (final CSNodeWrapper node : translatableNodes) {
-                if (node.getAdditionalText().contains(entityString)) {
-                    final String fixedValue = node.getAdditionalText().replace(entityString, entity.getTextContent());
-                    node.setAdditionalText(fixedValue);
-                }
+        for (final CSNodeWrapper node : translatableNodes) {
+            final String value = node.getAdditionalText();
+            final String fixedValue = entityResolver.resolve(value);
+            if (fixedValue != null && !fixedValue.equals(value)) {
+                node.setAdditionalText(fixedValue);
             }
         }
     }
 
     public static void resolveCustomContentSpecEntities(final List<Entity> customEntities, final ContentSpec contentSpec) {
+        resolveCustomContentSpecEntities(new CustomEntityResolver(customEntities), contentSpec);
+    }
+
+    public static void resolveCustomContentSpecEntities(final CustomEntityResolver entityResolver, final ContentSpec contentSpec) {
+        if (entityResolver.isEmpty()) return;
+
         final List<KeyValueNode<String>> translatableNodes = new ArrayList<KeyValueNode<String>>();
 
         // Find all the translatable nodes first
@@ -355,82 +280,12 @@ public class TranslationUtilities {
         }
 
         // Resolve any custom entities
-        for (final Entity entity : customEntities) {
-            final String entityString = "&" + entity.getNodeName() + ";";
-            for (final KeyValueNode<String> node : translatableNodes) {
-                if (node.getValue().contains(entityString)) {
-                    final String fixedValue = node.getValue().replace(entityString, entity.getTextContent());
-                    node.setValue(fixedValue);
-                }
-            }
-        }
-    }
-
-    /**
-     * Zanata will modify strings sent to it for translation. This class contains the info necessary to take a string from Zanata and match
-     * it to the source XML.
-     */
-    private static class TranslationStringDetails {
-        /**
-         * The number of spaces that Zanata removed from the left
-         */
-        private final int leftTrimCount;
-        /**
-         * The number of spaces that Zanata removed from the right
-         */
-        private final int rightTrimCount;
-        /**
-         * The string that was matched to the one returned by Zanata. This will be null if there was no match.
-         */
-        private final String fixedString;
-
-        TranslationStringDetails(final Map<String, String> translations, final String originalString) {
-        /*
-         * Here we account for any trimming that is done by Zanata.
-         */
-            final String lTrimtString = StringUtilities.ltrim(originalString);
-            final String rTrimString = StringUtilities.rtrim(originalString);
-            final String trimString = originalString.trim();
-
-            final boolean containsExactMacth = translations.containsKey(originalString);
-            final boolean lTrimMatch = translations.containsKey(lTrimtString);
-            final boolean rTrimMatch = translations.containsKey(rTrimString);
-            final boolean trimMatch = translations.containsKey(trimString);
-
-        /* remember the details of the trimming, so we can add the padding back */
-            if (containsExactMacth) {
-                leftTrimCount = 0;
-                rightTrimCount = 0;
-                fixedString = originalString;
-            } else if (lTrimMatch) {
-                leftTrimCount = originalString.length() - lTrimtString.length();
-                rightTrimCount = 0;
-                fixedString = lTrimtString;
-            } else if (rTrimMatch) {
-                leftTrimCount = 0;
-                rightTrimCount = originalString.length() - rTrimString.length();
-                fixedString = rTrimString;
-            } else if (trimMatch) {
-                leftTrimCount = StringUtilities.ltrimCount(originalString);
-                rightTrimCount = StringUtilities.rtrimCount(originalString);
-                fixedString = trimString;
-            } else {
-                leftTrimCount = 0;
-                rightTrimCount = 0;
-                fixedString = null;
+        for (final KeyValueNode<String> node : translatableNodes) {
+            final String value = node.getValue();
+            final String fixedValue = entityResolver.resolve(value);
+            if (fixedValue != null && !fixedValue.equals(value)) {
+                node.setValue(fixedValue);
             }
         }
-
-        public int getLeftTrimCount() {
-            return leftTrimCount;
-        }
-
-        public int getRightTrimCount() {
-            return rightTrimCount;
-        }
-
-        public String getFixedString() {
-            return fixedString;
-        }
     }
 }
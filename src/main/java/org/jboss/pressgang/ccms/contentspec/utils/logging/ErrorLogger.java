@@ -19,18 +19,36 @@
 
 package org.jboss.pressgang.ccms.contentspec.utils.logging;
 
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Logger;
 
 /**
  * This is the error logger class, this is managed by the ErrorLoggerManager, its in charge of logging different types of messages.
+ * <p/>
+ * Messages are stored in a lock free queue, which can optionally be limited to a maximum number of messages. The queue and its
+ * counters are replaced as a whole when the logs are cleared, so that messages logged while clearing are either entirely cleared or
+ * entirely kept.
  */
 public class ErrorLogger {
+    /**
+     * The message limit to use when the number of stored messages shouldn't be limited.
+     */
+    public static final int UNLIMITED = -1;
+
     private final Logger log;
     private final String name;
-    private int debugLevel = 0;
-    private final Vector<LogMessage> messages = new Vector<LogMessage>();
+    private volatile int debugLevel = 0;
+    private volatile int messageLimit = UNLIMITED;
+    private volatile boolean discardOldestMessages = false;
+    private volatile boolean filterDebugMessagesOnInsert = false;
+    private final AtomicReference<MessageStore> messageStore = new AtomicReference<MessageStore>(new MessageStore());
 
     /**
      * ErrorLogger constructor
@@ -60,13 +78,115 @@ public class ErrorLogger {
         return debugLevel;
     }
 
+    /**
+     * Limits the number of messages that are stored by the logger. When the limit is reached either the oldest message is
+     * discarded to make room for the new message, or the new message is discarded.
+     *
+     * @param limit                 The maximum number of messages to store, or {@link #UNLIMITED} to store every message.
+     * @param discardOldestMessages If the oldest messages should be discarded once the limit is reached, so that the logger acts
+     *                              as a ring buffer, otherwise any new messages are discarded.
+     */
+    public void setMessageLimit(final int limit, final boolean discardOldestMessages) {
+        messageLimit = limit;
+        this.discardOldestMessages = discardOldestMessages;
+    }
+
+    /**
+     * Get the maximum number of messages that are stored by the logger.
+     *
+     * @return The message limit, or {@link #UNLIMITED} if every message is stored.
+     */
+    public int getMessageLimit() {
+        return messageLimit;
+    }
+
+    /**
+     * Set if debug messages that are higher then the debug level should be discarded when they are logged, instead of being
+     * stored and ignored when the log messages are retrieved.
+     * <p/>
+     * Note: Discarded debug messages won't be returned if the debug level is raised later.
+     *
+     * @param filterDebugMessagesOnInsert True if debug messages should be filtered when they are logged.
+     */
+    public void setFilterDebugMessagesOnInsert(final boolean filterDebugMessagesOnInsert) {
+        this.filterDebugMessagesOnInsert = filterDebugMessagesOnInsert;
+    }
+
+    /**
+     * Gets the number of messages of a specific type that have been logged, including any messages that were discarded.
+     *
+     * @param type The type of message.
+     * @return The number of messages logged for the type.
+     */
+    public int getMessageCount(final LogMessage.Type type) {
+        return messageStore.get().messageTypeCounts.get(type).get();
+    }
+
+    /**
+     * Gets the number of messages that have been discarded, because the message limit was reached or the message was a debug
+     * message higher then the debug level.
+     *
+     * @return The number of discarded messages.
+     */
+    public int getDiscardedMessageCount() {
+        return messageStore.get().numberOfDiscardedMessages.get();
+    }
+
+    /**
+     * Stores a log message, taking into account the message limit and debug level filtering.
+     *
+     * @param message The message to be stored.
+     */
+    protected void addMessage(final LogMessage message) {
+        // Use a single store for the message, so that the message and its counts are cleared together
+        final MessageStore store = messageStore.get();
+        final Queue<LogMessage> messages = store.messages;
+        final AtomicInteger numberOfMessages = store.numberOfMessages;
+        final AtomicInteger numberOfDiscardedMessages = store.numberOfDiscardedMessages;
+        final Map<LogMessage.Type, AtomicInteger> messageTypeCounts = store.messageTypeCounts;
+
+        if (message.getType() != null) {
+            messageTypeCounts.get(message.getType()).incrementAndGet();
+        }
+
+        if (filterDebugMessagesOnInsert && message.getType() == LogMessage.Type.DEBUG && message.getDebugLevel() > debugLevel) {
+            numberOfDiscardedMessages.incrementAndGet();
+            return;
+        }
+
+        final int limit = messageLimit;
+        if (limit == UNLIMITED) {
+            numberOfMessages.incrementAndGet();
+            messages.add(message);
+        } else if (discardOldestMessages) {
+            messages.add(message);
+            // Remove the oldest messages until the queue is back within the limit
+            int size = numberOfMessages.incrementAndGet();
+            while (size > limit && messages.poll() != null) {
+                numberOfDiscardedMessages.incrementAndGet();
+                size = numberOfMessages.decrementAndGet();
+            }
+        } else {
+            // Reserve a space for the message, or discard it if the limit has been reached
+            int size;
+            do {
+                size = numberOfMessages.get();
+                if (size >= limit) {
+                    numberOfDiscardedMessages.incrementAndGet();
+                    return;
+                }
+            } while (!numberOfMessages.compareAndSet(size, size + 1));
+            messages.add(message);
+        }
+    }
+
     /**
      * Write an error message to the logs
      *
      * @param message The error message
      */
     public void error(final String message) {
-        messages.add(new LogMessage(message, LogMessage.Type.ERROR));
+        addMessage(new LogMessage(message, LogMessage.Type.ERROR));
         log.error(message);
     }
 
@@ -77,7 +197,7 @@ public class ErrorLogger {
      * @param exception
      */
     public void error(final String message, final Exception exception) {
-        messages.add(new LogMessage(message + " " + exception.getMessage(), LogMessage.Type.ERROR));
+        addMessage(new LogMessage(message + " " + exception.getMessage(), LogMessage.Type.ERROR));
         log.error(message, exception);
     }
 
@@ -87,7 +207,7 @@ public class ErrorLogger {
      * @param message The debug message
      */
     public void debug(final String message, final int level) {
-        messages.add(new LogMessage(message, LogMessage.Type.DEBUG, level));
+        addMessage(new LogMessage(message, LogMessage.Type.DEBUG, level));
         log.debug(message);
     }
 
@@ -98,7 +218,7 @@ public class ErrorLogger {
      * @param exception
      */
     public void debug(final String message, final Exception exception) {
-        messages.add(new LogMessage(message + " " + exception.getMessage(), LogMessage.Type.DEBUG));
+        addMessage(new LogMessage(message + " " + exception.getMessage(), LogMessage.Type.DEBUG));
         log.debug(message, exception);
     }
 
@@ -108,7 +228,7 @@ public class ErrorLogger {
      * @param message The debug message
      */
     public void debug(final String message) {
-        messages.add(new LogMessage(message, LogMessage.Type.DEBUG));
+        addMessage(new LogMessage(message, LogMessage.Type.DEBUG));
         log.debug(message);
     }
 
@@ -118,7 +238,7 @@ public class ErrorLogger {
      * @param message The information message
      */
     public void info(final String message) {
-        messages.add(new LogMessage(message, LogMessage.Type.INFO));
+        addMessage(new LogMessage(message, LogMessage.Type.INFO));
         log.info(message);
     }
 
@@ -129,7 +249,7 @@ public class ErrorLogger {
      * @param exception
      */
     public void info(final String message, final Exception exception) {
-        messages.add(new LogMessage(message + " " + exception.getMessage(), LogMessage.Type.INFO));
+        addMessage(new LogMessage(message + " " + exception.getMessage(), LogMessage.Type.INFO));
         log.info(message, exception);
     }
 
@@ -139,7 +259,7 @@ public class ErrorLogger {
      * @param message The warning message
      */
     public void warn(final String message) {
-        messages.add(new LogMessage(message, LogMessage.Type.WARN));
+        addMessage(new LogMessage(message, LogMessage.Type.WARN));
         log.warn(message);
     }
 
@@ -150,7 +270,7 @@ public class ErrorLogger {
      * @param exception
      */
     public void warn(final String message, final Exception exception) {
-        messages.add(new LogMessage(message + " " + exception.getMessage(), LogMessage.Type.WARN));
+        addMessage(new LogMessage(message + " " + exception.getMessage(), LogMessage.Type.WARN));
         log.warn(message, exception);
     }
 
@@ -167,7 +287,7 @@ public class ErrorLogger {
      * Clears the custom log messages.
      */
     public void clearLogs() {
-        messages.clear();
+        messageStore.set(new MessageStore());
     }
 
     /**
@@ -176,8 +296,9 @@ public class ErrorLogger {
      * @return A vector based array containing the LogMessage's
      */
     public Vector<LogMessage> getLogMessages() {
-        final Vector<LogMessage> output = new Vector<LogMessage>();
-        for (final LogMessage msg : messages) {
+        final MessageStore store = messageStore.get();
+        final Vector<LogMessage> output = new Vector<LogMessage>(store.numberOfMessages.get());
+        for (final LogMessage msg : store.messages) {
             if (msg.getType() == LogMessage.Type.DEBUG) {
                 if (msg.getDebugLevel() <= debugLevel) {
                     output.add(msg);
@@ -189,5 +310,20 @@ public class ErrorLogger {
         return output;
     }
 
+    /**
+     * The stored messages and the counts for the messages.
+     */
+    private static class MessageStore {
+        private final Queue<LogMessage> messages = new ConcurrentLinkedQueue<LogMessage>();
+        private final AtomicInteger numberOfMessages = new AtomicInteger(0);
+        private final AtomicInteger numberOfDiscardedMessages = new AtomicInteger(0);
+        private final Map<LogMessage.Type, AtomicInteger> messageTypeCounts = new EnumMap<LogMessage.Type, AtomicInteger>(
+                LogMessage.Type.class);
 
+        MessageStore() {
+            for (final LogMessage.Type type : LogMessage.Type.values()) {
+                messageTypeCounts.put(type, new AtomicInteger(0));
+            }
+        }
+    }
 }
@@ -34,6 +34,8 @@ public class ErrorLoggerManager {
 
     private final Map<String, ErrorLogger> logs = Collections.synchronizedMap(new HashMap<String, ErrorLogger>());
     private int debugLevel = 0;
+    private int messageLimit = ErrorLogger.UNLIMITED;
+    private boolean discardOldestMessages = false;
 
     /**
      * Gets a logger for a specified name. If the logger doesn't exist then it creates one.
@@ -99,6 +101,7 @@ public class ErrorLoggerManager {
         ErrorLogger log = new ErrorLogger(name);
         logs.put(name, log);
         log.setVerboseDebug(debugLevel);
+        log.setMessageLimit(messageLimit, discardOldestMessages);
     }
 
     /**
@@ -113,6 +116,21 @@ public class ErrorLoggerManager {
         }
     }
 
+    /**
+     * Limits the number of messages that are stored by each of the managed loggers.
+     *
+     * @param limit                 The maximum number of messages to store in each logger, or {@link ErrorLogger#UNLIMITED}.
+     * @param discardOldestMessages If the oldest messages should be discarded once the limit is reached, otherwise any new
+     *                              messages are discarded.
+     */
+    public void setMessageLimit(final int limit, final boolean discardOldestMessages) {
+        messageLimit = limit;
+        this.discardOldestMessages = discardOldestMessages;
+        for (final String logName : logs.keySet()) {
+            logs.get(logName).setMessageLimit(limit, discardOldestMessages);
+        }
+    }
+
     /**
      * Generates a custom log for all of the error/info/warn/debug messages sent.
      *
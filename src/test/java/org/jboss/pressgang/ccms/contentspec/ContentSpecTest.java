@@ -22,7 +22,13 @@ package org.jboss.pressgang.ccms.contentspec;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.jboss.pressgang.ccms.contentspec.enums.TopicType;
+import org.jboss.pressgang.ccms.utils.common.HashUtilities;
+import org.jboss.pressgang.ccms.utils.constants.CommonConstants;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -78,4 +84,186 @@ public class ContentSpecTest extends BaseUnitTest {
         // and the author group topic type is set
         assertThat(contentSpec.getAuthorGroup().getTopicType(), is(TopicType.AUTHOR_GROUP));
     }
+
+    @Test
+    public void shouldRecalculateStepsWhenTheLevelTreeIsModified() {
+        // Given a content spec with two chapters that contain topics
+        final Chapter chapter1 = new Chapter("Chapter 1");
+        final SpecTopic topic1 = new SpecTopic(1, "Topic 1");
+        final SpecTopic topic2 = new SpecTopic(2, "Topic 2");
+        chapter1.appendSpecTopic(topic1);
+        chapter1.appendSpecTopic(topic2);
+        final Chapter chapter2 = new Chapter("Chapter 2");
+        final SpecTopic topic3 = new SpecTopic(3, "Topic 3");
+        chapter2.appendSpecTopic(topic3);
+        contentSpec.appendChapter(chapter1);
+        contentSpec.appendChapter(chapter2);
+        final int firstStep = chapter1.getStep();
+
+        // and the steps are calculated in order
+        assertThat(topic1.getStep(), is(firstStep + 1));
+        assertThat(topic2.getStep(), is(firstStep + 2));
+        assertThat(chapter2.getStep(), is(firstStep + 3));
+        assertThat(topic3.getStep(), is(firstStep + 4));
+
+        // When a topic is added to the first chapter
+        final SpecTopic topic4 = new SpecTopic(4, "Topic 4");
+        chapter1.appendSpecTopic(topic4);
+
+        // Then the steps after the new topic are recalculated
+        assertThat(topic4.getStep(), is(firstStep + 3));
+        assertThat(chapter2.getStep(), is(firstStep + 4));
+        assertThat(topic3.getStep(), is(firstStep + 5));
+
+        // and removing a topic recalculates the steps again
+        chapter1.removeSpecTopic(topic1);
+        assertThat(topic2.getStep(), is(firstStep + 1));
+        assertThat(chapter2.getStep(), is(firstStep + 3));
+    }
+
+    @Test
+    public void shouldRecalculateInheritedOptionsWhenAParentsOptionsChange() {
+        // Given a content spec with global tags and a chapter that removes one of them
+        contentSpec.setTags(new ArrayList<String>(Arrays.asList("Tag1", "Tag2")));
+        final Chapter chapter = new Chapter("Chapter 1");
+        chapter.setConditionStatement("foo");
+        chapter.addTag("-Tag2");
+        final SpecTopic topic = new SpecTopic(1, "Topic 1");
+        topic.addTag("Tag3");
+        chapter.appendSpecTopic(topic);
+        contentSpec.appendChapter(chapter);
+
+        // and the inherited options are resolved
+        assertThat(topic.getTags(true), is(Arrays.asList("Tag1", "Tag3")));
+        assertThat(topic.getRemoveTags(true), is(Arrays.asList("Tag2")));
+        assertThat(topic.getConditionStatement(true), is("foo"));
+
+        // When the options of the topics parents are changed
+        contentSpec.getBaseLevel().addTag("Tag4");
+        chapter.setConditionStatement("bar");
+
+        // Then the inherited options should reflect the changes
+        assertThat(topic.getTags(true), is(Arrays.asList("Tag1", "Tag4", "Tag3")));
+        assertThat(topic.getConditionStatement(true), is("bar"));
+    }
+
+    @Test
+    public void shouldRecalculateInheritedOptionsForMetaDataTopicsWhenTheBaseLevelChanges() {
+        // Given a content spec with a legal notice topic
+        final SpecTopic legalNotice = new SpecTopic(0, "Legal Notice");
+        contentSpec.appendChild(new KeyValueNode<SpecTopic>("Legal Notice", legalNotice));
+        // and the inherited options have been resolved
+        assertThat(legalNotice.getConditionStatement(true), is((String) null));
+
+        // When the base level options change
+        contentSpec.getBaseLevel().setConditionStatement("foo");
+
+        // Then the legal notice should inherit the new options
+        assertThat(legalNotice.getConditionStatement(true), is("foo"));
+    }
+
+    @Test
+    public void shouldUpdateColumnsWhenALevelIsMoved() {
+        // Given a content spec with a chapter that contains a section with a topic
+        final Chapter chapter = new Chapter("Chapter 1");
+        final Section section = new Section("Section 1");
+        final SpecTopic topic = new SpecTopic(1, "Topic 1");
+        final TextNode textNode = new TextNode("Text");
+        section.appendSpecTopic(topic);
+        chapter.appendChild(section);
+        chapter.appendChild(textNode);
+        contentSpec.appendChapter(chapter);
+
+        // and the columns are based on the depth of the nodes
+        assertThat(chapter.getColumn(), is(1));
+        assertThat(topic.getColumn(), is(3));
+        assertThat(textNode.getColumn(), is(2));
+
+        // When the chapter is moved into a part
+        final Part part = new Part("Part 1");
+        contentSpec.appendPart(part);
+        part.appendChild(chapter);
+
+        // Then the columns of the chapter and its children should be updated
+        assertThat(chapter.getColumn(), is(2));
+        assertThat(section.getColumn(), is(3));
+        assertThat(topic.getColumn(), is(4));
+        assertThat(textNode.getColumn(), is(3));
+
+        // and removing a node from its parent should reset its column
+        textNode.removeParent();
+        assertThat(textNode.getColumn(), is(0));
+    }
+
+    @Test
+    public void shouldGroupTopicsByLevelWhenGettingAllTopics() {
+        // Given a content spec with a chapter that has topics before and after a section, and an info topic
+        final Chapter chapter = new Chapter("Chapter 1");
+        final Section section = new Section("Section 1");
+        final SpecTopic topic1 = new SpecTopic(1, "Topic 1");
+        final SpecTopic topic2 = new SpecTopic(2, "Topic 2");
+        final SpecTopic topic3 = new SpecTopic(3, "Topic 3");
+        final InfoTopic infoTopic = new InfoTopic(4, chapter);
+        final SpecTopic legalNotice = new SpecTopic(5, "Legal Notice");
+        chapter.setInfoTopic(infoTopic);
+        chapter.appendSpecTopic(topic1);
+        chapter.appendChild(section);
+        section.appendSpecTopic(topic2);
+        chapter.appendSpecTopic(topic3);
+        contentSpec.appendChapter(chapter);
+        contentSpec.appendChild(new KeyValueNode<SpecTopic>("Legal Notice", legalNotice));
+
+        // When getting the spec topics and topic nodes
+        final List<SpecTopic> specTopics = contentSpec.getSpecTopics();
+        final List<ITopicNode> topicNodes = contentSpec.getAllTopicNodes();
+
+        // Then the topics in a level should be before the topics in its child levels, followed by the metadata topics
+        assertThat(specTopics, is(Arrays.asList(topic1, topic3, topic2, legalNotice)));
+        // and the info topic should be after the topics in its level
+        assertThat(topicNodes, is(Arrays.<ITopicNode>asList(topic1, topic3, infoTopic, topic2, legalNotice)));
+    }
+
+    @Test
+    public void shouldIncludeProcessTopicsWhenGettingAllTopics() {
+        // Given a content spec with a chapter that has a topic and a process
+        final Chapter chapter = new Chapter("Chapter 1");
+        final Process process = new Process("Process 1");
+        final SpecTopic topic1 = new SpecTopic(1, "Topic 1");
+        final SpecTopic topic2 = new SpecTopic(2, "Topic 2");
+        final SpecTopic topic3 = new SpecTopic(3, "Topic 3");
+        topic2.setUniqueId("L2-2");
+        topic3.setUniqueId("L3-3");
+        chapter.appendChild(process);
+        chapter.appendSpecTopic(topic1);
+        process.appendSpecTopic(topic2);
+        process.appendSpecTopic(topic3);
+        contentSpec.appendChapter(chapter);
+
+        // When getting the spec topics and topic nodes
+        final List<SpecTopic> specTopics = contentSpec.getSpecTopics();
+        final List<ITopicNode> topicNodes = contentSpec.getAllTopicNodes();
+
+        // Then the process topics should be included after the chapters topics, in the order they were added to the process
+        assertThat(specTopics, is(Arrays.asList(topic1, topic2, topic3)));
+        assertThat(topicNodes, is(Arrays.<ITopicNode>asList(topic1, topic2, topic3)));
+    }
+
+    @Test
+    public void shouldCalculateChecksumFromIdAndContent() {
+        // Given a content spec with an id and some content
+        contentSpec.setId(1);
+        contentSpec.setTitle("Test Title");
+        final Chapter chapter = new Chapter("Chapter 1");
+        chapter.appendSpecTopic(new SpecTopic(1, "Topic 1"));
+        contentSpec.appendChapter(chapter);
+
+        // When calculating the checksum
+        final String checksum = contentSpec.calculateChecksum();
+
+        // Then the checksum should be the hash of the content spec without the checksum
+        final String contentSpecString = contentSpec.toString(false);
+        assertThat(checksum, is(HashUtilities.generateMD5(contentSpecString)));
+        // and the checksum should be included at the start of the content spec
+        assertThat(contentSpec.toString(true), is(CommonConstants.CS_CHECKSUM_TITLE + " = " + checksum + "\n" + contentSpecString));
+    }
 }
@@ -0,0 +1,150 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class NodeIteratorTest extends BaseUnitTest {
+    private Level baseLevel;
+    private SpecTopic topic1;
+    private SpecTopic topic2;
+    private SpecTopic topic3;
+    private SpecTopic topic4;
+    private Chapter chapter;
+    private Section section;
+    private InfoTopic infoTopic;
+
+    @Before
+    public void setUp() {
+        // Create a level tree of:
+        // Topic 1
+        // Chapter 1 (with an info topic)
+        //   Topic 2
+        //   Section 1
+        //     Topic 3
+        //   Topic 4
+        baseLevel = new ContentSpec().getBaseLevel();
+        topic1 = new SpecTopic(1, "Topic 1");
+        topic2 = new SpecTopic(2, "Topic 2");
+        topic3 = new SpecTopic(3, "Topic 3");
+        topic4 = new SpecTopic(4, "Topic 4");
+        chapter = new Chapter("Chapter 1");
+        section = new Section("Section 1");
+        infoTopic = new InfoTopic(5, chapter);
+
+        baseLevel.appendSpecTopic(topic1);
+        baseLevel.appendChild(chapter);
+        chapter.setInfoTopic(infoTopic);
+        chapter.appendSpecTopic(topic2);
+        chapter.appendChild(new Comment("A comment"));
+        chapter.appendChild(section);
+        section.appendSpecTopic(topic3);
+        chapter.appendSpecTopic(topic4);
+    }
+
+    @Test
+    public void shouldIterateOverNodesInDocumentOrder() {
+        // Given an iterator over the spec topics
+        final NodeIterator<SpecTopic> iterator = new NodeIterator<SpecTopic>(baseLevel, SpecTopic.class);
+
+        // When iterating over the nodes
+        final List<SpecTopic> specTopics = toList(iterator);
+
+        // Then the topics should be in document order
+        assertThat(specTopics, is(Arrays.asList(topic1, topic2, topic3, topic4)));
+    }
+
+    @Test
+    public void shouldOnlyReturnNodesOfTheRequestedType() {
+        // Given an iterator over the levels
+        final NodeIterator<Level> iterator = new NodeIterator<Level>(baseLevel, Level.class);
+
+        // When iterating over the nodes
+        final List<Level> levels = toList(iterator);
+
+        // Then only the child levels should be returned, and not the level being iterated over
+        assertThat(levels, is(Arrays.<Level>asList(chapter, section)));
+    }
+
+    @Test
+    public void shouldIncludeInfoTopicsDirectlyAfterTheirLevel() {
+        // Given an iterator over the topic nodes that includes info topics
+        final NodeIterator<ITopicNode> iterator = new NodeIterator<ITopicNode>(baseLevel, ITopicNode.class, true);
+
+        // When iterating over the nodes
+        final List<ITopicNode> topicNodes = toList(iterator);
+
+        // Then the info topic should be directly after the topics before its level
+        assertThat(topicNodes, is(Arrays.<ITopicNode>asList(topic1, infoTopic, topic2, topic3, topic4)));
+    }
+
+    @Test
+    public void shouldNotIncludeInfoTopicsByDefault() {
+        // Given an iterator over the topic nodes
+        final NodeIterator<ITopicNode> iterator = new NodeIterator<ITopicNode>(baseLevel, ITopicNode.class);
+
+        // When iterating over the nodes
+        final List<ITopicNode> topicNodes = toList(iterator);
+
+        // Then the info topic should not be included
+        assertThat(topicNodes, is(Arrays.<ITopicNode>asList(topic1, topic2, topic3, topic4)));
+    }
+
+    @Test
+    public void shouldIterateOverAnEmptyLevel() {
+        // Given an iterator over a level with no children
+        final NodeIterator<SpecTopic> iterator = new NodeIterator<SpecTopic>(new Chapter("Empty"), SpecTopic.class, true);
+
+        // When checking if there are any nodes
+        final boolean hasNext = iterator.hasNext();
+
+        // Then there should be no nodes
+        assertThat(hasNext, is(false));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void shouldThrowNoSuchElementExceptionWhenIteratingPastTheEnd() {
+        // Given an iterator that has been fully iterated over
+        final NodeIterator<SpecTopic> iterator = new NodeIterator<SpecTopic>(section, SpecTopic.class);
+        iterator.next();
+
+        // When getting the next node
+        iterator.next();
+
+        // Then a NoSuchElementException should be thrown
+    }
+
+    private <T> List<T> toList(final Iterable<T> iterable) {
+        final List<T> list = new ArrayList<T>();
+        for (final T item : iterable) {
+            list.add(item);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpecNodeIndexTest extends BaseUnitTest {
+    private ContentSpec contentSpec;
+    private Chapter chapter1;
+    private Chapter chapter2;
+    private Section section;
+
+    @Before
+    public void setUp() {
+        contentSpec = new ContentSpec();
+        chapter1 = new Chapter("Chapter 1");
+        chapter2 = new Chapter("Chapter 2");
+        section = new Section("Section 1");
+        contentSpec.appendChapter(chapter1);
+        contentSpec.appendChapter(chapter2);
+        chapter2.appendChild(section);
+    }
+
+    @Test
+    public void shouldFindTheClosestTopicWhenATopicIsUsedMoreThanOnce() {
+        // Given a topic that is used in the first chapter and in a section of the second chapter
+        final SpecTopic chapter1Topic = new SpecTopic(5, "Topic 5");
+        final SpecTopic sectionTopic = new SpecTopic(5, "Topic 5");
+        chapter1.appendSpecTopic(chapter1Topic);
+        section.appendSpecTopic(sectionTopic);
+        final SpecTopic searchTopic = new SpecTopic(5, "Topic 5");
+
+        // When finding the closest topic from the second chapter
+        final SpecTopic result = chapter2.getClosestTopic(searchTopic, true);
+        final SpecTopic resultByDBId = chapter2.getClosestTopicByDBId(5, true);
+
+        // Then the topic in the section should be found, since it's closer than the one in the first chapter
+        assertThat(result, sameInstance(sectionTopic));
+        assertThat(resultByDBId, sameInstance(sectionTopic));
+        // and the result should match searching the levels recursively
+        assertThat(chapter2.getClosestTopic(searchTopic, chapter2, true), sameInstance(result));
+        assertThat(chapter2.getClosestTopicByDBId(5, chapter2, true), sameInstance(resultByDBId));
+    }
+
+    @Test
+    public void shouldFindTopicsDirectlyInALevelBeforeTopicsInChildLevels() {
+        // Given a topic that is used in a section, and then twice directly in the same chapter
+        final SpecTopic sectionTopic = new SpecTopic(5, "Topic 5");
+        final SpecTopic chapterTopic1 = new SpecTopic(5, "Topic 5");
+        final SpecTopic chapterTopic2 = new SpecTopic(5, "Topic 5");
+        section.appendSpecTopic(sectionTopic);
+        chapter2.appendSpecTopic(chapterTopic1);
+        chapter2.appendSpecTopic(chapterTopic2);
+
+        // When finding the closest topic from the second chapter
+        final SpecTopic result = chapter2.getClosestTopicByDBId(5, true);
+
+        // Then the first topic directly in the chapter should be found
+        assertThat(result, sameInstance(chapterTopic1));
+        assertThat(chapter2.getClosestTopicByDBId(5, chapter2, true), sameInstance(result));
+    }
+
+    @Test
+    public void shouldNotFindTopicsOutsideTheLevelWhenNotCheckingParents() {
+        // Given a topic that is only used in the first chapter
+        final SpecTopic chapter1Topic = new SpecTopic(5, "Topic 5");
+        chapter1.appendSpecTopic(chapter1Topic);
+
+        // When finding the closest topic from the second chapter, with and without checking the parent levels
+        final SpecTopic result = chapter2.getClosestTopicByDBId(5, false);
+        final SpecTopic parentResult = chapter2.getClosestTopicByDBId(5, true);
+
+        // Then the topic should only be found when checking the parent levels
+        assertThat(result, is(nullValue()));
+        assertThat(parentResult, sameInstance(chapter1Topic));
+    }
+
+    @Test
+    public void shouldReindexTopicsWhenTheirIdsChange() {
+        // Given a topic in a content spec that has been indexed
+        final SpecTopic specTopic = new SpecTopic(5, "Topic 5");
+        section.appendSpecTopic(specTopic);
+        assertThat(contentSpec.getBaseLevel().getClosestTopicByDBId(5, false), sameInstance(specTopic));
+
+        // When the database id is changed
+        specTopic.setDBId(6);
+
+        // Then the topic should only be found using the new database id
+        assertThat(contentSpec.getBaseLevel().getClosestTopicByDBId(5, false), is(nullValue()));
+        assertThat(contentSpec.getBaseLevel().getClosestTopicByDBId(6, false), sameInstance(specTopic));
+
+        // and when the id is changed
+        specTopic.setId("7");
+
+        // Then the topic should only be found using the new id and database id
+        assertThat(contentSpec.getBaseLevel().getClosestTopic(new SpecTopic(5, "Topic 5"), false), is(nullValue()));
+        assertThat(contentSpec.getBaseLevel().getClosestTopic(new SpecTopic(7, "Topic 7"), false), sameInstance(specTopic));
+        assertThat(contentSpec.getBaseLevel().getClosestTopicByDBId(6, false), is(nullValue()));
+        assertThat(contentSpec.getBaseLevel().getClosestTopicByDBId(7, false), sameInstance(specTopic));
+    }
+
+    @Test
+    public void shouldReindexNodesWhenTheirTargetIdsChange() {
+        // Given a topic and a level in a content spec that has been indexed
+        final SpecTopic specTopic = new SpecTopic(5, "Topic 5");
+        section.appendSpecTopic(specTopic);
+        specTopic.setTargetId("T-Topic");
+        assertThat(contentSpec.getBaseLevel().getClosestSpecNodeByTargetId("T-Topic", false), sameInstance((SpecNode) specTopic));
+
+        // When the target ids are changed
+        specTopic.setTargetId("T-Topic2");
+        section.setTargetId("T-Section");
+
+        // Then the nodes should only be found using the new target ids
+        assertThat(contentSpec.getBaseLevel().getClosestSpecNodeByTargetId("T-Topic", false), is(nullValue()));
+        assertThat(contentSpec.getBaseLevel().getClosestSpecNodeByTargetId("T-Topic2", false), sameInstance((SpecNode) specTopic));
+        assertThat(contentSpec.getBaseLevel().getClosestSpecNodeByTargetId("T-Section", false), sameInstance((SpecNode) section));
+    }
+
+    @Test
+    public void shouldRemoveNodesFromTheIndexWhenTheyAreRemovedFromALevel() {
+        // Given a topic in a content spec that has been indexed
+        final SpecTopic specTopic = new SpecTopic(5, "Topic 5");
+        section.appendSpecTopic(specTopic);
+        assertThat(contentSpec.getBaseLevel().getClosestTopicByDBId(5, false), sameInstance(specTopic));
+
+        // When the section is removed from the chapter
+        chapter2.removeChild(section);
+
+        // Then the topic should no longer be found
+        assertThat(contentSpec.getBaseLevel().getClosestTopicByDBId(5, false), is(nullValue()));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.jboss.pressgang.ccms.contentspec.entities.Relationship;
+import org.jboss.pressgang.ccms.contentspec.entities.TargetRelationship;
+import org.jboss.pressgang.ccms.contentspec.entities.TopicRelationship;
+import org.jboss.pressgang.ccms.contentspec.enums.RelationshipType;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpecTopicTest extends BaseUnitTest {
+    private SpecTopic specTopic;
+    private SpecTopic relatedTopic;
+    private SpecTopic relatedTarget;
+    private SpecTopic nextTopic;
+    private Level relatedLevel;
+
+    @Before
+    public void setUp() {
+        specTopic = new SpecTopic(1, "Topic 1");
+        relatedTopic = new SpecTopic(2, "Topic 2");
+        relatedTarget = new SpecTopic(3, "Topic 3");
+        nextTopic = new SpecTopic(4, "Topic 4");
+        relatedLevel = new Chapter("Chapter 1");
+    }
+
+    @Test
+    public void shouldOrderTopicRelationshipsBeforeTopicTargetRelationships() {
+        // Given a topic with a topic target relationship added before a topic relationship
+        specTopic.addRelationshipToTarget(relatedTarget, RelationshipType.REFER_TO);
+        specTopic.addRelationshipToTopic(relatedTopic, RelationshipType.REFER_TO);
+        specTopic.addRelationshipToTopic(nextTopic, RelationshipType.NEXT);
+
+        // When getting the topic relationships
+        final List<TopicRelationship> relationships = specTopic.getTopicRelationships();
+        final List<TopicRelationship> relatedRelationships = specTopic.getRelatedTopicRelationships();
+
+        // Then the topic relationships should be first, followed by the topic target relationships
+        assertThat(relationships.size(), is(3));
+        assertThat(relationships.get(0).getSecondaryRelationship(), is(relatedTopic));
+        assertThat(relationships.get(1).getSecondaryRelationship(), is(nextTopic));
+        assertThat(relationships.get(2).getSecondaryRelationship(), is(relatedTarget));
+        // and the related relationships should only contain the related topics in the same order
+        assertThat(relatedRelationships.size(), is(2));
+        assertThat(relatedRelationships.get(0).getSecondaryRelationship(), is(relatedTopic));
+        assertThat(relatedRelationships.get(1).getSecondaryRelationship(), is(relatedTarget));
+        assertThat(specTopic.getNextTopicRelationships().size(), is(1));
+        assertThat(specTopic.getPrevTopicRelationships().isEmpty(), is(true));
+        // and all the relationships should be in the order they were added
+        final List<Relationship> allRelationships = specTopic.getRelationships();
+        assertThat(allRelationships.size(), is(3));
+        assertThat(allRelationships.get(0).getType(), is(RelationshipType.REFER_TO));
+        assertThat(allRelationships.get(2).getType(), is(RelationshipType.NEXT));
+    }
+
+    @Test
+    public void shouldOrderLevelRelationshipsBeforeTopicTargetRelationships() {
+        // Given a topic with a topic target relationship added before a level relationship
+        specTopic.addRelationshipToTarget(relatedTarget, RelationshipType.PREREQUISITE);
+        specTopic.addRelationshipToTarget(relatedLevel, RelationshipType.PREREQUISITE);
+
+        // When getting the target relationships
+        final List<TargetRelationship> relationships = specTopic.getTargetRelationships();
+
+        // Then the level relationship should be first
+        assertThat(relationships.size(), is(2));
+        assertThat(relationships.get(0).getSecondaryRelationship(), is((SpecNode) relatedLevel));
+        assertThat(relationships.get(1).getSecondaryRelationship(), is((SpecNode) relatedTarget));
+        // and the level relationships should only contain the level
+        assertThat(specTopic.getPrerequisiteLevelRelationships().size(), is(1));
+        assertThat(specTopic.getPrerequisiteRelationships().size(), is(2));
+    }
+
+    @Test
+    public void shouldReturnReadOnlyRelationships() {
+        // Given a topic with a relationship
+        specTopic.addRelationshipToTopic(relatedTopic, RelationshipType.REFER_TO);
+
+        // When trying to modify the relationships
+        try {
+            specTopic.getRelatedRelationships().clear();
+            fail("The related relationships should be read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            specTopic.getTopicRelationships().clear();
+            fail("The topic relationships should be read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            specTopic.getLinkListRelationships().add(null);
+            fail("Empty relationship lists should be read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        // Then the relationships should be unchanged
+        assertThat(specTopic.getRelationships().size(), is(1));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.buglinks;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.jboss.pressgang.ccms.contentspec.BaseUnitTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BugLinkStrategyFactoryTest extends BaseUnitTest {
+    private static final String SERVER_URL = "https://bugs.example.com/";
+
+    private BugLinkStrategyFactory factory;
+
+    @Before
+    public void setUp() {
+        factory = BugLinkStrategyFactory.getInstance();
+        factory.clearPooledStrategies();
+    }
+
+    @After
+    public void tearDown() {
+        factory.clearPooledStrategies();
+    }
+
+    @Test
+    public void shouldReturnTheSamePooledStrategyForTheSameTypeAndUrl() {
+        // Given a pooled strategy has already been requested
+        final BaseBugLinkStrategy<?> strategy = factory.getPooledStrategy(BugLinkType.OTHER, SERVER_URL);
+
+        // When getting the pooled strategy again
+        final BaseBugLinkStrategy<?> result = factory.getPooledStrategy(BugLinkType.OTHER, SERVER_URL);
+
+        // Then the same instance should be returned
+        assertThat(strategy, instanceOf(DefaultBugLinkHelper.class));
+        assertThat(result, sameInstance((Object) strategy));
+    }
+
+    @Test
+    public void shouldReturnADifferentPooledStrategyForADifferentUrl() {
+        // Given a pooled strategy has already been requested
+        final BaseBugLinkStrategy<?> strategy = factory.getPooledStrategy(BugLinkType.OTHER, SERVER_URL);
+
+        // When getting a pooled strategy for a different server url
+        final BaseBugLinkStrategy<?> result = factory.getPooledStrategy(BugLinkType.OTHER, "https://issues.example.com/");
+
+        // Then a different instance should be returned
+        assertThat(result, not(sameInstance((Object) strategy)));
+    }
+
+    @Test
+    public void shouldIncludeTheAdditionalArgumentsWhenPoolingStrategies() {
+        // Given a pooled strategy has already been requested with some additional arguments
+        final BaseBugLinkStrategy<?> strategy = factory.getPooledStrategy(BugLinkType.OTHER, SERVER_URL, "arg");
+
+        // When getting the pooled strategy with equal, different and no arguments
+        final BaseBugLinkStrategy<?> sameArgsResult = factory.getPooledStrategy(BugLinkType.OTHER, SERVER_URL, new String("arg"));
+        final BaseBugLinkStrategy<?> differentArgsResult = factory.getPooledStrategy(BugLinkType.OTHER, SERVER_URL, "other");
+        final BaseBugLinkStrategy<?> noArgsResult = factory.getPooledStrategy(BugLinkType.OTHER, SERVER_URL);
+
+        // Then only the equal arguments should return the same instance
+        assertThat(sameArgsResult, sameInstance((Object) strategy));
+        assertThat(differentArgsResult, not(sameInstance((Object) strategy)));
+        assertThat(noArgsResult, not(sameInstance((Object) strategy)));
+        assertThat(noArgsResult, not(sameInstance((Object) differentArgsResult)));
+    }
+
+    @Test
+    public void shouldCreateANewPooledStrategyAfterThePoolIsCleared() {
+        // Given a pooled strategy has already been requested
+        final BaseBugLinkStrategy<?> strategy = factory.getPooledStrategy(BugLinkType.OTHER, SERVER_URL);
+
+        // When the pool is cleared and the strategy is requested again
+        factory.clearPooledStrategies();
+        final BaseBugLinkStrategy<?> result = factory.getPooledStrategy(BugLinkType.OTHER, SERVER_URL);
+
+        // Then a new instance should be returned
+        assertThat(result, not(sameInstance((Object) strategy)));
+        assertThat(factory.getPooledStrategy(BugLinkType.OTHER, SERVER_URL), sameInstance((Object) result));
+    }
+}
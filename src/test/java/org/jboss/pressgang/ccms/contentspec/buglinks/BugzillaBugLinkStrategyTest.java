@@ -0,0 +1,334 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.buglinks;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.j2bugzilla.base.BugzillaConnector;
+import com.j2bugzilla.base.ConnectionException;
+import com.j2bugzilla.base.Product;
+import org.jboss.pressgang.ccms.contentspec.BaseUnitTest;
+import org.jboss.pressgang.ccms.contentspec.SpecTopic;
+import org.jboss.pressgang.ccms.wrapper.TopicWrapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class BugzillaBugLinkStrategyTest extends BaseUnitTest {
+    @Mock BugzillaConnector connector;
+    @Mock Product product;
+    @Mock TopicWrapper topic;
+
+    private TestBugzillaBugLinkStrategy strategy;
+
+    @Before
+    public void setUp() {
+        strategy = new TestBugzillaBugLinkStrategy();
+        strategy.initialise("https://bugzilla.example.com/");
+    }
+
+    @Test
+    public void shouldNotBeConnectedWhenTheConnectionFails() throws Exception {
+        // Given a connector that fails to connect the first time
+        willThrow(mock(ConnectionException.class)).willNothing().given(connector).connectTo(anyString());
+
+        // When validating
+        try {
+            strategy.validate(new BugzillaBugLinkOptions());
+            fail("Validation should have failed, since the connection failed.");
+        } catch (RuntimeException e) {
+            // Then the connection failure should be thrown
+            assertThat(e.getCause() instanceof ConnectionException, is(true));
+        }
+
+        // and the connection should be attempted again, until it succeeds
+        strategy.validate(new BugzillaBugLinkOptions());
+        strategy.validate(new BugzillaBugLinkOptions());
+        verify(connector, times(2)).connectTo("https://bugzilla.example.com/");
+    }
+
+    @Test
+    public void shouldCacheProductsWhileTheyHaveNotExpired() throws Exception {
+        // Given a product that exists
+        strategy.product = product;
+
+        // When looking up the product twice
+        final Product result = strategy.getBugzillaProduct("Product");
+        final Product result2 = strategy.getBugzillaProduct("Product");
+
+        // Then the product should only be looked up once
+        assertThat(result, sameInstance(product));
+        assertThat(result2, sameInstance(product));
+        assertThat(strategy.productLookups, is(1));
+    }
+
+    @Test
+    public void shouldLookupProductsAgainOnceTheyHaveExpired() throws Exception {
+        // Given a product that exists
+        strategy.product = product;
+        // and the cached details expire straight away
+        strategy.setCacheTTL(-1, TimeUnit.MILLISECONDS);
+
+        // When looking up the product twice
+        strategy.getBugzillaProduct("Product");
+        strategy.getBugzillaProduct("Product");
+
+        // Then the product should be looked up both times
+        assertThat(strategy.productLookups, is(2));
+    }
+
+    @Test
+    public void shouldLookupProductsAgainOnceTheCacheIsInvalidated() throws Exception {
+        // Given a product that has already been looked up
+        strategy.product = product;
+        strategy.getBugzillaProduct("Product");
+
+        // When the cache is invalidated and the product is looked up again
+        strategy.invalidateCache();
+        strategy.getBugzillaProduct("Product");
+
+        // Then the product should be looked up both times
+        assertThat(strategy.productLookups, is(2));
+    }
+
+    @Test
+    public void shouldNotCacheMissingProducts() throws Exception {
+        // Given a product that doesn't exist
+        strategy.product = null;
+
+        // When looking up the product twice
+        final Product result = strategy.getBugzillaProduct("Product");
+        strategy.getBugzillaProduct("Product");
+
+        // Then the product should be looked up both times
+        assertThat(result, nullValue());
+        assertThat(strategy.productLookups, is(2));
+    }
+
+    @Test
+    public void shouldCacheKeywordsWhileTheyHaveNotExpired() throws Exception {
+        // Given some keywords that exist
+
+        // When looking up the keywords twice
+        final Set<String> result = strategy.getBugzillaKeywords();
+        strategy.getBugzillaKeywords();
+
+        // Then the keywords should only be looked up once
+        assertThat(result, is(strategy.keywords));
+        assertThat(strategy.keywordLookups, is(1));
+    }
+
+    @Test
+    public void shouldLookupKeywordsAgainOnceTheyHaveExpired() throws Exception {
+        // Given the cached details expire straight away
+        strategy.setCacheTTL(-1, TimeUnit.MILLISECONDS);
+
+        // When looking up the keywords twice
+        strategy.getBugzillaKeywords();
+        strategy.getBugzillaKeywords();
+
+        // Then the keywords should be looked up both times
+        assertThat(strategy.keywordLookups, is(2));
+    }
+
+    @Test
+    public void shouldLookupKeywordsAgainOnceTheCacheIsInvalidated() throws Exception {
+        // Given the keywords have already been looked up
+        strategy.getBugzillaKeywords();
+
+        // When the cache is invalidated and the keywords are looked up again
+        strategy.invalidateCache();
+        strategy.getBugzillaKeywords();
+
+        // Then the keywords should be looked up both times
+        assertThat(strategy.keywordLookups, is(2));
+    }
+
+    @Test
+    public void shouldGenerateTheSameUrlAsWithoutATemplate() throws Exception {
+        // Given some bug options and a topic
+        final BugzillaBugLinkOptions options = createBugOptions();
+        options.setUseEntities(false);
+        final SpecTopic specTopic = createSpecTopic();
+        final Date buildDate = new Date(1000L);
+
+        // When generating the url using a template
+        final String result = strategy.generateUrl(options, specTopic, "Build", buildDate);
+
+        // Then the url should match the url generated without a template
+        assertThat(result, is(generateUrlWithoutTemplate(options, specTopic, "Build", buildDate)));
+    }
+
+    @Test
+    public void shouldGenerateTheSameUrlAsWithoutATemplateWhenUsingEntities() throws Exception {
+        // Given some bug options that use entities and a topic
+        final BugzillaBugLinkOptions options = createBugOptions();
+        options.setUseEntities(true);
+        final SpecTopic specTopic = createSpecTopic();
+        specTopic.setRevision(5);
+        final Date buildDate = new Date(1000L);
+
+        // When generating the url using a template
+        final String result = strategy.generateUrl(options, specTopic, "Build", buildDate);
+
+        // Then the url should match the url generated without a template
+        assertThat(result, is(generateUrlWithoutTemplate(options, specTopic, "Build", buildDate)));
+    }
+
+    @Test
+    public void shouldReuseTheTemplateForTheSameOptionsAndBuild() throws Exception {
+        // Given a template that has already been created
+        final BugzillaBugLinkOptions options = createBugOptions();
+        final BaseBugLinkStrategy.BugLinkTemplate template = strategy.getTemplate(options, "Build", new Date(1000L));
+
+        // When getting the template for equal options, build name and build date
+        final BaseBugLinkStrategy.BugLinkTemplate result = strategy.getTemplate(createBugOptions(), "Build", new Date(1000L));
+
+        // Then the same template should be returned
+        assertThat(result, sameInstance(template));
+    }
+
+    @Test
+    public void shouldRebuildTheTemplateWhenTheOptionsChange() throws Exception {
+        // Given a template that has already been created
+        final BugzillaBugLinkOptions options = createBugOptions();
+        final BaseBugLinkStrategy.BugLinkTemplate template = strategy.getTemplate(options, "Build", new Date(1000L));
+
+        // When the options are changed and the template is requested again
+        options.setVersion("2.0");
+        final BaseBugLinkStrategy.BugLinkTemplate result = strategy.getTemplate(options, "Build", new Date(1000L));
+
+        // Then a new template should be created from the changed options
+        assertThat(result, not(sameInstance(template)));
+        assertThat(result.getEncodedStaticParameters(), is(strategy.compileStaticUrlParameters(options)));
+    }
+
+    @Test
+    public void shouldRebuildTheTemplateWhenTheBuildNameChanges() throws Exception {
+        // Given a template that has already been created
+        final BugzillaBugLinkOptions options = createBugOptions();
+        final BaseBugLinkStrategy.BugLinkTemplate template = strategy.getTemplate(options, "Build", new Date(1000L));
+
+        // When the template is requested for a different build name
+        final BaseBugLinkStrategy.BugLinkTemplate result = strategy.getTemplate(options, "Build 2", new Date(1000L));
+
+        // Then a new template should be created
+        assertThat(result, not(sameInstance(template)));
+        assertThat(result.getEncodedBaseEnvironment(false), is(URLEncoder.encode(strategy.buildBaseEnvironment(options, "Build 2",
+                new Date(1000L)).toString(), "UTF-8")));
+    }
+
+    @Test
+    public void shouldRebuildTheTemplateWhenTheBuildDateChanges() throws Exception {
+        // Given a template that has already been created
+        final BugzillaBugLinkOptions options = createBugOptions();
+        final BaseBugLinkStrategy.BugLinkTemplate template = strategy.getTemplate(options, "Build", new Date(1000L));
+
+        // When the template is requested for a different build date
+        final BaseBugLinkStrategy.BugLinkTemplate result = strategy.getTemplate(options, "Build", new Date(2000L));
+
+        // Then a new template should be created
+        assertThat(result, not(sameInstance(template)));
+        assertThat(result.getEncodedBaseEnvironment(false), is(URLEncoder.encode(strategy.buildBaseEnvironment(options, "Build",
+                new Date(2000L)).toString(), "UTF-8")));
+    }
+
+    private BugzillaBugLinkOptions createBugOptions() {
+        final BugzillaBugLinkOptions options = new BugzillaBugLinkOptions();
+        options.setProduct("Product");
+        options.setComponent("Documentation");
+        options.setVersion("1.0");
+        options.setKeywords("Documentation, Triaged");
+        return options;
+    }
+
+    private SpecTopic createSpecTopic() {
+        given(topic.getTitle()).willReturn("Topic & Title");
+        given(topic.getTopicId()).willReturn(10);
+        given(topic.getTopicRevision()).willReturn(5);
+
+        final SpecTopic specTopic = new SpecTopic(10, "Topic & Title");
+        specTopic.setTopic(topic);
+        return specTopic;
+    }
+
+    /**
+     * Generates a url the same way as it was generated before bug link templates were used.
+     */
+    private String generateUrlWithoutTemplate(final BugzillaBugLinkOptions options, final SpecTopic specTopic, final String buildName,
+            final Date buildDate) throws UnsupportedEncodingException {
+        final String revisionType = specTopic.getRevision() == null ? " [Latest]" : " [Specified]";
+        final String description = URLEncoder.encode(String.format(BugzillaBugLinkStrategy.BUGZILLA_DESCRIPTION_TEMPLATE,
+                topic.getTitle()), "UTF-8");
+        final StringBuilder environment = strategy.buildBaseEnvironment(options, buildName, buildDate);
+        environment.append("\nTopic ID: ").append(topic.getTopicId()).append("-").append(topic.getTopicRevision()).append(
+                revisionType);
+
+        String encodedEnvironment = URLEncoder.encode(environment.toString(), "UTF-8");
+        if (options.isUseEntities()) {
+            encodedEnvironment = strategy.addBuildNameAndDateEntities(encodedEnvironment);
+        }
+
+        return strategy.generateUrl(options, topic.getBugzillaBuildId() + revisionType, description, encodedEnvironment, null);
+    }
+
+    private class TestBugzillaBugLinkStrategy extends BugzillaBugLinkStrategy {
+        Product product;
+        Set<String> keywords = new HashSet<String>(Arrays.asList("Documentation", "Triaged"));
+        int productLookups = 0;
+        int keywordLookups = 0;
+
+        @Override
+        protected BugzillaConnector createConnector() {
+            return connector;
+        }
+
+        @Override
+        protected Product lookupBugzillaProduct(final String productName) {
+            productLookups++;
+            return product;
+        }
+
+        @Override
+        protected Set<String> lookupBugzillaKeywords() {
+            keywordLookups++;
+            return keywords;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.buglinks;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.pressgang.ccms.contentspec.BaseUnitTest;
+import org.jboss.pressgang.ccms.contentspec.SpecTopic;
+import org.jboss.pressgang.ccms.jira.rest.JIRARESTInterface;
+import org.jboss.pressgang.ccms.jira.rest.entities.component.JIRAComponent;
+import org.jboss.pressgang.ccms.jira.rest.entities.project.JIRAProject;
+import org.jboss.pressgang.ccms.jira.rest.entities.version.JIRAVersion;
+import org.jboss.pressgang.ccms.wrapper.TopicWrapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class JIRABugLinkStrategyTest extends BaseUnitTest {
+    @Mock JIRARESTInterface client;
+    @Mock JIRAProject project;
+    @Mock JIRAProject project2;
+    @Mock JIRAComponent component;
+    @Mock JIRAVersion version;
+    @Mock TopicWrapper topic;
+
+    private TestJIRABugLinkStrategy strategy;
+
+    @Before
+    public void setUp() {
+        strategy = new TestJIRABugLinkStrategy();
+        strategy.setServerUrl("https://issues.example.com/");
+        given(client.getProject("PROJ")).willReturn(project);
+        given(client.getProject("OTHER")).willReturn(project2);
+    }
+
+    @Test
+    public void shouldCacheProjectsWhileTheyHaveNotExpired() {
+        // Given a project that exists
+
+        // When getting the project twice
+        final JIRAProject result = strategy.getJIRAProject(client, "PROJ");
+        final JIRAProject result2 = strategy.getJIRAProject(client, "PROJ");
+
+        // Then the project should only be looked up once
+        assertThat(result, sameInstance(project));
+        assertThat(result2, sameInstance(project));
+        verify(client, times(1)).getProject("PROJ");
+    }
+
+    @Test
+    public void shouldLookupProjectsAgainOnceTheyHaveExpired() {
+        // Given the cached details expire straight away
+        strategy.setCacheTTL(-1, TimeUnit.MILLISECONDS);
+
+        // When getting the project twice
+        strategy.getJIRAProject(client, "PROJ");
+        strategy.getJIRAProject(client, "PROJ");
+
+        // Then the project should be looked up both times
+        verify(client, times(2)).getProject("PROJ");
+    }
+
+    @Test
+    public void shouldCacheMissingProjects() {
+        // Given a project that doesn't exist
+        given(client.getProject("MISSING")).willReturn(null);
+        given(client.getProjects()).willReturn(new ArrayList<JIRAProject>());
+
+        // When getting the project twice
+        final JIRAProject result = strategy.getJIRAProject(client, "MISSING");
+        final JIRAProject result2 = strategy.getJIRAProject(client, "MISSING");
+
+        // Then no project should be returned
+        assertThat(result, nullValue());
+        assertThat(result2, nullValue());
+        // and the project should only be looked up once
+        verify(client, times(1)).getProject("MISSING");
+        verify(client, times(1)).getProjects();
+    }
+
+    @Test
+    public void shouldLookupAllProjectsAgainOnceTheCacheIsInvalidated() {
+        // Given some projects that have already been looked up
+        strategy.getJIRAProject(client, "PROJ");
+        strategy.getJIRAProject(client, "OTHER");
+
+        // When the cache is invalidated and the projects are looked up again
+        strategy.invalidateCache();
+        strategy.getJIRAProject(client, "PROJ");
+        strategy.getJIRAProject(client, "OTHER");
+
+        // Then the projects should be looked up both times
+        verify(client, times(2)).getProject("PROJ");
+        verify(client, times(2)).getProject("OTHER");
+    }
+
+    @Test
+    public void shouldOnlyLookupTheInvalidatedProjectAgain() {
+        // Given some projects that have already been looked up
+        strategy.getJIRAProject(client, "PROJ");
+        strategy.getJIRAProject(client, "OTHER");
+
+        // When the cache is invalidated for a single project and the projects are looked up again
+        strategy.invalidateCache("PROJ");
+        strategy.getJIRAProject(client, "PROJ");
+        strategy.getJIRAProject(client, "OTHER");
+
+        // Then only the invalidated project should be looked up again
+        verify(client, times(2)).getProject("PROJ");
+        verify(client, times(1)).getProject("OTHER");
+    }
+
+    @Test
+    public void shouldCacheComponentsAndVersionsWhileTheProjectHasNotExpired() {
+        // Given a project that has already been looked up
+        strategy.getCachedJIRAProject(client, "PROJ");
+
+        // When getting a component and version twice
+        final JIRABugLinkStrategy.CachedJIRAProject cachedProject = strategy.getCachedJIRAProject(client, "PROJ");
+        final JIRAComponent componentResult = cachedProject.getComponent("Component");
+        cachedProject.getComponent("Component");
+        final JIRAVersion versionResult = cachedProject.getVersion("1.0");
+        cachedProject.getVersion("1.0");
+
+        // Then the component and version should only be looked up once
+        assertThat(componentResult, sameInstance(component));
+        assertThat(versionResult, sameInstance(version));
+        assertThat(strategy.componentLookups, is(1));
+        assertThat(strategy.versionLookups, is(1));
+    }
+
+    @Test
+    public void shouldLookupComponentsAndVersionsAgainOnceTheProjectHasExpired() {
+        // Given the cached details expire straight away
+        strategy.setCacheTTL(-1, TimeUnit.MILLISECONDS);
+        // and a component and version that have already been looked up
+        strategy.getCachedJIRAProject(client, "PROJ").getComponent("Component");
+        strategy.getCachedJIRAProject(client, "PROJ").getVersion("1.0");
+
+        // When getting the component and version again
+        final JIRABugLinkStrategy.CachedJIRAProject cachedProject = strategy.getCachedJIRAProject(client, "PROJ");
+        cachedProject.getComponent("Component");
+        cachedProject.getVersion("1.0");
+
+        // Then the component and version should be looked up again
+        assertThat(strategy.componentLookups, is(2));
+        assertThat(strategy.versionLookups, is(2));
+    }
+
+    @Test
+    public void shouldLookupComponentsAndVersionsAgainOnceTheCacheIsInvalidated() {
+        // Given a component and version that have already been looked up
+        strategy.getCachedJIRAProject(client, "PROJ").getComponent("Component");
+        strategy.getCachedJIRAProject(client, "PROJ").getVersion("1.0");
+
+        // When the cache is invalidated and the component and version are looked up again
+        strategy.invalidateCache();
+        final JIRABugLinkStrategy.CachedJIRAProject cachedProject = strategy.getCachedJIRAProject(client, "PROJ");
+        cachedProject.getComponent("Component");
+        cachedProject.getVersion("1.0");
+
+        // Then the component and version should be looked up again
+        assertThat(strategy.componentLookups, is(2));
+        assertThat(strategy.versionLookups, is(2));
+    }
+
+    @Test
+    public void shouldGenerateTheSameUrlAsWithoutATemplate() throws Exception {
+        // Given some bug options and a topic
+        final JIRABugLinkOptions options = createBugOptions();
+        options.setUseEntities(false);
+        final SpecTopic specTopic = createSpecTopic();
+        final Date buildDate = new Date(1000L);
+        // and the project details have already been looked up
+        strategy.getCachedJIRAProject(client, "PROJ");
+
+        // When generating the url using a template
+        final String result = strategy.generateUrl(options, specTopic, "Build", buildDate);
+
+        // Then the url should match the url generated without a template
+        assertThat(result, is(generateUrlWithoutTemplate(options, specTopic, "Build", buildDate)));
+    }
+
+    @Test
+    public void shouldGenerateTheSameUrlAsWithoutATemplateWhenUsingEntities() throws Exception {
+        // Given some bug options that use entities and a topic
+        final JIRABugLinkOptions options = createBugOptions();
+        options.setUseEntities(true);
+        final SpecTopic specTopic = createSpecTopic();
+        specTopic.setRevision(5);
+        final Date buildDate = new Date(1000L);
+        // and the project details have already been looked up
+        strategy.getCachedJIRAProject(client, "PROJ");
+
+        // When generating the url using a template
+        final String result = strategy.generateUrl(options, specTopic, "Build", buildDate);
+
+        // Then the url should match the url generated without a template
+        assertThat(result, is(generateUrlWithoutTemplate(options, specTopic, "Build", buildDate)));
+    }
+
+    private JIRABugLinkOptions createBugOptions() {
+        given(project.getId()).willReturn(10L);
+        given(component.getId()).willReturn(20L);
+        given(version.getId()).willReturn(30L);
+
+        final JIRABugLinkOptions options = new JIRABugLinkOptions();
+        options.setProject("PROJ");
+        options.setComponent("Component");
+        options.setVersion("1.0");
+        options.setLabels("docs, triaged");
+        return options;
+    }
+
+    private SpecTopic createSpecTopic() {
+        given(topic.getTitle()).willReturn("Topic & Title");
+        given(topic.getTopicId()).willReturn(10);
+        given(topic.getTopicRevision()).willReturn(5);
+
+        final SpecTopic specTopic = new SpecTopic(10, "Topic & Title");
+        specTopic.setTopic(topic);
+        return specTopic;
+    }
+
+    /**
+     * Generates a url the same way as it was generated before bug link templates were used.
+     */
+    private String generateUrlWithoutTemplate(final JIRABugLinkOptions options, final SpecTopic specTopic, final String buildName,
+            final Date buildDate) throws UnsupportedEncodingException {
+        final String description = URLEncoder.encode(String.format(JIRABugLinkStrategy.DESCRIPTION_TEMPLATE, topic.getTitle()),
+                "UTF-8");
+        final StringBuilder environment = strategy.buildBaseEnvironment(options, buildName, buildDate);
+        environment.append("\nTopic ID: ").append(topic.getTopicId()).append("-").append(topic.getTopicRevision()).append(
+                specTopic.getRevision() == null ? " [Latest]" : " [Specified]");
+        final String encodedEnvironment = strategy.addBuildNameAndDateEntities(URLEncoder.encode(environment.toString(), "UTF-8"));
+
+        return strategy.generateUrl(options, description, encodedEnvironment);
+    }
+
+    private class TestJIRABugLinkStrategy extends JIRABugLinkStrategy {
+        int componentLookups = 0;
+        int versionLookups = 0;
+
+        @Override
+        protected JIRAComponent getJIRAComponent(final String componentName, final JIRAProject project) {
+            componentLookups++;
+            return component;
+        }
+
+        @Override
+        protected JIRAVersion getJIRAVersion(final String versionName, final JIRAProject project) {
+            versionLookups++;
+            return version;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.jboss.pressgang.ccms.contentspec.sort;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.jboss.pressgang.ccms.contentspec.TestUtil.createValidCommentMock;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.pressgang.ccms.contentspec.BaseUnitTest;
+import org.jboss.pressgang.ccms.contentspec.Comment;
+import org.jboss.pressgang.ccms.wrapper.CSNodeWrapper;
+import org.junit.Test;
+
+public class CSNodeSorterTest extends BaseUnitTest {
+
+    @Test
+    public void shouldSortNodesUsingNextNodeReferences() {
+        // Given a set of nodes that form a chain
+        final CSNodeWrapper first = createNodeMock(1);
+        final CSNodeWrapper second = createNodeMock(2);
+        final CSNodeWrapper third = createNodeMock(3);
+        given(first.getNextNode()).willReturn(second);
+        given(second.getNextNode()).willReturn(third);
+        final Map<CSNodeWrapper, Comment> map = createMap(third, first, second);
+
+        // When the map is sorted
+        final CSNodeSorter.SortResult<Comment> result = CSNodeSorter.sort(map);
+
+        // Then the nodes should be in the chain order
+        assertThat(new ArrayList<CSNodeWrapper>(result.getSortedMap().keySet()), is(asList(first, second, third)));
+        // and no nodes should be left unplaced
+        assertThat(result.getUnplacedCount(), is(0));
+        assertThat(result.isBrokenChain(), is(false));
+        assertThat(result.isCyclicChain(), is(false));
+    }
+
+    @Test
+    public void shouldKeepNodesWhenChainIsBroken() {
+        // Given a set of nodes where one node isn't linked to the others
+        final CSNodeWrapper first = createNodeMock(1);
+        final CSNodeWrapper second = createNodeMock(2);
+        final CSNodeWrapper orphan = createNodeMock(3);
+        given(first.getNextNode()).willReturn(second);
+        given(orphan.getNextNode()).willReturn(createNodeMock(4));
+        final Map<CSNodeWrapper, Comment> map = createMap(first, second, orphan);
+
+        // When the map is sorted
+        final CSNodeSorter.SortResult<Comment> result = CSNodeSorter.sort(map);
+
+        // Then the linked nodes should be first, followed by the unplaced node
+        assertThat(new ArrayList<CSNodeWrapper>(result.getSortedMap().keySet()), is(asList(first, second, orphan)));
+        // and the unplaced node should be reported
+        assertThat(result.getUnplacedCount(), is(1));
+        assertThat(result.isBrokenChain(), is(true));
+    }
+
+    @Test
+    public void shouldDetectCyclicChains() {
+        // Given a set of nodes that loop back on themselves
+        final CSNodeWrapper first = createNodeMock(1);
+        final CSNodeWrapper second = createNodeMock(2);
+        given(first.getNextNode()).willReturn(second);
+        given(second.getNextNode()).willReturn(first);
+        final Map<CSNodeWrapper, Comment> map = createMap(first, second);
+
+        // When the map is sorted
+        final CSNodeSorter.SortResult<Comment> result = CSNodeSorter.sort(map);
+
+        // Then the cycle should be reported and no nodes should be lost
+        assertThat(result.isCyclicChain(), is(true));
+        assertThat(result.getUnplacedCount(), is(2));
+        assertThat(result.getSortedMap().size(), is(2));
+    }
+
+    protected CSNodeWrapper createNodeMock(final Integer id) {
+        final CSNodeWrapper node = createValidCommentMock("Comment " + id);
+        given(node.getId()).willReturn(id);
+        return node;
+    }
+
+    protected Map<CSNodeWrapper, Comment> createMap(final CSNodeWrapper... nodes) {
+        final Map<CSNodeWrapper, Comment> map = new LinkedHashMap<CSNodeWrapper, Comment>();
+        for (final CSNodeWrapper node : nodes) {
+            map.put(node, new Comment(node.getTitle()));
+        }
+        return map;
+    }
+
+    protected List<CSNodeWrapper> asList(final CSNodeWrapper... nodes) {
+        return Arrays.asList(nodes);
+    }
+}
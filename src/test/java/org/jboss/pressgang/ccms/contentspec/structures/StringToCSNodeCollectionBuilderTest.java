@@ -0,0 +1,94 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.structures;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.pressgang.ccms.contentspec.BaseUnitTest;
+import org.jboss.pressgang.ccms.wrapper.CSNodeWrapper;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class StringToCSNodeCollectionBuilderTest extends BaseUnitTest {
+    @Mock CSNodeWrapper node;
+    @Mock CSNodeWrapper node2;
+    @Mock CSNodeWrapper node3;
+
+    @Test
+    public void shouldMergeDuplicateStringsWhenDuplicatesAreNotAllowed() {
+        // Given a builder that doesn't allow duplicates
+        final StringToCSNodeCollectionBuilder builder = new StringToCSNodeCollectionBuilder(false);
+
+        // When adding the same string for multiple nodes
+        builder.add("Chapter", node).add("Section", node2).add("Chapter", node3);
+        final List<StringToCSNodeCollection> result = builder.build();
+
+        // Then the nodes should be merged into a single collection for the string
+        assertThat(builder.size(), is(2));
+        assertThat(result.size(), is(2));
+        assertThat(result.get(0).getTranslationString(), is("Chapter"));
+        assertThat(result.get(0).getNodeCollections(), is(Arrays.asList(node, node3)));
+        // and the collections should be in the order the strings were first added
+        assertThat(result.get(1).getTranslationString(), is("Section"));
+        assertThat(result.get(1).getNodeCollections(), is(Arrays.asList(node2)));
+    }
+
+    @Test
+    public void shouldKeepSeparateEntriesWhenDuplicatesAreAllowed() {
+        // Given a builder that allows duplicates
+        final StringToCSNodeCollectionBuilder builder = new StringToCSNodeCollectionBuilder(true);
+
+        // When adding the same string for multiple nodes
+        builder.add("Chapter", node).add("Section", node2).add("Chapter", node3);
+        final List<StringToCSNodeCollection> result = builder.build();
+
+        // Then each string should have its own collection, in the order they were added
+        assertThat(builder.size(), is(3));
+        assertThat(result.size(), is(3));
+        assertThat(result.get(0).getTranslationString(), is("Chapter"));
+        assertThat(result.get(0).getNodeCollections(), is(Arrays.asList(node)));
+        assertThat(result.get(1).getTranslationString(), is("Section"));
+        assertThat(result.get(1).getNodeCollections(), is(Arrays.asList(node2)));
+        assertThat(result.get(2).getTranslationString(), is("Chapter"));
+        assertThat(result.get(2).getNodeCollections(), is(Arrays.asList(node3)));
+    }
+
+    @Test
+    public void shouldBeAbleToKeepAddingAfterBuilding() {
+        // Given a builder that has already been built
+        final StringToCSNodeCollectionBuilder builder = new StringToCSNodeCollectionBuilder(false);
+        builder.add("Chapter", node);
+        final List<StringToCSNodeCollection> firstResult = builder.build();
+
+        // When adding another string and building again
+        builder.add("Section", node2);
+        final List<StringToCSNodeCollection> result = builder.build();
+
+        // Then the first result shouldn't change
+        assertThat(firstResult.size(), is(1));
+        // and the new result should include both strings
+        assertThat(result.size(), is(2));
+        assertThat(result.get(1).getTranslationString(), is("Section"));
+    }
+}
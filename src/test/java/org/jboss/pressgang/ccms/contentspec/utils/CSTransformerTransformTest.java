@@ -40,6 +40,8 @@ import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import net.sf.ipsedixit.annotation.Arbitrary;
 import net.sf.ipsedixit.annotation.ArbitraryString;
@@ -268,6 +270,40 @@ public class CSTransformerTransformTest extends CSTransformerTest {
         assertThat(result.getChildNodes().get(2).getClass().equals(SpecTopic.class), is(true));
     }
 
+    @Test
+    public void shouldSortAndAddChildNodesWhenTransformingInParallel() throws Exception {
+        // Given a spec with several child nodes of different types
+        CSNodeWrapper topicNode = createValidTopicMock();
+        CSNodeWrapper levelNode = createValidLevelMock(CommonConstants.CS_NODE_APPENDIX);
+        CSNodeWrapper commentNode = createValidCommentMock(text);
+        setChildren(asList(commentNode, levelNode, topicNode));
+        // And that appropriate sorting values have been set
+        given(levelNode.getId()).willReturn(id);
+        given(commentNode.getNextNode()).willReturn(levelNode);
+        given(topicNode.getId()).willReturn(anotherId);
+        given(levelNode.getNextNode()).willReturn(topicNode);
+        given(topicNode.getNextNode()).willReturn(null);
+        // And an executor to transform the levels with
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // When the spec is transformed
+        ContentSpec result;
+        try {
+            result = CSTransformer.transform(specWrapper, providerFactory, false, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then the nodes should have been added as children of the resulting spec
+        // And be in the same order as when transformed serially
+        assertThat(result.getNodes().get(1).getClass().equals(Comment.class), is(true));
+        assertThat(result.getChildNodes().get(0).getClass().equals(Appendix.class), is(true));
+        assertThat(result.getChildNodes().get(1).getClass().equals(TextNode.class), is(true));
+        assertThat(result.getChildNodes().get(2).getClass().equals(SpecTopic.class), is(true));
+        // And the output should be the same as the serial transformation
+        assertThat(result.toString(), is(CSTransformer.transform(specWrapper, providerFactory, false).toString()));
+    }
+
     @Test
     public void shouldAddTextNodeAfterChaptersOrParts() throws Exception {
         // Given a spec with a child level that is a Chapter or Part
@@ -0,0 +1,214 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+
+import java.util.Arrays;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.jboss.pressgang.ccms.contentspec.BaseUnitTest;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Entity;
+import org.w3c.dom.NodeList;
+
+public class CustomEntityResolverTest extends BaseUnitTest {
+    @Mock Entity productEntity;
+    @Mock Entity versionEntity;
+    @Mock Entity duplicateEntity;
+
+    @Test
+    public void shouldResolvePlainEntities() {
+        // Given a resolver with some entities
+        setUpEntity(productEntity, "PRODUCT", "PressGang");
+        setUpEntity(versionEntity, "VERSION", "1.0");
+        final CustomEntityResolver resolver = new CustomEntityResolver(Arrays.asList(productEntity, versionEntity));
+
+        // When resolving a string that references the entities
+        final String result = resolver.resolve("&PRODUCT; &VERSION; for &PRODUCT;");
+
+        // Then the entities should be replaced with their values
+        assertThat(result, is("PressGang 1.0 for PressGang"));
+    }
+
+    @Test
+    public void shouldResolveNestedEntitiesDefinedLater() {
+        // Given a resolver with an entity that references an entity defined after it
+        setUpEntity(productEntity, "PRODUCT", "PressGang &VERSION;");
+        setUpEntity(versionEntity, "VERSION", "1.0");
+        final CustomEntityResolver resolver = new CustomEntityResolver(Arrays.asList(productEntity, versionEntity));
+
+        // When resolving a string that references the first entity
+        final String result = resolver.resolve("&PRODUCT; Guide");
+
+        // Then the nested entity should be resolved as well
+        assertThat(result, is("PressGang 1.0 Guide"));
+    }
+
+    @Test
+    public void shouldNotResolveNestedEntitiesDefinedEarlier() {
+        // Given a resolver with an entity that references an entity defined before it
+        setUpEntity(versionEntity, "VERSION", "1.0");
+        setUpEntity(productEntity, "PRODUCT", "PressGang &VERSION;");
+        final CustomEntityResolver resolver = new CustomEntityResolver(Arrays.asList(versionEntity, productEntity));
+
+        // When resolving a string that references the second entity
+        final String result = resolver.resolve("&PRODUCT; Guide");
+
+        // Then the nested entity should be left as is, the same as replacing the entities one at a time
+        assertThat(result, is("PressGang &VERSION; Guide"));
+    }
+
+    @Test
+    public void shouldUseTheFirstDefinitionOfAnEntity() {
+        // Given a resolver with an entity that is defined twice
+        setUpEntity(productEntity, "PRODUCT", "PressGang");
+        setUpEntity(duplicateEntity, "PRODUCT", "Other");
+        final CustomEntityResolver resolver = new CustomEntityResolver(Arrays.asList(productEntity, duplicateEntity));
+
+        // When resolving a string that references the entity
+        final String result = resolver.resolve("&PRODUCT;");
+
+        // Then the first definition should be used
+        assertThat(result, is("PressGang"));
+    }
+
+    @Test
+    public void shouldIgnoreAmpersandsThatAreNotCustomEntities() {
+        // Given a resolver with an entity
+        setUpEntity(productEntity, "PRODUCT", "PressGang");
+        final CustomEntityResolver resolver = new CustomEntityResolver(Arrays.asList(productEntity));
+
+        // When resolving a string with ampersands that aren't custom entities
+        final String result = resolver.resolve("Tom & Jerry &amp; &PRODUCT; &");
+
+        // Then only the custom entity should be replaced
+        assertThat(result, is("Tom & Jerry &amp; PressGang &"));
+    }
+
+    @Test
+    public void shouldReturnTheSameStringWhenNothingIsResolved() {
+        // Given a resolver with an entity
+        setUpEntity(productEntity, "PRODUCT", "PressGang");
+        final CustomEntityResolver resolver = new CustomEntityResolver(Arrays.asList(productEntity));
+        final String value = "Tom &amp; Jerry";
+
+        // When resolving a string that doesn't reference the entity
+        final String result = resolver.resolve(value);
+
+        // Then the same string should be returned
+        assertThat(result, is(sameInstance(value)));
+    }
+
+    @Test
+    public void shouldInsertEveryNodeOfAnEntityValueIntoADocument() throws Exception {
+        // Given a resolver with an entity whose value has multiple nodes
+        setUpEntity(productEntity, "PRODUCT", "<emphasis>Press</emphasis><emphasis>Gang</emphasis> CCMS");
+        final CustomEntityResolver resolver = new CustomEntityResolver(Arrays.asList(productEntity));
+        // and a document that references the entity
+        final Document doc = createDocument();
+        final Element para = createParaWithEntityReference(doc, "PRODUCT");
+
+        // When resolving the entities in the document
+        final boolean result = resolver.resolve(doc);
+
+        // Then every node in the entities value should be inserted in place of the reference
+        assertTrue(result);
+        final NodeList childNodes = para.getChildNodes();
+        assertThat(childNodes.getLength(), is(5));
+        assertThat(childNodes.item(0).getTextContent(), is("Welcome to "));
+        assertThat(childNodes.item(1).getNodeName(), is("emphasis"));
+        assertThat(childNodes.item(1).getTextContent(), is("Press"));
+        assertThat(childNodes.item(2).getNodeName(), is("emphasis"));
+        assertThat(childNodes.item(2).getTextContent(), is("Gang"));
+        assertThat(childNodes.item(3).getTextContent(), is(" CCMS"));
+        assertThat(childNodes.item(4).getTextContent(), is("!"));
+    }
+
+    @Test
+    public void shouldReuseTheParsedEntityValueForEveryReference() throws Exception {
+        // Given a resolver with an entity whose value is XML
+        setUpEntity(productEntity, "PRODUCT", "<emphasis>PressGang</emphasis>");
+        final CustomEntityResolver resolver = new CustomEntityResolver(Arrays.asList(productEntity));
+        // and two documents that reference the entity, one of them more than once
+        final Document doc = createDocument();
+        final Element para = createParaWithEntityReference(doc, "PRODUCT");
+        para.appendChild(doc.createEntityReference("PRODUCT"));
+        final Document doc2 = createDocument();
+        final Element para2 = createParaWithEntityReference(doc2, "PRODUCT");
+
+        // When resolving the entities in both documents
+        final boolean result = resolver.resolve(doc);
+        final boolean result2 = resolver.resolve(doc2);
+
+        // Then every reference should be replaced with the full entity value
+        assertTrue(result);
+        assertTrue(result2);
+        assertThat(para.getTextContent(), is("Welcome to PressGang!PressGang"));
+        assertThat(para.getElementsByTagName("emphasis").getLength(), is(2));
+        assertThat(para2.getTextContent(), is("Welcome to PressGang!"));
+        assertThat(para2.getElementsByTagName("emphasis").getLength(), is(1));
+    }
+
+    @Test
+    public void shouldNotResolveEntityReferencesThatAreNotCustomEntities() throws Exception {
+        // Given a resolver with an entity
+        setUpEntity(productEntity, "PRODUCT", "PressGang");
+        final CustomEntityResolver resolver = new CustomEntityResolver(Arrays.asList(productEntity));
+        // and a document that only references a different entity
+        final Document doc = createDocument();
+        final Element para = createParaWithEntityReference(doc, "VERSION");
+
+        // When resolving the entities in the document
+        final boolean result = resolver.resolve(doc);
+
+        // Then nothing should be resolved
+        assertFalse(result);
+        assertThat(para.getChildNodes().getLength(), is(3));
+        assertThat(para.getChildNodes().item(1).getNodeName(), is("VERSION"));
+    }
+
+    private Document createDocument() throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+    }
+
+    private Element createParaWithEntityReference(final Document doc, final String entityName) {
+        final Element para = doc.createElement("para");
+        doc.appendChild(para);
+        para.appendChild(doc.createTextNode("Welcome to "));
+        para.appendChild(doc.createEntityReference(entityName));
+        para.appendChild(doc.createTextNode("!"));
+        return para;
+    }
+
+    private void setUpEntity(final Entity entity, final String name, final String value) {
+        given(entity.getNodeName()).willReturn(name);
+        given(entity.getTextContent()).willReturn(value);
+    }
+}
@@ -20,19 +20,37 @@
 package org.jboss.pressgang.ccms.contentspec.utils;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 
 import net.sf.ipsedixit.annotation.Arbitrary;
 import net.sf.ipsedixit.annotation.ArbitraryString;
 import net.sf.ipsedixit.core.StringType;
 import org.jboss.pressgang.ccms.contentspec.BaseUnitTest;
+import org.jboss.pressgang.ccms.provider.ContentSpecProvider;
+import org.jboss.pressgang.ccms.provider.DataProviderFactory;
+import org.jboss.pressgang.ccms.provider.TopicProvider;
+import org.jboss.pressgang.ccms.provider.TranslatedTopicProvider;
+import org.jboss.pressgang.ccms.provider.exception.NotFoundException;
+import org.jboss.pressgang.ccms.wrapper.ContentSpecWrapper;
 import org.jboss.pressgang.ccms.wrapper.LocaleWrapper;
 import org.jboss.pressgang.ccms.wrapper.TopicWrapper;
 import org.jboss.pressgang.ccms.wrapper.TranslatedCSNodeWrapper;
+import org.jboss.pressgang.ccms.wrapper.TranslatedContentSpecWrapper;
 import org.jboss.pressgang.ccms.wrapper.TranslatedTopicWrapper;
 import org.jboss.pressgang.ccms.wrapper.collection.CollectionWrapper;
 import org.junit.Before;
@@ -52,10 +70,27 @@ public class EntityUtilitiesTest extends BaseUnitTest {
     @Mock TranslatedCSNodeWrapper translatedCSNodeWrapper;
     @Mock TranslatedCSNodeWrapper translatedCSNodeWrapper2;
     @Mock LocaleWrapper localeWrapper;
+    @Mock DataProviderFactory providerFactory;
+    @Mock TopicProvider topicProvider;
+    @Mock TranslatedTopicProvider translatedTopicProvider;
+    @Mock TopicWrapper topicWrapper2;
+    @Mock CollectionWrapper<TopicWrapper> topicCollectionWrapper;
+    @Mock CollectionWrapper<TopicWrapper> topicCollectionWrapper2;
+    @Mock CollectionWrapper<TranslatedTopicWrapper> translatedTopicCollectionWrapper2;
+    @Mock TranslatedTopicWrapper translatedTopicWrapper3;
+    @Mock ContentSpecProvider contentSpecProvider;
+    @Mock ContentSpecWrapper contentSpecWrapper;
+    @Mock TranslatedContentSpecWrapper translatedContentSpecWrapper;
+    @Mock TranslatedContentSpecWrapper translatedContentSpecWrapper2;
+    @Mock TranslatedContentSpecWrapper translatedContentSpecWrapper3;
+    @Mock CollectionWrapper<TranslatedContentSpecWrapper> translatedContentSpecCollectionWrapper;
 
     @Before
     public void setUp() {
         when(localeWrapper.getValue()).thenReturn(locale);
+        when(providerFactory.getProvider(TopicProvider.class)).thenReturn(topicProvider);
+        when(providerFactory.getProvider(TranslatedTopicProvider.class)).thenReturn(translatedTopicProvider);
+        when(providerFactory.getProvider(ContentSpecProvider.class)).thenReturn(contentSpecProvider);
     }
 
     @Test
@@ -189,6 +224,326 @@ public class EntityUtilitiesTest extends BaseUnitTest {
         assertNull(result);
     }
 
+    @Test
+    public void shouldNotUseOtherTopicsTranslationsWhenCheckingIfPushedForTranslation() {
+        // Given a dummy translated topic for a topic
+        setUpBaseTopic(topicWrapper);
+        given(translatedTopicWrapper.getId()).willReturn(-1);
+        given(translatedTopicWrapper.getTopic()).willReturn(topicWrapper);
+        // and an index that only contains a translation of a different topic in the same locale
+        setUpBaseTranslatedTopic(translatedTopicWrapper2);
+        given(translatedTopicWrapper2.getTopicId()).willReturn(id + 1);
+        given(translatedTopicWrapper2.getTopicRevision()).willReturn(revision);
+        final TranslatedTopicIndex index = new TranslatedTopicIndex();
+        index.addTranslatedTopic(translatedTopicWrapper2);
+
+        // When checking if the topic has been pushed for translation
+        final boolean result = EntityUtilities.hasBeenPushedForTranslation(index, translatedTopicWrapper);
+
+        // Then the result should be false, since the topic itself has no translations
+        assertFalse(result);
+
+        // and when a translation of the topic itself is added, the result should be true
+        given(translatedTopicWrapper2.getTopicId()).willReturn(id);
+        index.addTranslatedTopic(translatedTopicWrapper2);
+        assertTrue(EntityUtilities.hasBeenPushedForTranslation(index, translatedTopicWrapper));
+    }
+
+    @Test
+    public void shouldLookupTopicsInBatchesWhenGettingTopicsByIds() {
+        // Given a list of 250 topic ids, with some duplicates
+        final List<Integer> topicIds = buildTopicIds(1, 250);
+        topicIds.addAll(buildTopicIds(1, 10));
+        // and the provider returns a topic for each lookup
+        given(topicWrapper.getId()).willReturn(id);
+        given(topicCollectionWrapper.getItems()).willReturn(Arrays.asList(topicWrapper));
+        given(topicProvider.getTopicsWithQuery(anyString())).willReturn(topicCollectionWrapper);
+
+        // When getting the topics
+        final Map<Integer, TopicWrapper> result = EntityUtilities.getTopicsByIds(topicProvider, topicIds);
+
+        // Then the topics should be looked up in batches of 100, with the duplicates removed
+        verify(topicProvider).getTopicsWithQuery(buildTopicIdsQuery(1, 100));
+        verify(topicProvider).getTopicsWithQuery(buildTopicIdsQuery(101, 200));
+        verify(topicProvider).getTopicsWithQuery(buildTopicIdsQuery(201, 250));
+        verify(topicProvider, times(3)).getTopicsWithQuery(anyString());
+        // and the returned topic should be in the map
+        assertEquals(1, result.size());
+        assertEquals(topicWrapper, result.get(id));
+    }
+
+    @Test
+    public void shouldSkipBatchesThatAreNotFoundWhenGettingTopicsByIds() {
+        // Given a list of 150 topic ids
+        final List<Integer> topicIds = buildTopicIds(1, 150);
+        // and the first batch doesn't exist
+        given(topicProvider.getTopicsWithQuery(buildTopicIdsQuery(1, 100))).willThrow(new NotFoundException());
+        // and the second batch returns a topic
+        given(topicWrapper2.getId()).willReturn(id2);
+        given(topicCollectionWrapper2.getItems()).willReturn(Arrays.asList(topicWrapper2));
+        given(topicProvider.getTopicsWithQuery(buildTopicIdsQuery(101, 150))).willReturn(topicCollectionWrapper2);
+
+        // When getting the topics
+        final Map<Integer, TopicWrapper> result = EntityUtilities.getTopicsByIds(topicProvider, topicIds);
+
+        // Then only the topics from the second batch should be returned
+        assertEquals(1, result.size());
+        assertEquals(topicWrapper2, result.get(id2));
+    }
+
+    @Test
+    public void shouldNotLookupAnythingWhenGettingTopicsByIdsWithNoIds() {
+        // Given an empty list of topic ids
+        final List<Integer> topicIds = new ArrayList<Integer>();
+
+        // When getting the topics
+        final Map<Integer, TopicWrapper> result = EntityUtilities.getTopicsByIds(topicProvider, topicIds);
+
+        // Then the provider shouldn't be called and the result should be empty
+        verify(topicProvider, never()).getTopicsWithQuery(anyString());
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void shouldLookupTranslationsInBatchesWhenBuildingTheTranslatedTopicIndex() {
+        // Given a list of 150 topic ids
+        final List<Integer> topicIds = buildTopicIds(1, 150);
+        // and the provider returns a translation for each lookup
+        setUpBaseTranslatedTopic(translatedTopicWrapper);
+        given(translatedTopicWrapper.getTopicRevision()).willReturn(revision);
+        given(translatedTopicCollectionWrapper.getItems()).willReturn(Arrays.asList(translatedTopicWrapper));
+        given(translatedTopicProvider.getTranslatedTopicsWithQuery(anyString())).willReturn(translatedTopicCollectionWrapper);
+
+        // When building the index
+        final TranslatedTopicIndex result = EntityUtilities.getTranslatedTopicIndex(providerFactory, topicIds);
+
+        // Then the translations should be looked up in batches of 100
+        verify(translatedTopicProvider).getTranslatedTopicsWithQuery(buildTopicIdsQuery(1, 100));
+        verify(translatedTopicProvider).getTranslatedTopicsWithQuery(buildTopicIdsQuery(101, 150));
+        verify(translatedTopicProvider, times(2)).getTranslatedTopicsWithQuery(anyString());
+        // and the returned translation should be in the index
+        assertEquals(translatedTopicWrapper, result.getTranslatedTopic(id, revision, null, locale));
+        // and every topic should be marked as loaded
+        assertTrue(result.containsTopic(1));
+        assertTrue(result.containsTopic(150));
+    }
+
+    @Test
+    public void shouldMarkTopicsWithNoTranslationsAsLoadedWhenBuildingTheTranslatedTopicIndex() {
+        // Given a topic that has no translations
+        given(translatedTopicCollectionWrapper.getItems()).willReturn(new ArrayList<TranslatedTopicWrapper>());
+        given(translatedTopicProvider.getTranslatedTopicsWithQuery("query;topicIds=" + id)).willReturn(
+                translatedTopicCollectionWrapper);
+
+        // When building the index
+        final TranslatedTopicIndex result = EntityUtilities.getTranslatedTopicIndex(providerFactory, Arrays.asList(id));
+
+        // Then the topic should be marked as loaded, even though it has no translations
+        assertTrue(result.containsTopic(id));
+        assertFalse(result.containsLocale(id, locale));
+        // and looking up a translation should use the index instead of the topic provider
+        assertNull(EntityUtilities.getTranslatedTopicByTopicAndNodeId(providerFactory, result, id, revision, null, locale));
+        verify(topicProvider, never()).getTopicTranslations(id, revision);
+    }
+
+    @Test
+    public void shouldNotMarkTopicsAsLoadedWhenABatchIsNotFoundWhenBuildingTheTranslatedTopicIndex() {
+        // Given a list of 150 topic ids
+        final List<Integer> topicIds = buildTopicIds(1, 150);
+        // and the first batch doesn't exist
+        given(translatedTopicProvider.getTranslatedTopicsWithQuery(buildTopicIdsQuery(1, 100))).willThrow(new NotFoundException());
+        // and the second batch has no translations
+        given(translatedTopicCollectionWrapper2.getItems()).willReturn(new ArrayList<TranslatedTopicWrapper>());
+        given(translatedTopicProvider.getTranslatedTopicsWithQuery(buildTopicIdsQuery(101, 150))).willReturn(
+                translatedTopicCollectionWrapper2);
+
+        // When building the index
+        final TranslatedTopicIndex result = EntityUtilities.getTranslatedTopicIndex(providerFactory, topicIds);
+
+        // Then only the topics from the second batch should be marked as loaded
+        assertFalse(result.containsTopic(1));
+        assertFalse(result.containsTopic(100));
+        assertTrue(result.containsTopic(101));
+        assertTrue(result.containsTopic(150));
+        // and looking up a translation for a topic in the first batch should fall back to the topic provider
+        EntityUtilities.getTranslatedTopicByTopicAndNodeId(providerFactory, result, 1, revision, null, locale);
+        verify(topicProvider).getTopicTranslations(1, revision);
+    }
+
+    @Test
+    public void shouldFindTheClosestLowerRevisionForClosestTranslatedTopic() {
+        // Given a topic at revision 15, that has translations for revisions 10, 12 and 17
+        setUpBaseTopic(topicWrapper);
+        given(topicWrapper.getTopicRevision()).willReturn(15);
+        setUpTranslatedTopicRevisions(10, 12, 17);
+
+        // When getting the closest translated topic
+        final TranslatedTopicIndex index = EntityUtilities.getTranslatedTopicIndex(topicWrapper);
+        final TranslatedTopicWrapper result = EntityUtilities.returnClosestTranslatedTopic(index, topicWrapper, null, locale);
+
+        // Then the translation with the highest revision below the source revision should be returned
+        assertEquals(translatedTopicWrapper2, result);
+        // and no translation should be found below the lowest revision
+        assertNull(index.getClosestTranslatedTopic(id, 9, null, locale));
+        // and an exact revision should be matched
+        assertEquals(translatedTopicWrapper3, index.getClosestTranslatedTopic(id, 17, null, locale));
+    }
+
+    @Test
+    public void shouldFindTheLatestTranslationWhenNoRevisionForClosestTranslatedTopic() {
+        // Given a topic without a revision, that has translations for revisions 10, 17 and 12
+        setUpBaseTopic(topicWrapper);
+        given(topicWrapper.getTopicRevision()).willReturn(null);
+        setUpTranslatedTopicRevisions(10, 17, 12);
+
+        // When getting the closest translated topic
+        final TranslatedTopicIndex index = EntityUtilities.getTranslatedTopicIndex(topicWrapper);
+        final TranslatedTopicWrapper result = EntityUtilities.returnClosestTranslatedTopic(index, topicWrapper, null, locale);
+
+        // Then the latest translation should be returned
+        assertEquals(translatedTopicWrapper2, result);
+    }
+
+    @Test
+    public void shouldOnlyMatchTheSameTranslatedCSNodeForClosestTranslatedTopic() {
+        // Given a topic at revision 15
+        setUpBaseTopic(topicWrapper);
+        given(topicWrapper.getTopicRevision()).willReturn(15);
+        // and translations for revisions 10, 12 and 17, where only the first is for a translated content spec node
+        setUpTranslatedTopicRevisions(10, 12, 17);
+        setUpBaseTranslatedCSNode(translatedCSNodeWrapper);
+        given(translatedCSNodeWrapper2.getId()).willReturn(id3);
+        given(translatedTopicWrapper.getTranslatedCSNode()).willReturn(translatedCSNodeWrapper);
+
+        // When getting the closest translated topics for the node, a different node and no node
+        final TranslatedTopicIndex index = EntityUtilities.getTranslatedTopicIndex(topicWrapper);
+        final TranslatedTopicWrapper result = EntityUtilities.returnClosestTranslatedTopic(index, topicWrapper, translatedCSNodeWrapper,
+                locale);
+        final TranslatedTopicWrapper result2 = EntityUtilities.returnClosestTranslatedTopic(index, topicWrapper, translatedCSNodeWrapper2,
+                locale);
+        final TranslatedTopicWrapper result3 = EntityUtilities.returnClosestTranslatedTopic(index, topicWrapper, null, locale);
+
+        // Then only the translation for the node should be returned for the node
+        assertEquals(translatedTopicWrapper, result);
+        // and nothing should be returned for the other node
+        assertNull(result2);
+        // and the translation without a node should be returned when there is no node
+        assertEquals(translatedTopicWrapper2, result3);
+    }
+
+    @Test
+    public void shouldKeepTheFirstTranslationWhenMultipleExistForTheSameRevisionForClosestTranslatedTopic() {
+        // Given a topic at revision 15, that has two translations for revision 12
+        setUpBaseTopic(topicWrapper);
+        given(topicWrapper.getTopicRevision()).willReturn(15);
+        setUpTranslatedTopicRevisions(10, 12, 12);
+
+        // When getting the closest translated topic
+        final TranslatedTopicIndex index = EntityUtilities.getTranslatedTopicIndex(topicWrapper);
+        final TranslatedTopicWrapper result = EntityUtilities.returnClosestTranslatedTopic(index, topicWrapper, null, locale);
+
+        // Then the first translation for the revision should be returned
+        assertEquals(translatedTopicWrapper2, result);
+    }
+
+    @Test
+    public void shouldOrderTranslatedContentSpecsByRevision() {
+        // Given translated content specs for revisions 12, 10, 12 and one without a revision
+        given(translatedContentSpecWrapper.getContentSpecRevision()).willReturn(12);
+        given(translatedContentSpecWrapper2.getContentSpecRevision()).willReturn(10);
+        given(translatedContentSpecWrapper3.getContentSpecRevision()).willReturn(12);
+        final TranslatedContentSpecWrapper noRevisionTranslatedContentSpec = mock(TranslatedContentSpecWrapper.class);
+        given(translatedContentSpecCollectionWrapper.getItems()).willReturn(Arrays.asList(translatedContentSpecWrapper,
+                translatedContentSpecWrapper2, translatedContentSpecWrapper3, noRevisionTranslatedContentSpec));
+
+        // When ordering the translated content specs
+        final NavigableMap<Integer, TranslatedContentSpecWrapper> result = EntityUtilities.getTranslatedContentSpecsByRevision(
+                translatedContentSpecCollectionWrapper);
+
+        // Then the translations should be ordered by revision, keeping the first translation for each revision
+        assertEquals(Arrays.asList(10, 12), new ArrayList<Integer>(result.keySet()));
+        assertEquals(translatedContentSpecWrapper2, result.get(10));
+        assertEquals(translatedContentSpecWrapper, result.get(12));
+    }
+
+    @Test
+    public void shouldReturnAnEmptyMapWhenNoTranslatedContentSpecsExist() {
+        // Given no translated content specs
+
+        // When ordering the translated content specs
+        final NavigableMap<Integer, TranslatedContentSpecWrapper> result = EntityUtilities.getTranslatedContentSpecsByRevision(null);
+
+        // Then the map should be empty
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void shouldFindTheClosestLowerRevisionForClosestTranslatedContentSpec() {
+        // Given a content spec, that has translations for revisions 10, 12 and 17
+        setUpTranslatedContentSpecRevisions(10, 12, 17);
+        given(contentSpecProvider.getContentSpec(id, 15)).willReturn(contentSpecWrapper);
+        given(contentSpecProvider.getContentSpec(id, 9)).willReturn(contentSpecWrapper);
+
+        // When getting the closest translated content spec for revision 15 and 9
+        final TranslatedContentSpecWrapper result = EntityUtilities.getClosestTranslatedContentSpecById(providerFactory, id, 15);
+        final TranslatedContentSpecWrapper result2 = EntityUtilities.getClosestTranslatedContentSpecById(providerFactory, id, 9);
+
+        // Then the translation with the highest revision below revision 15 should be returned
+        assertEquals(translatedContentSpecWrapper2, result);
+        // and nothing should be returned below the lowest revision
+        assertNull(result2);
+    }
+
+    @Test
+    public void shouldFindTheLatestTranslationWhenNoRevisionForClosestTranslatedContentSpec() {
+        // Given a content spec, that has translations for revisions 10, 17 and 12
+        setUpTranslatedContentSpecRevisions(10, 17, 12);
+        given(contentSpecProvider.getContentSpec(id, null)).willReturn(contentSpecWrapper);
+
+        // When getting the closest translated content spec without a revision
+        final TranslatedContentSpecWrapper result = EntityUtilities.getClosestTranslatedContentSpecById(providerFactory, id, null);
+
+        // Then the latest translation should be returned
+        assertEquals(translatedContentSpecWrapper2, result);
+    }
+
+    private void setUpTranslatedTopicRevisions(final Integer rev, final Integer rev2, final Integer rev3) {
+        setUpBaseTranslatedTopic(translatedTopicWrapper);
+        setUpBaseTranslatedTopic(translatedTopicWrapper2);
+        setUpBaseTranslatedTopic(translatedTopicWrapper3);
+        given(translatedTopicWrapper.getTopicRevision()).willReturn(rev);
+        given(translatedTopicWrapper2.getTopicRevision()).willReturn(rev2);
+        given(translatedTopicWrapper3.getTopicRevision()).willReturn(rev3);
+        given(translatedTopicCollectionWrapper.getItems()).willReturn(Arrays.asList(translatedTopicWrapper, translatedTopicWrapper2,
+                translatedTopicWrapper3));
+    }
+
+    private void setUpTranslatedContentSpecRevisions(final Integer rev, final Integer rev2, final Integer rev3) {
+        given(translatedContentSpecWrapper.getContentSpecRevision()).willReturn(rev);
+        given(translatedContentSpecWrapper2.getContentSpecRevision()).willReturn(rev2);
+        given(translatedContentSpecWrapper3.getContentSpecRevision()).willReturn(rev3);
+        given(translatedContentSpecCollectionWrapper.getItems()).willReturn(Arrays.asList(translatedContentSpecWrapper,
+                translatedContentSpecWrapper2, translatedContentSpecWrapper3));
+        given(contentSpecWrapper.getTranslatedContentSpecs()).willReturn(translatedContentSpecCollectionWrapper);
+    }
+
+    private List<Integer> buildTopicIds(final int from, final int to) {
+        final List<Integer> topicIds = new ArrayList<Integer>();
+        for (int i = from; i <= to; i++) {
+            topicIds.add(i);
+        }
+        return topicIds;
+    }
+
+    private String buildTopicIdsQuery(final int from, final int to) {
+        final StringBuilder query = new StringBuilder("query;topicIds=");
+        for (int i = from; i <= to; i++) {
+            if (i != from) query.append(",");
+            query.append(i);
+        }
+        return query.toString();
+    }
+
     private void setUpBaseTopic(final TopicWrapper topicWrapper) {
         given(topicWrapper.getId()).willReturn(id);
         given(topicWrapper.getTopicId()).willReturn(id);
@@ -0,0 +1,129 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.jboss.pressgang.ccms.contentspec.BaseUnitTest;
+import org.jboss.pressgang.ccms.contentspec.Chapter;
+import org.jboss.pressgang.ccms.contentspec.ContentSpec;
+import org.jboss.pressgang.ccms.contentspec.Section;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FixedURLGeneratorTest extends BaseUnitTest {
+    private static final Integer FIXED_URL_PROPERTY_TAG_ID = 20;
+
+    private ContentSpec contentSpec;
+    private Chapter chapter1;
+    private Chapter chapter2;
+    private Section section;
+    private FixedURLRegistry registry;
+
+    @Before
+    public void setUp() {
+        contentSpec = new ContentSpec();
+        chapter1 = new Chapter("Foo");
+        chapter2 = new Chapter("Foo");
+        section = new Section("Bar");
+        contentSpec.appendChapter(chapter1);
+        contentSpec.appendChapter(chapter2);
+        chapter2.appendChild(section);
+        registry = new FixedURLRegistry();
+    }
+
+    @Test
+    public void shouldGenerateUniqueFixedUrls() {
+        // Given a content spec with two levels that have the same title
+
+        // When generating the fixed urls
+        FixedURLGenerator.generateFixedUrls(contentSpec, registry, FIXED_URL_PROPERTY_TAG_ID);
+
+        // Then each level should have a unique fixed url
+        assertThat(chapter1.getFixedUrl(), is("chap-Foo"));
+        assertThat(chapter2.getFixedUrl(), is("chap-Foo1"));
+        assertThat(section.getFixedUrl(), is("sect-Bar"));
+        assertThat(registry.contains("chap-Foo"), is(true));
+        assertThat(registry.contains("chap-Foo1"), is(true));
+        assertThat(registry.contains("sect-Bar"), is(true));
+    }
+
+    @Test
+    public void shouldOnlyRegenerateFixedUrlsForChangedNodes() {
+        // Given a content spec that has had its fixed urls generated
+        FixedURLGenerator.generateFixedUrls(contentSpec, registry, FIXED_URL_PROPERTY_TAG_ID);
+
+        // When the first chapters title changes and the fixed urls are generated again
+        chapter1.setTitle("Baz");
+        FixedURLGenerator.generateFixedUrls(contentSpec, registry, FIXED_URL_PROPERTY_TAG_ID);
+
+        // Then only the first chapter should get a new fixed url
+        assertThat(chapter1.getFixedUrl(), is("chap-Baz"));
+        assertThat(chapter2.getFixedUrl(), is("chap-Foo1"));
+        assertThat(section.getFixedUrl(), is("sect-Bar"));
+        // and the old fixed url should be released
+        assertThat(registry.contains("chap-Foo"), is(false));
+    }
+
+    @Test
+    public void shouldRegenerateFixedUrlsForNodesWhoseFixedUrlWasCleared() {
+        // Given a content spec that has had its fixed urls generated
+        FixedURLGenerator.generateFixedUrls(contentSpec, registry, FIXED_URL_PROPERTY_TAG_ID);
+
+        // When the sections fixed url is cleared and the fixed urls are generated again
+        section.setFixedUrl(null);
+        FixedURLGenerator.generateFixedUrls(contentSpec, registry, FIXED_URL_PROPERTY_TAG_ID);
+
+        // Then the section should get the same fixed url back
+        assertThat(section.getFixedUrl(), is("sect-Bar"));
+    }
+
+    @Test
+    public void shouldKeepFixedUrlsSetOutsideTheRegistry() {
+        // Given a content spec that has had its fixed urls generated
+        FixedURLGenerator.generateFixedUrls(contentSpec, registry, FIXED_URL_PROPERTY_TAG_ID);
+
+        // When the sections fixed url is set manually and the fixed urls are generated again
+        section.setFixedUrl("Custom_URL");
+        FixedURLGenerator.generateFixedUrls(contentSpec, registry, FIXED_URL_PROPERTY_TAG_ID);
+
+        // Then the manually set fixed url should be kept and registered
+        assertThat(section.getFixedUrl(), is("Custom_URL"));
+        assertThat(registry.contains("Custom_URL"), is(true));
+        assertThat(registry.contains("sect-Bar"), is(false));
+    }
+
+    @Test
+    public void shouldReleaseTheFixedUrlsOfRemovedNodes() {
+        // Given a content spec that has had its fixed urls generated
+        FixedURLGenerator.generateFixedUrls(contentSpec, registry, FIXED_URL_PROPERTY_TAG_ID);
+
+        // When the first chapter is removed and a new chapter with the same title is added
+        contentSpec.getBaseLevel().removeChild(chapter1);
+        final Chapter chapter3 = new Chapter("Foo");
+        contentSpec.appendChapter(chapter3);
+        FixedURLGenerator.generateFixedUrls(contentSpec, registry, FIXED_URL_PROPERTY_TAG_ID);
+
+        // Then the removed chapters fixed url should be reused by the new chapter
+        assertThat(chapter3.getFixedUrl(), is("chap-Foo"));
+        assertThat(chapter2.getFixedUrl(), is("chap-Foo1"));
+    }
+}
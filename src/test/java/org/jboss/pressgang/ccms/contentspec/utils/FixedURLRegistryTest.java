@@ -0,0 +1,143 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jboss.pressgang.ccms.contentspec.BaseUnitTest;
+import org.jboss.pressgang.ccms.contentspec.Chapter;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FixedURLRegistryTest extends BaseUnitTest {
+    private Set<String> fixedUrls;
+    private FixedURLRegistry registry;
+
+    @Before
+    public void setUp() {
+        fixedUrls = new HashSet<String>();
+        registry = new FixedURLRegistry(fixedUrls);
+    }
+
+    @Test
+    public void shouldAddAPostFixWhenTheFixedUrlIsInUse() {
+        // Given a fixed url that is in use
+        registry.add("Foo");
+
+        // When getting unique fixed urls for the same base name
+        final String result1 = registry.getUniqueFixedUrl("Foo");
+        registry.add(result1);
+        final String result2 = registry.getUniqueFixedUrl("Foo");
+
+        // Then the postfix should be incremented each time
+        assertThat(result1, is("Foo1"));
+        assertThat(result2, is("Foo2"));
+        // and the changes should be made to the underlying set
+        assertThat(fixedUrls.contains("Foo1"), is(true));
+    }
+
+    @Test
+    public void shouldReuseAPostFixWhenAFixedUrlIsRemoved() {
+        // Given a set of fixed urls generated from the same base name
+        registry.add("Foo");
+        registry.add(registry.getUniqueFixedUrl("Foo"));
+        registry.add(registry.getUniqueFixedUrl("Foo"));
+
+        // When removing one of the generated fixed urls
+        final boolean result = registry.remove("Foo1");
+
+        // Then the postfix should be reused
+        assertThat(result, is(true));
+        assertThat(registry.getUniqueFixedUrl("Foo"), is("Foo1"));
+
+        // and when removing the base name, the base name should be reused
+        registry.remove("Foo");
+        assertThat(registry.getUniqueFixedUrl("Foo"), is("Foo"));
+    }
+
+    @Test
+    public void shouldResetThePostFixCountersForBaseNamesEndingInNumbers() {
+        // Given fixed urls generated from a base name that ends in a number
+        registry.add("Chapter1");
+        registry.add(registry.getUniqueFixedUrl("Chapter1"));
+        registry.add(registry.getUniqueFixedUrl("Chapter1"));
+
+        // When removing the first generated fixed url
+        registry.remove("Chapter11");
+
+        // Then the postfix should be reused for that base name
+        assertThat(registry.getUniqueFixedUrl("Chapter1"), is("Chapter11"));
+    }
+
+    @Test
+    public void shouldNotRemoveFixedUrlsThatAreNotInUse() {
+        // Given a fixed url that has been generated
+        registry.add("Foo");
+        registry.add(registry.getUniqueFixedUrl("Foo"));
+
+        // When removing a fixed url that isn't in use
+        final boolean result = registry.remove("Foo5");
+
+        // Then nothing should be removed and the postfix counter should be unchanged
+        assertThat(result, is(false));
+        assertThat(registry.getUniqueFixedUrl("Foo"), is("Foo2"));
+    }
+
+    @Test
+    public void shouldReleaseTheOldFixedUrlWhenANodeIsReregistered() {
+        // Given a registered node
+        final Chapter chapter = new Chapter("Foo");
+        registry.registerNode(chapter, "chap-Foo", "source");
+
+        // When the node is registered with a different fixed url
+        registry.registerNode(chapter, "chap-Bar", "source2");
+
+        // Then the old fixed url should be released
+        assertThat(registry.contains("chap-Foo"), is(false));
+        assertThat(registry.contains("chap-Bar"), is(true));
+        assertThat(registry.getRegisteredFixedUrl(chapter), is("chap-Bar"));
+
+        // and when the node is unregistered, the fixed url should be released
+        registry.unregisterNode(chapter);
+        assertThat(registry.contains("chap-Bar"), is(false));
+        assertThat(registry.getRegisteredFixedUrl(chapter), is(nullValue()));
+    }
+
+    @Test
+    public void shouldCheckIfANodeIsUpToDate() {
+        // Given a registered node
+        final Chapter chapter = new Chapter("Foo");
+        chapter.setFixedUrl("chap-Foo");
+        registry.registerNode(chapter, "chap-Foo", "source");
+
+        // When checking if the node is up to date
+        // Then it should only be up to date if the source and fixed url haven't changed
+        assertThat(registry.isNodeUpToDate(chapter, "source"), is(true));
+        assertThat(registry.isNodeUpToDate(chapter, "source2"), is(false));
+        chapter.setFixedUrl("chap-Bar");
+        assertThat(registry.isNodeUpToDate(chapter, "source"), is(false));
+        assertThat(registry.isNodeUpToDate(new Chapter("Foo"), "source"), is(false));
+    }
+}
@@ -0,0 +1,337 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.pressgang.ccms.contentspec.BaseUnitTest;
+import org.jboss.pressgang.ccms.contentspec.ITopicNode;
+import org.jboss.pressgang.ccms.provider.DataProviderFactory;
+import org.jboss.pressgang.ccms.provider.ServerSettingsProvider;
+import org.jboss.pressgang.ccms.provider.TopicProvider;
+import org.jboss.pressgang.ccms.wrapper.PropertyTagInTopicWrapper;
+import org.jboss.pressgang.ccms.wrapper.ServerEntitiesWrapper;
+import org.jboss.pressgang.ccms.wrapper.ServerSettingsWrapper;
+import org.jboss.pressgang.ccms.wrapper.TopicWrapper;
+import org.jboss.pressgang.ccms.wrapper.collection.CollectionWrapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TopicPoolTest extends BaseUnitTest {
+    @Mock DataProviderFactory providerFactory;
+    @Mock TopicProvider topicProvider;
+    @Mock ServerSettingsProvider serverSettingsProvider;
+    @Mock ServerSettingsWrapper serverSettings;
+    @Mock ServerEntitiesWrapper serverEntities;
+    @Mock TopicPool.SaveProgressListener progressListener;
+    @Mock TopicWrapper updatedTopic;
+    @Mock TopicWrapper savedUpdatedTopic;
+    @Mock ITopicNode topicNode;
+    @Mock ITopicNode topicNode2;
+
+    private final List<TopicWrapper> newTopics = new ArrayList<TopicWrapper>();
+    private final List<TopicWrapper> createdTopics = new ArrayList<TopicWrapper>();
+    private TopicPool topicPool;
+
+    @Before
+    public void setUp() {
+        when(providerFactory.getProvider(TopicProvider.class)).thenReturn(topicProvider);
+        when(providerFactory.getProvider(ServerSettingsProvider.class)).thenReturn(serverSettingsProvider);
+        when(serverSettingsProvider.getServerSettings()).thenReturn(serverSettings);
+        when(serverSettings.getEntities()).thenReturn(serverEntities);
+        when(serverEntities.getCspIdPropertyTagId()).thenReturn(1);
+        when(topicProvider.newTopicCollection()).thenAnswer(new Answer<CollectionWrapper<TopicWrapper>>() {
+            @Override
+            public CollectionWrapper<TopicWrapper> answer(final InvocationOnMock invocation) {
+                return createTopicCollection(new ArrayList<TopicWrapper>());
+            }
+        });
+
+        topicPool = new TopicPool(providerFactory);
+        for (int i = 1; i <= 5; i++) {
+            final TopicWrapper topic = mock(TopicWrapper.class);
+            final TopicWrapper createdTopic = mock(TopicWrapper.class);
+            given(createdTopic.getId()).willReturn(100 + i);
+            given(createdTopic.getTopicId()).willReturn(100 + i);
+            newTopics.add(topic);
+            createdTopics.add(createdTopic);
+            topicPool.addNewTopic(topic);
+        }
+    }
+
+    @Test
+    public void shouldSaveNewTopicsInChunks() {
+        // Given the topic provider creates any topics it is sent
+        given(topicProvider.createTopics(any(CollectionWrapper.class))).willAnswer(new CreateTopicsAnswer());
+
+        // When saving the pool in chunks of two
+        final boolean result = topicPool.savePool(2, null, progressListener);
+
+        // Then the pool should be saved in three chunks
+        assertThat(result, is(true));
+        assertThat(topicPool.isInitialised(), is(true));
+        final List<List<TopicWrapper>> chunks = getCreatedChunks(3);
+        assertThat(chunks.get(0), is(newTopics.subList(0, 2)));
+        assertThat(chunks.get(1), is(newTopics.subList(2, 4)));
+        assertThat(chunks.get(2), is(newTopics.subList(4, 5)));
+        // and the progress should be reported after each chunk
+        verify(progressListener).chunkSaved(2, 5);
+        verify(progressListener).chunkSaved(4, 5);
+        verify(progressListener).chunkSaved(5, 5);
+        // and nothing should be updated
+        verify(topicProvider, never()).updateTopics(any(CollectionWrapper.class));
+    }
+
+    @Test
+    public void shouldOnlyRollbackTheCreatedChunksWhenAChunkFails() {
+        // Given the topic provider fails to create the second chunk
+        given(topicProvider.createTopics(any(CollectionWrapper.class))).willAnswer(new CreateTopicsAnswer()).willReturn(null);
+
+        // When saving the pool in chunks of two
+        final boolean result = topicPool.savePool(2);
+
+        // Then the save should fail after the second chunk
+        assertThat(result, is(false));
+        assertThat(topicPool.isInitialised(), is(false));
+        getCreatedChunks(2);
+
+        // and when the pool is rolled back, only the topics from the first chunk should be deleted
+        topicPool.rollbackPool();
+        verify(topicProvider).deleteTopics(Arrays.asList(101, 102));
+    }
+
+    @Test
+    public void shouldOnlySaveTheUnsavedChunksWhenResumingAFailedSave() {
+        // Given a save where the second chunk failed to be created
+        given(topicProvider.createTopics(any(CollectionWrapper.class))).willAnswer(new CreateTopicsAnswer()).willReturn(null)
+                .willAnswer(new CreateTopicsAnswer());
+        assertThat(topicPool.savePool(2), is(false));
+
+        // When the save is resumed
+        final boolean result = topicPool.savePool(2);
+
+        // Then only the topics that weren't saved should be sent
+        assertThat(result, is(true));
+        final List<List<TopicWrapper>> chunks = getCreatedChunks(4);
+        assertThat(chunks.get(0), is(newTopics.subList(0, 2)));
+        assertThat(chunks.get(1), is(newTopics.subList(2, 4)));
+        assertThat(chunks.get(2), is(newTopics.subList(2, 4)));
+        assertThat(chunks.get(3), is(newTopics.subList(4, 5)));
+
+        // and when the pool is rolled back, all the created topics should be deleted
+        topicPool.rollbackPool();
+        verify(topicProvider).deleteTopics(Arrays.asList(101, 102, 103, 104, 105));
+    }
+
+    @Test
+    public void shouldInitialiseTopicNodesFromTheSavedTopics() {
+        // Given some saved topics that have CSP-IDs
+        setUpCSPId(createdTopics.get(0), "L1-1");
+        setUpCSPId(createdTopics.get(1), "L2-2");
+        saveTopicPool();
+        given(topicNode.getUniqueId()).willReturn("L1-1");
+        given(topicNode2.getUniqueId()).willReturn("L2-2");
+
+        // When initialising the topic nodes from the pool
+        topicPool.initialiseFromPool(topicNode);
+        topicPool.initialiseFromPool(topicNode2);
+
+        // Then the topic nodes ids should be set to the saved topics ids
+        verify(topicNode).setId("101");
+        verify(topicNode2).setId("102");
+    }
+
+    @Test
+    public void shouldPreferNewTopicsOverUpdatedTopicsWithTheSameCSPId() {
+        // Given a saved new topic and a saved updated topic that have the same CSP-ID
+        setUpCSPId(createdTopics.get(0), "L1-1");
+        setUpCSPId(savedUpdatedTopic, "L1-1");
+        topicPool.addUpdatedTopic(updatedTopic);
+        saveTopicPool();
+        given(topicNode.getUniqueId()).willReturn("L1-1");
+
+        // When initialising the topic node from the pool
+        topicPool.initialiseFromPool(topicNode);
+
+        // Then the new topics id should be used
+        verify(topicNode).setId("101");
+        verify(topicNode, never()).setId("200");
+    }
+
+    @Test
+    public void shouldUseTheFirstTopicWhenMultipleTopicsHaveTheSameCSPId() {
+        // Given two saved new topics that have the same CSP-ID
+        setUpCSPId(createdTopics.get(0), "L1-1");
+        setUpCSPId(createdTopics.get(1), "L1-1");
+        saveTopicPool();
+        given(topicNode.getUniqueId()).willReturn("L1-1");
+
+        // When initialising the topic node from the pool
+        topicPool.initialiseFromPool(topicNode);
+
+        // Then the first topics id should be used
+        verify(topicNode).setId("101");
+        verify(topicNode, never()).setId("102");
+    }
+
+    @Test
+    public void shouldNotInitialiseTopicNodesBeforeThePoolIsSaved() {
+        // Given a topic in the pool that has a CSP-ID, but hasn't been saved
+        setUpCSPId(newTopics.get(0), "L1-1");
+        given(newTopics.get(0).getId()).willReturn(1);
+        given(topicNode.getUniqueId()).willReturn("L1-1");
+
+        // When initialising the topic node from the pool
+        topicPool.initialiseFromPool(topicNode);
+
+        // Then the topic nodes id shouldn't be changed
+        verify(topicNode, never()).setId(any(String.class));
+    }
+
+    @Test
+    public void shouldRebuildTheCSPIdMappingWhenANewTopicIsAddedAfterSaving() {
+        // Given a saved pool that has already been used to initialise a topic node
+        setUpCSPId(createdTopics.get(0), "L1-1");
+        saveTopicPool();
+        given(topicNode.getUniqueId()).willReturn("L1-1");
+        topicPool.initialiseFromPool(topicNode);
+        // and a topic with a different CSP-ID is then added to the pool
+        final TopicWrapper topic = mock(TopicWrapper.class);
+        given(topic.getId()).willReturn(300);
+        setUpCSPId(topic, "L3-3");
+        topicPool.addNewTopic(topic);
+        given(topicNode2.getUniqueId()).willReturn("L3-3");
+
+        // When initialising a topic node for the added topic
+        topicPool.initialiseFromPool(topicNode2);
+
+        // Then the added topic should be found
+        verify(topicNode2).setId("300");
+    }
+
+    @Test
+    public void shouldRebuildTheCSPIdMappingWhenAnUpdatedTopicIsAddedAfterSaving() {
+        // Given a saved pool that has already been used to initialise a topic node
+        setUpCSPId(createdTopics.get(0), "L1-1");
+        saveTopicPool();
+        given(topicNode.getUniqueId()).willReturn("L1-1");
+        topicPool.initialiseFromPool(topicNode);
+        // and an updated topic with a different CSP-ID is then added to the pool
+        given(updatedTopic.getId()).willReturn(300);
+        setUpCSPId(updatedTopic, "L3-3");
+        topicPool.addUpdatedTopic(updatedTopic);
+        given(topicNode2.getUniqueId()).willReturn("L3-3");
+
+        // When initialising a topic node for the added topic
+        topicPool.initialiseFromPool(topicNode2);
+
+        // Then the added topic should be found
+        verify(topicNode2).setId("300");
+    }
+
+    /**
+     * Saves the topic pool, where the topic provider returns the created version of each new topic, and the saved updated topic
+     * for any updated topics.
+     */
+    private void saveTopicPool() {
+        given(savedUpdatedTopic.getId()).willReturn(200);
+        given(topicProvider.createTopics(any(CollectionWrapper.class))).willAnswer(new CreateTopicsAnswer());
+        given(topicProvider.updateTopics(any(CollectionWrapper.class))).willReturn(createTopicCollection(
+                new ArrayList<TopicWrapper>(Arrays.asList(savedUpdatedTopic))));
+        assertThat(topicPool.savePool(), is(true));
+    }
+
+    private void setUpCSPId(final TopicWrapper topic, final String cspId) {
+        final PropertyTagInTopicWrapper cspIdProperty = mock(PropertyTagInTopicWrapper.class);
+        given(cspIdProperty.getValue()).willReturn(cspId);
+        given(topic.getProperty(1)).willReturn(cspIdProperty);
+    }
+
+    /**
+     * Gets the topics that were sent in each call to create topics.
+     *
+     * @param numberOfChunks The number of calls that should have been made.
+     * @return The topics that were sent in each call, in the order the calls were made.
+     */
+    @SuppressWarnings("unchecked")
+    private List<List<TopicWrapper>> getCreatedChunks(final int numberOfChunks) {
+        final ArgumentCaptor<CollectionWrapper> captor = ArgumentCaptor.forClass(CollectionWrapper.class);
+        verify(topicProvider, times(numberOfChunks)).createTopics(captor.capture());
+
+        final List<List<TopicWrapper>> chunks = new ArrayList<List<TopicWrapper>>();
+        for (final CollectionWrapper<TopicWrapper> chunk : captor.getAllValues()) {
+            chunks.add(new ArrayList<TopicWrapper>(chunk.getItems()));
+        }
+        return chunks;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CollectionWrapper<TopicWrapper> createTopicCollection(final List<TopicWrapper> items) {
+        final CollectionWrapper<TopicWrapper> collection = mock(CollectionWrapper.class);
+        when(collection.getItems()).thenReturn(items);
+        when(collection.isEmpty()).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(final InvocationOnMock invocation) {
+                return items.isEmpty();
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) {
+                items.add((TopicWrapper) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(collection).addItem(any(TopicWrapper.class));
+        return collection;
+    }
+
+    /**
+     * Returns the created version of each topic that is sent to be created.
+     */
+    private class CreateTopicsAnswer implements Answer<CollectionWrapper<TopicWrapper>> {
+        @SuppressWarnings("unchecked")
+        @Override
+        public CollectionWrapper<TopicWrapper> answer(final InvocationOnMock invocation) {
+            final CollectionWrapper<TopicWrapper> chunk = (CollectionWrapper<TopicWrapper>) invocation.getArguments()[0];
+            final List<TopicWrapper> savedTopics = new ArrayList<TopicWrapper>();
+            for (final TopicWrapper topic : chunk.getItems()) {
+                savedTopics.add(createdTopics.get(newTopics.indexOf(topic)));
+            }
+            return createTopicCollection(savedTopics);
+        }
+    }
+}
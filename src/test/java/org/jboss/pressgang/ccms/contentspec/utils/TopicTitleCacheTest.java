@@ -0,0 +1,178 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+import org.jboss.pressgang.ccms.contentspec.BaseUnitTest;
+import org.jboss.pressgang.ccms.contentspec.ITopicNode;
+import org.jboss.pressgang.ccms.wrapper.TopicWrapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class TopicTitleCacheTest extends BaseUnitTest {
+    @Mock ITopicNode topicNode;
+    @Mock ITopicNode conditionalTopicNode;
+    @Mock TopicWrapper topic;
+    @Mock TopicWrapper topic2;
+    @Mock TopicWrapper topic3;
+
+    private TopicTitleCache cache;
+
+    @Before
+    public void setUp() {
+        setUpTopic(topic, 1, "Topic 1");
+        setUpTopic(topic2, 2, "Topic 2");
+        setUpTopic(topic3, 3, "Topic 3");
+        given(conditionalTopicNode.getConditionStatement(true)).willReturn("beta");
+        cache = new TopicTitleCache(2);
+    }
+
+    @Test
+    public void shouldCountHitsAndMisses() {
+        // Given an empty cache
+
+        // When getting the same title twice
+        final String result1 = cache.getTitle(topicNode, topic);
+        final String result2 = cache.getTitle(topicNode, topic);
+
+        // Then the first lookup should be a miss and the second a hit
+        assertThat(result1, is("Topic 1"));
+        assertThat(result2, is("Topic 1"));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getHitRatio(), is(0.5));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void shouldCacheTitlesPerCondition() {
+        // Given a title that has been cached without a condition
+        cache.getTitle(topicNode, topic);
+
+        // When getting the same title for a node with a condition
+        cache.getTitle(conditionalTopicNode, topic);
+
+        // Then the title should be cached separately for the condition
+        assertThat(cache.getMissCount(), is(2L));
+        assertThat(cache.getHitCount(), is(0L));
+        assertThat(cache.size(), is(2));
+    }
+
+    @Test
+    public void shouldNotReturnAStaleTitleWhenTheTitleIsEdited() {
+        // Given a title that has been cached
+        cache.getTitle(topicNode, topic);
+        // and the topic title is then edited, without the revision changing
+        given(topic.getTitle()).willReturn("Edited Topic 1");
+
+        // When getting the title and url title
+        final String result = cache.getTitle(topicNode, topic);
+        final String urlResult = cache.getURLTitle(topicNode, topic);
+
+        // Then the edited title should be returned
+        assertThat(result, is("Edited Topic 1"));
+        assertThat(urlResult, is(FixedURLGenerator.createURLTitle("Edited Topic 1")));
+        assertThat(cache.getMissCount(), is(2L));
+        assertThat(cache.getHitCount(), is(1L));
+    }
+
+    @Test
+    public void shouldNotCacheNewTopics() {
+        // Given a new topic, that doesn't have an id or revision yet
+        setUpTopic(topic, -1, "New Topic");
+        given(topic2.getRevision()).willReturn(null);
+
+        // When getting the titles
+        cache.getTitle(topicNode, topic);
+        cache.getTitle(topicNode, topic);
+        cache.getTitle(topicNode, topic2);
+
+        // Then the titles should never be cached
+        assertThat(cache.getMissCount(), is(3L));
+        assertThat(cache.getHitCount(), is(0L));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void shouldEvictTheLeastRecentlyUsedTitleWhenFull() {
+        // Given a full cache, where the first title was used most recently
+        cache.getTitle(topicNode, topic);
+        cache.getTitle(topicNode, topic2);
+        cache.getTitle(topicNode, topic);
+
+        // When another title is cached
+        cache.getTitle(topicNode, topic3);
+
+        // Then the least recently used title should be removed
+        assertThat(cache.size(), is(2));
+        cache.getTitle(topicNode, topic);
+        assertThat(cache.getHitCount(), is(2L));
+        cache.getTitle(topicNode, topic2);
+        assertThat(cache.getMissCount(), is(4L));
+    }
+
+    @Test
+    public void shouldCacheTheURLTitle() {
+        // Given a title that has been cached
+        cache.getTitle(topicNode, topic);
+
+        // When getting the url title
+        final String result = cache.getURLTitle(topicNode, topic);
+
+        // Then the url title should be created from the cached title
+        assertThat(result, is(FixedURLGenerator.createURLTitle("Topic 1")));
+        assertThat(cache.getHitCount(), is(1L));
+    }
+
+    @Test
+    public void shouldResetTheStatisticsWhenCleared() {
+        // Given a cache with some titles
+        cache.getTitle(topicNode, topic);
+        cache.getTitle(topicNode, topic);
+
+        // When the cache is cleared
+        cache.clear();
+
+        // Then the titles and statistics should be removed
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getHitCount(), is(0L));
+        assertThat(cache.getMissCount(), is(0L));
+        assertThat(cache.getHitRatio(), is(0.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAllowAMaxSizeLessThanOne() {
+        // Given a cache
+        // When setting the max size to zero
+        cache.setMaxSize(0);
+
+        // Then an exception should be thrown
+    }
+
+    private void setUpTopic(final TopicWrapper topic, final Integer id, final String title) {
+        given(topic.getId()).willReturn(id);
+        given(topic.getRevision()).willReturn(1);
+        given(topic.getTitle()).willReturn(title);
+    }
+}
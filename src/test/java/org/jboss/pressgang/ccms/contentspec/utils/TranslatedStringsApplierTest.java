@@ -0,0 +1,142 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.pressgang.ccms.contentspec.BaseUnitTest;
+import org.jboss.pressgang.ccms.contentspec.Chapter;
+import org.jboss.pressgang.ccms.contentspec.ContentSpec;
+import org.jboss.pressgang.ccms.contentspec.KeyValueNode;
+import org.jboss.pressgang.ccms.contentspec.structures.StringToCSNodeCollection;
+import org.jboss.pressgang.ccms.wrapper.CSNodeWrapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class TranslatedStringsApplierTest extends BaseUnitTest {
+    @Mock CSNodeWrapper metaDataNodeWrapper;
+    @Mock CSNodeWrapper chapterNodeWrapper;
+
+    private ContentSpec contentSpec;
+    private KeyValueNode<String> metaDataNode;
+    private Chapter chapter;
+    private Map<String, String> translations;
+
+    @Before
+    public void setUp() {
+        contentSpec = new ContentSpec();
+        metaDataNode = new KeyValueNode<String>("Abstract", "Foo");
+        metaDataNode.setUniqueId("10");
+        contentSpec.appendChild(metaDataNode);
+        chapter = new Chapter("Chapter 1");
+        chapter.setUniqueId("20");
+        contentSpec.appendChapter(chapter);
+        given(metaDataNodeWrapper.getId()).willReturn(10);
+        given(chapterNodeWrapper.getId()).willReturn(20);
+        translations = new HashMap<String, String>();
+    }
+
+    @Test
+    public void shouldApplyTranslationsToMetaDataAndLevels() {
+        // Given translations for a metadata node and a chapter
+        translations.put("Foo", "Le Foo");
+        translations.put("Chapter 1", "Chapitre 1");
+        final TranslatedStringsApplier applier = new TranslatedStringsApplier(contentSpec, translations);
+
+        // When the translations are applied
+        applier.apply(Arrays.asList(new StringToCSNodeCollection("Foo", metaDataNodeWrapper),
+                new StringToCSNodeCollection("Chapter 1", chapterNodeWrapper)));
+
+        // Then the translations should be set on the matching nodes
+        assertThat(metaDataNode.getTranslatedValue(), is("Le Foo"));
+        assertThat(chapter.getTranslatedTitle(), is("Chapitre 1"));
+    }
+
+    @Test
+    public void shouldOnlyApplyTranslationsToTheFirstNodeWithAUniqueId() {
+        // Given a second chapter with the same unique id
+        final Chapter chapter2 = new Chapter("Chapter 2");
+        chapter2.setUniqueId("20");
+        contentSpec.appendChapter(chapter2);
+        translations.put("Chapter 1", "Chapitre 1");
+        final TranslatedStringsApplier applier = new TranslatedStringsApplier(contentSpec, translations);
+
+        // When the translations are applied
+        applier.apply(Arrays.asList(new StringToCSNodeCollection("Chapter 1", chapterNodeWrapper)));
+
+        // Then only the first chapter should be translated
+        assertThat(chapter.getTranslatedTitle(), is("Chapitre 1"));
+        assertThat(chapter2.getTranslatedTitle(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldAddBackThePaddingThatWasTrimmed() {
+        // Given translations where the source strings were trimmed
+        translations.put("Foo", "Bar");
+        translations.put("  Baz", "Qux");
+        final TranslatedStringsApplier applier = new TranslatedStringsApplier(contentSpec, translations);
+
+        // When getting the translations for the padded strings
+        // Then the padding should be added back to the translations
+        assertThat(applier.getTranslation("Foo"), is("Bar"));
+        assertThat(applier.getTranslation("  Foo"), is("  Bar"));
+        assertThat(applier.getTranslation("Foo  "), is("Bar  "));
+        assertThat(applier.getTranslation("  Foo "), is("  Bar "));
+        assertThat(applier.getTranslation("  Baz  "), is("Qux  "));
+    }
+
+    @Test
+    public void shouldPreferTheClosestMatchingSourceString() {
+        // Given translations for the same string with and without padding
+        translations.put("Foo", "Bar");
+        translations.put(" Foo", "Baz");
+        final TranslatedStringsApplier applier = new TranslatedStringsApplier(contentSpec, translations);
+
+        // When getting the translations
+        // Then an exact match should be used first, followed by a left trimmed match
+        assertThat(applier.getTranslation(" Foo"), is("Baz"));
+        assertThat(applier.getTranslation("  Foo"), is("  Bar"));
+        assertThat(applier.getTranslation(" Foo "), is("Baz "));
+    }
+
+    @Test
+    public void shouldNotApplyMissingOrEmptyTranslations() {
+        // Given an empty translation
+        translations.put("Foo", "");
+        final TranslatedStringsApplier applier = new TranslatedStringsApplier(contentSpec, translations);
+
+        // When the translations are applied
+        applier.apply(Arrays.asList(new StringToCSNodeCollection("Foo", metaDataNodeWrapper),
+                new StringToCSNodeCollection("Chapter 1", chapterNodeWrapper)));
+
+        // Then nothing should be translated
+        assertThat(metaDataNode.getTranslatedValue(), is(nullValue()));
+        assertThat(chapter.getTranslatedTitle(), is(nullValue()));
+        assertThat(applier.getTranslation(null), is(nullValue()));
+    }
+}
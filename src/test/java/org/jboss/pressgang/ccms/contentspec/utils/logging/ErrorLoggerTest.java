@@ -0,0 +1,136 @@
+/*
+  Copyright 2011-2014 Red Hat, Inc
+
+  This file is part of PressGang CCMS.
+
+  PressGang CCMS is free software: you can redistribute it and/or modify
+  it under the terms of the GNU Lesser General Public License as published by
+  the Free Software Foundation, either version 3 of the License, or
+  (at your option) any later version.
+
+  PressGang CCMS is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License
+  along with PressGang CCMS.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.jboss.pressgang.ccms.contentspec.utils.logging;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.jboss.pressgang.ccms.contentspec.BaseUnitTest;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ErrorLoggerTest extends BaseUnitTest {
+    private ErrorLogger logger;
+
+    @Before
+    public void setUp() {
+        logger = new ErrorLogger("test");
+    }
+
+    @Test
+    public void shouldStoreEveryMessageWhenUnlimited() {
+        // Given a logger with no message limit
+        assertThat(logger.getMessageLimit(), is(ErrorLogger.UNLIMITED));
+
+        // When logging some messages
+        for (int i = 0; i < 10; i++) {
+            logger.info("Message " + i);
+        }
+
+        // Then all the messages should be stored
+        assertThat(logger.getLogMessages().size(), is(10));
+        assertThat(logger.getMessageCount(LogMessage.Type.INFO), is(10));
+        assertThat(logger.getDiscardedMessageCount(), is(0));
+    }
+
+    @Test
+    public void shouldDiscardNewMessagesWhenTheLimitIsReached() {
+        // Given a logger with a limit that keeps the oldest messages
+        logger.setMessageLimit(2, false);
+
+        // When logging more messages than the limit
+        logger.error("Message 1");
+        logger.error("Message 2");
+        logger.warn("Message 3");
+
+        // Then only the first messages should be stored
+        final List<LogMessage> messages = logger.getLogMessages();
+        assertThat(messages.size(), is(2));
+        assertThat(messages.get(0).getOriginalMessage(), is("Message 1"));
+        assertThat(messages.get(1).getOriginalMessage(), is("Message 2"));
+        // and the discarded message should still be counted
+        assertThat(logger.getDiscardedMessageCount(), is(1));
+        assertThat(logger.getMessageCount(LogMessage.Type.WARN), is(1));
+    }
+
+    @Test
+    public void shouldDiscardOldestMessagesWhenTheLimitIsReached() {
+        // Given a logger with a limit that keeps the newest messages
+        logger.setMessageLimit(2, true);
+
+        // When logging more messages than the limit
+        logger.error("Message 1");
+        logger.error("Message 2");
+        logger.error("Message 3");
+
+        // Then only the newest messages should be stored
+        final List<LogMessage> messages = logger.getLogMessages();
+        assertThat(messages.size(), is(2));
+        assertThat(messages.get(0).getOriginalMessage(), is("Message 2"));
+        assertThat(messages.get(1).getOriginalMessage(), is("Message 3"));
+        assertThat(logger.getDiscardedMessageCount(), is(1));
+        assertThat(logger.getMessageCount(LogMessage.Type.ERROR), is(3));
+    }
+
+    @Test
+    public void shouldResetMessagesAndCountsWhenCleared() {
+        // Given a logger with a limit and some messages
+        logger.setMessageLimit(1, false);
+        logger.error("Message 1");
+        logger.error("Message 2");
+
+        // When clearing the logs
+        logger.clearLogs();
+
+        // Then the messages and counts should be reset
+        assertThat(logger.getLogMessages().isEmpty(), is(true));
+        assertThat(logger.getMessageCount(LogMessage.Type.ERROR), is(0));
+        assertThat(logger.getDiscardedMessageCount(), is(0));
+        // and new messages should be stored up to the limit again
+        logger.error("Message 3");
+        assertThat(logger.getLogMessages().size(), is(1));
+    }
+
+    @Test
+    public void shouldKeepCountsInSyncWithMessagesWhenClearingConcurrently() throws InterruptedException {
+        // Given a thread that is logging messages
+        final int numberOfMessages = 10000;
+        final Thread loggingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < numberOfMessages; i++) {
+                    logger.info("Message " + i);
+                }
+            }
+        });
+        loggingThread.start();
+
+        // When the logs are cleared while messages are being logged
+        while (loggingThread.isAlive()) {
+            logger.clearLogs();
+        }
+        loggingThread.join();
+
+        // Then the count should match the number of stored messages
+        assertThat(logger.getMessageCount(LogMessage.Type.INFO), is(logger.getLogMessages().size()));
+    }
+}